@@ -0,0 +1,38 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar, takes the usual JMH command line options (-h lists them) and always adds the GC
+ * profiler, which reports allocation per operation (gc.alloc.rate.norm) and collection counts and times next to the
+ * scores. Modes can be narrowed with -bm thrpt or -bm sample.
+ */
+public class BenchmarkMain
+{
+    public static void main( String[] args ) throws RunnerException, IOException
+    {
+        CommandLineOptions commandLineOptions;
+        try
+        {
+            commandLineOptions = new CommandLineOptions( args );
+        }
+        catch ( CommandLineOptionException e )
+        {
+            System.out.println( String.format( "Unexpected parameters: %s", e.getMessage() ) );
+            return;
+        }
+        if ( commandLineOptions.shouldHelp() || commandLineOptions.shouldList() )
+        {
+            org.openjdk.jmh.Main.main( args );
+            return;
+        }
+        new Runner( new OptionsBuilder().parent( commandLineOptions ).addProfiler( GCProfiler.class ).build() ).run();
+    }
+}
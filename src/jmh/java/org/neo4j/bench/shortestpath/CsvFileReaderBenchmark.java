@@ -0,0 +1,64 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses a whole CSV file per invocation with each of the readers {@link CsvReaderBench} compares, numbers are parsed
+ * and summed the same way. Other files can be given with -p file=...
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 10, time = 2 )
+@Fork( 2 )
+public class CsvFileReaderBenchmark
+{
+    @Param( { Config.RELATIONSHIP_ID_FILE } )
+    public String file;
+
+    @Param( { "," } )
+    public String separator;
+
+    @Benchmark
+    public CsvReaderBench.Sums regexReader() throws IOException
+    {
+        return CsvReaderBench.readStrings( new CsvFileReader( new File( file ), Pattern.quote( separator ) ) );
+    }
+
+    @Benchmark
+    public CsvReaderBench.Sums mappedReader() throws IOException
+    {
+        return CsvReaderBench.readStrings( new CsvFileReader( new File( file ), separator.charAt( 0 ) ) );
+    }
+
+    @Benchmark
+    public CsvReaderBench.Sums mappedCallbacks() throws IOException
+    {
+        CsvReaderBench.Sums sums = new CsvReaderBench.Sums();
+        MappedCsvParser parser = new MappedCsvParser( new File( file ), separator.charAt( 0 ) );
+        try
+        {
+            parser.parse( sums );
+        }
+        finally
+        {
+            parser.close();
+        }
+        return sums;
+    }
+}
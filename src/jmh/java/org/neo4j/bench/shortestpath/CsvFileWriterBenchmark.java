@@ -0,0 +1,102 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes a relationships file of random ids and weights per invocation, once with the primitive column writes that
+ * InputFilesCreator uses and once with whole lines of strings, formatted the way the column writes format them.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 10, time = 2 )
+@Fork( 2 )
+public class CsvFileWriterBenchmark
+{
+    static final int WEIGHT_DECIMALS = 2;
+
+    @Param( { "100000" } )
+    public int lines;
+
+    private long[] startNodeIds;
+    private long[] endNodeIds;
+    private double[] weights;
+    private String[] weightStrings;
+    private File file;
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException
+    {
+        Random random = new Random( 42 );
+        startNodeIds = new long[lines];
+        endNodeIds = new long[lines];
+        weights = new double[lines];
+        weightStrings = new String[lines];
+        for ( int line = 0; line < lines; line++ )
+        {
+            startNodeIds[line] = random.nextInt( Integer.MAX_VALUE );
+            endNodeIds[line] = random.nextInt( Integer.MAX_VALUE );
+            weights[line] = random.nextDouble();
+            double rounded = CsvFileWriter.round( weights[line], WEIGHT_DECIMALS );
+            weightStrings[line] = ( rounded == Math.rint( rounded ) ) ? Long.toString( (long) rounded )
+                                                                      : Double.toString( rounded );
+        }
+        file = File.createTempFile( "relationships", ".csv" );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Benchmark
+    public long writeColumns() throws IOException
+    {
+        CsvFileWriter writer = new CsvFileWriter( file );
+        writer.writeLine( "from", "to", "type", "weight@double" );
+        for ( int line = 0; line < lines; line++ )
+        {
+            writer.writeLong( startNodeIds[line] );
+            writer.writeLong( endNodeIds[line] );
+            writer.writeString( "LINK" );
+            writer.writeDouble( weights[line], WEIGHT_DECIMALS );
+            writer.endLine();
+        }
+        writer.close();
+        return file.length();
+    }
+
+    // Ids are formatted in the loop, as callers holding numbers would, weights are formatted up front
+    @Benchmark
+    public long writeLines() throws IOException
+    {
+        CsvFileWriter writer = new CsvFileWriter( file );
+        writer.writeLine( "from", "to", "type", "weight@double" );
+        for ( int line = 0; line < lines; line++ )
+        {
+            writer.writeLine( Long.toString( startNodeIds[line] ), Long.toString( endNodeIds[line] ), "LINK",
+                    weightStrings[line] );
+        }
+        writer.close();
+        return file.length();
+    }
+}
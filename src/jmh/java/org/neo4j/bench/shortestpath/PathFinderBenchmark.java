@@ -0,0 +1,92 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.bench.shortestpath.ShortestPathBench.Pair;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One findSinglePath query per invocation, cycling through the first {@link #PAIR_COUNT} start and end nodes of the
+ * generated pair file, for every combination of algorithm and direction. The algorithm names are those of
+ * {@link ShortestPathBench}, so the primitive finders can be measured too, e.g. with -p algorithm=csr-bfs.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 10, time = 2 )
+@Fork( value = 2, jvmArgsAppend = { "-server", "-Xmx512m" } )
+public class PathFinderBenchmark
+{
+    static final int PAIR_COUNT = 1000;
+
+    @Param( { "shortest-path", "unweighted-dijkstra", "weighted-dijkstra" } )
+    public String algorithm;
+
+    @Param( { "out", "both" } )
+    public String direction;
+
+    private GraphDatabaseService db;
+    private PathFinder<? extends Path> pathFinder;
+    private Node[] startNodes;
+    private Node[] endNodes;
+
+    // Every benchmark thread walks the pairs in the same order
+    @State( Scope.Thread )
+    public static class Cursor
+    {
+        private int pair = 0;
+    }
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException
+    {
+        db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( Config.DB_DIR ).setConfig( Config.NEO4J_CONFIG )
+                .newGraphDatabase();
+        List<Pair<Node>> startAndEndNodes = ShortestPathBench.loadStartAndEndNodes( db, PAIR_COUNT );
+        if ( startAndEndNodes.isEmpty() )
+            throw new IllegalStateException( "No start and end nodes in " + Config.PATH_START_END_ID_FILE );
+        startNodes = new Node[startAndEndNodes.size()];
+        endNodes = new Node[startAndEndNodes.size()];
+        for ( int i = 0; i < startAndEndNodes.size(); i++ )
+        {
+            startNodes[i] = startAndEndNodes.get( i ).getFirst();
+            endNodes[i] = startAndEndNodes.get( i ).getSecond();
+        }
+        pathFinder = ShortestPathBench.createPathFinders( db, ShortestPathBench.parseDirection( direction ),
+                ShortestPathBench.parseAlgorithms( algorithm ) ).values().iterator().next();
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        db.shutdown();
+    }
+
+    @Benchmark
+    public Path findSinglePath( Cursor cursor )
+    {
+        int pair = cursor.pair;
+        cursor.pair = ( pair + 1 == startNodes.length ) ? 0 : pair + 1;
+        return pathFinder.findSinglePath( startNodes[pair], endNodes[pair] );
+    }
+}
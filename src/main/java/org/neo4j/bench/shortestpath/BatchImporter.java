@@ -0,0 +1,422 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+/**
+ * Loads the files written by {@link InputFilesCreator} into a new store with the {@link BatchInserter}. A producer
+ * thread parses the CSV files into batches of records, with property maps and relationship types ready, while the
+ * calling thread inserts them, so parsing overlaps with insertion, which is single threaded in Neo4j.
+ * <p/>
+ * Headers are typed as in neo4j-import, name@type, the type defaults to string. The first column of the nodes file is
+ * the node id, which is used as the Neo4j id as is (no reference node shift, the files are already shifted), so
+ * queries refer to nodes by the ids in the files. Relationship files start with the from, to and type columns.
+ * {@link BinaryGraphFile}s are read too, their weights become double weight properties as in the CSV files.
+ */
+public class BatchImporter
+{
+    static final int BATCH_SIZE = 10000;
+    static final int QUEUED_BATCHES = 16;
+    static final long PROGRESS_INTERVAL = 1000000;
+
+    public static void main( String[] args ) throws IOException
+    {
+        String errMsg = String.format( "Expected 0 or 3 parameters, found %s. Parameters should be [db dir] "
+                                       + "[nodes file] [relationships file]\nDefaults are %s %s %s (or the binary "
+                                       + "files if more recent), the db dir must not contain a store yet. Files are "
+                                       + "CSV or binary\n", args.length, Config.DB_DIR, Config.NODE_ID_FILE,
+                Config.RELATIONSHIP_ID_FILE );
+
+        if ( args.length != 0 && args.length != 3 )
+        {
+            System.out.println( errMsg );
+            return;
+        }
+
+        File dbDir = new File( ( args.length == 3 ) ? args[0] : Config.DB_DIR );
+        if ( new File( dbDir, "neostore" ).exists() )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", dbDir, errMsg ) );
+            return;
+        }
+        File nodesFile = ( args.length == 3 ) ? new File( args[1] ) : defaultFile( Config.NODE_ID_FILE,
+                Config.NODE_BINARY_FILE );
+        if ( false == nodesFile.isFile() )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 1: %s\n%s", nodesFile, errMsg ) );
+            return;
+        }
+        File relationshipsFile = ( args.length == 3 ) ? new File( args[2] ) : defaultFile(
+                Config.RELATIONSHIP_ID_FILE, Config.RELATIONSHIP_BINARY_FILE );
+        if ( false == relationshipsFile.isFile() )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 2: %s\n%s", relationshipsFile,
+                    errMsg ) );
+            return;
+        }
+
+        importFiles( dbDir, nodesFile, relationshipsFile );
+    }
+
+    public static void importFiles( File dbDir, final File nodesFile, final File relationshipsFile )
+            throws IOException
+    {
+        final BlockingQueue<Batch> batches = new ArrayBlockingQueue<Batch>( QUEUED_BATCHES );
+        // Daemon, so a parser still blocked on the queue cannot keep the JVM alive after a failed import
+        ExecutorService producer = Executors.newSingleThreadExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "import-parser" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        Future<Void> parsing = producer.submit( new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                boolean consumerStopped = false;
+                try
+                {
+                    parse( nodesFile, false, batches );
+                    parse( relationshipsFile, true, batches );
+                }
+                catch ( InterruptedException e )
+                {
+                    // Only interrupted once the inserting thread stopped, no one is left to take END off a full queue
+                    consumerStopped = true;
+                    throw e;
+                }
+                finally
+                {
+                    if ( false == consumerStopped ) batches.put( Batch.END );
+                }
+                return null;
+            }
+        } );
+
+        long startTime = System.currentTimeMillis();
+        BatchInserter inserter = BatchInserters.inserter( dbDir.getPath() );
+        Progress nodes = new Progress( "nodes" );
+        Progress relationships = new Progress( "rels" );
+        long shutdownStartTime;
+        try
+        {
+            while ( true )
+            {
+                Batch batch = batches.take();
+                if ( batch == Batch.END ) break;
+                if ( false == batch.relationships )
+                {
+                    nodes.start();
+                    for ( int i = 0; i < batch.size; i++ )
+                    {
+                        inserter.createNode( batch.firstIds[i], batch.properties.get( i ) );
+                    }
+                    nodes.add( batch.size );
+                }
+                else
+                {
+                    relationships.start();
+                    for ( int i = 0; i < batch.size; i++ )
+                    {
+                        inserter.createRelationship( batch.firstIds[i], batch.secondIds[i], batch.types[i],
+                                batch.properties.get( i ) );
+                    }
+                    relationships.add( batch.size );
+                }
+            }
+            await( parsing );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while importing", e );
+        }
+        finally
+        {
+            producer.shutdownNow();
+            shutdownStartTime = System.currentTimeMillis();
+            inserter.shutdown();
+        }
+        System.out.println( nodes );
+        System.out.println( relationships );
+        System.out.println( String.format( "Flushed store in %s(ms), imported %s in %s(ms)",
+                System.currentTimeMillis() - shutdownStartTime, dbDir, System.currentTimeMillis() - startTime ) );
+    }
+
+    private static File defaultFile( String csvPath, String binaryPath )
+    {
+        File binaryFile = new File( binaryPath );
+        return ( BinaryGraphFile.isCurrent( binaryFile, new File( csvPath ) ) ) ? binaryFile : new File( csvPath );
+    }
+
+    // Parses a file into batches, the last, partly filled, batch is queued too
+    private static void parse( File csvFile, boolean relationships, BlockingQueue<Batch> batches )
+            throws IOException, InterruptedException
+    {
+        if ( BinaryGraphFile.isBinary( csvFile ) )
+        {
+            parseBinary( csvFile, relationships, batches );
+            return;
+        }
+        MappedCsvParser parser = new MappedCsvParser( csvFile, ',' );
+        try
+        {
+            String[] header = parser.nextStrings();
+            if ( null == header ) return;
+            int firstPropertyColumn = ( relationships ) ? 3 : 1;
+            if ( header.length < firstPropertyColumn )
+                throw new IOException( String.format( "Expected at least %s columns in [%s], found %s",
+                        firstPropertyColumn, csvFile, header.length ) );
+            String[] names = new String[header.length];
+            PropertyType[] types = new PropertyType[header.length];
+            for ( int column = firstPropertyColumn; column < header.length; column++ )
+            {
+                int typeStart = header[column].lastIndexOf( '@' );
+                names[column] = ( typeStart < 0 ) ? header[column] : header[column].substring( 0, typeStart );
+                types[column] = ( typeStart < 0 ) ? PropertyType.STRING
+                        : PropertyType.forName( header[column].substring( typeStart + 1 ) );
+                if ( null == types[column] )
+                    throw new IOException( String.format( "Unknown type in column [%s] of [%s], expected one of %s",
+                            header[column], csvFile, Arrays.toString( PropertyType.values() ).toLowerCase() ) );
+            }
+
+            Map<String, RelationshipType> relationshipTypes = new HashMap<String, RelationshipType>();
+            Batch batch = new Batch( relationships );
+            long line = 1;
+            String[] columns;
+            while ( null != ( columns = parser.nextStrings() ) )
+            {
+                line++;
+                if ( columns.length != header.length )
+                    throw new IOException( String.format( "Expected %s columns on line %s of [%s], found %s",
+                            header.length, line, csvFile, columns.length ) );
+                int i = batch.size++;
+                try
+                {
+                    batch.firstIds[i] = Long.parseLong( columns[0] );
+                    if ( relationships )
+                    {
+                        batch.secondIds[i] = Long.parseLong( columns[1] );
+                        RelationshipType type = relationshipTypes.get( columns[2] );
+                        if ( null == type )
+                        {
+                            type = DynamicRelationshipType.withName( columns[2] );
+                            relationshipTypes.put( columns[2], type );
+                        }
+                        batch.types[i] = type;
+                    }
+                    Map<String, Object> properties = new HashMap<String, Object>();
+                    for ( int column = firstPropertyColumn; column < columns.length; column++ )
+                    {
+                        if ( columns[column].isEmpty() ) continue;
+                        properties.put( names[column], types[column].parse( columns[column] ) );
+                    }
+                    batch.properties.add( properties );
+                }
+                catch ( NumberFormatException e )
+                {
+                    throw new IOException( String.format( "Unexpected value on line %s of [%s]", line, csvFile ), e );
+                }
+                if ( batch.size == BATCH_SIZE )
+                {
+                    batches.put( batch );
+                    batch = new Batch( relationships );
+                }
+            }
+            if ( batch.size > 0 ) batches.put( batch );
+        }
+        finally
+        {
+            parser.close();
+        }
+    }
+
+    private static void parseBinary( File binaryFile, boolean relationships, BlockingQueue<Batch> batches )
+            throws IOException, InterruptedException
+    {
+        BinaryGraphFile.Reader reader = new BinaryGraphFile.Reader( binaryFile );
+        try
+        {
+            BinaryGraphFile.RecordType expectedType = ( relationships ) ? BinaryGraphFile.RecordType.RELATIONSHIPS
+                    : BinaryGraphFile.RecordType.NODES;
+            if ( reader.type() != expectedType )
+                throw new IOException( String.format( "Expected %s in [%s], found %s", expectedType, binaryFile,
+                        reader.type() ) );
+            RelationshipType type = DynamicRelationshipType.withName( "LINK" );
+            Batch batch = new Batch( relationships );
+            while ( reader.next() )
+            {
+                int i = batch.size++;
+                batch.firstIds[i] = reader.firstId();
+                if ( relationships )
+                {
+                    batch.secondIds[i] = reader.secondId();
+                    batch.types[i] = type;
+                }
+                // Shortest decimal of the float, the value written to the CSV file for weights with few decimals
+                Map<String, Object> properties = new HashMap<String, Object>();
+                properties.put( "weight", Double.parseDouble( Float.toString( reader.weight() ) ) );
+                batch.properties.add( properties );
+                if ( batch.size == BATCH_SIZE )
+                {
+                    batches.put( batch );
+                    batch = new Batch( relationships );
+                }
+            }
+            if ( batch.size > 0 ) batches.put( batch );
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static void await( Future<Void> future ) throws IOException, InterruptedException
+    {
+        try
+        {
+            future.get();
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException ) throw (IOException) e.getCause();
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+    enum PropertyType
+    {
+        STRING, BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE;
+
+        // Null if there is no such type
+        static PropertyType forName( String name )
+        {
+            for ( PropertyType type : values() )
+            {
+                if ( type.name().equalsIgnoreCase( name ) ) return type;
+            }
+            return null;
+        }
+
+        Object parse( String value )
+        {
+            switch ( this )
+            {
+            case BOOLEAN:
+                return Boolean.parseBoolean( value );
+            case BYTE:
+                return Byte.parseByte( value );
+            case SHORT:
+                return Short.parseShort( value );
+            case CHAR:
+                return value.charAt( 0 );
+            case INT:
+                return Integer.parseInt( value );
+            case LONG:
+                return Long.parseLong( value );
+            case FLOAT:
+                return Float.parseFloat( value );
+            case DOUBLE:
+                return Double.parseDouble( value );
+            default:
+                return value;
+            }
+        }
+    }
+
+    // Nodes use firstIds only, relationships all arrays
+    private static class Batch
+    {
+        static final Batch END = new Batch( false );
+
+        private final boolean relationships;
+        private final long[] firstIds;
+        private final long[] secondIds;
+        private final RelationshipType[] types;
+        private final List<Map<String, Object>> properties;
+        private int size = 0;
+
+        Batch( boolean relationships )
+        {
+            this.relationships = relationships;
+            this.firstIds = new long[BATCH_SIZE];
+            this.secondIds = ( relationships ) ? new long[BATCH_SIZE] : null;
+            this.types = ( relationships ) ? new RelationshipType[BATCH_SIZE] : null;
+            this.properties = new ArrayList<Map<String, Object>>( BATCH_SIZE );
+        }
+    }
+
+    // Insertion rate, timed from the start of the first batch to the end of the last
+    private static class Progress
+    {
+        private final String name;
+        private long startTime = -1;
+        private long endTime;
+        private long count = 0;
+        private long lastTime;
+        private long lastCount = 0;
+
+        Progress( String name )
+        {
+            this.name = name;
+        }
+
+        void start()
+        {
+            if ( startTime >= 0 ) return;
+            startTime = System.nanoTime();
+            lastTime = startTime;
+            endTime = startTime;
+        }
+
+        void add( int added )
+        {
+            long now = System.nanoTime();
+            count += added;
+            endTime = now;
+            if ( count - lastCount >= PROGRESS_INTERVAL )
+            {
+                System.out.println( String.format( "\t%s %s : %.0f(%s/s)", name, count, rate( count - lastCount,
+                        now - lastTime ), name ) );
+                lastTime = now;
+                lastCount = count;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "Imported %s %s in %s(ms) : %.0f(%s/s)", count, name,
+                    TimeUnit.NANOSECONDS.toMillis( endTime - startTime ), rate( count, endTime - startTime ), name );
+        }
+
+        private static double rate( long count, long nanos )
+        {
+            return ( nanos == 0 ) ? 0 : count / ( nanos / (double) TimeUnit.SECONDS.toNanos( 1 ) );
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.List;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+
+/**
+ * Finds one shortest path for each of several pairs that share a start (or end) node, using a single search tree
+ * that grows until every target is settled. Paths are returned in the order of the given nodes, null where no path
+ * exists, and always lead from start to end.
+ */
+public interface BatchPathFinder<P extends Path>
+{
+    List<P> findSinglePathsFrom( Node start, List<Node> ends );
+
+    // Searches backwards from the end node
+    List<P> findSinglePathsTo( List<Node> starts, Node end );
+}
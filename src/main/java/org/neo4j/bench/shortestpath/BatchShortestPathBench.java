@@ -0,0 +1,177 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.neo4j.bench.shortestpath.ShortestPathBench.Pair;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
+/**
+ * Many-to-many single path queries: pairs are grouped by start node (or by end node) and every group is answered
+ * once pair-at-a-time and once with a single search per group, for algorithms that implement
+ * {@link BatchPathFinder}. Batched latency is amortized, a group's time divided evenly over its paths. Generate pairs
+ * with several targets per source for this to be meaningful (see {@link InputFilesCreator}).
+ */
+public class BatchShortestPathBench
+{
+    static String GROUP_BY_START = "by-start";
+    static String GROUP_BY_END = "by-end";
+
+    public static void main( String[] args ) throws IOException
+    {
+        String errMsg = String.format( "Expected 2 or 3 parameters, found %s. Parameters should be <%s|%s> <%s|%s> "
+                                       + "[algorithms]\nAlgorithms is a comma separated subset of %s, default is %s\n",
+                args.length, ShortestPathBench.DIRECTION_BOTH, ShortestPathBench.DIRECTION_OUT, GROUP_BY_START,
+                GROUP_BY_END, ShortestPathBench.ALGORITHMS, ShortestPathBench.DEFAULT_ALGORITHMS );
+
+        if ( args.length != 2 && args.length != 3 )
+        {
+            System.out.println( errMsg );
+            return;
+        }
+
+        if ( args[0].equals( ShortestPathBench.DIRECTION_BOTH ) == false
+             && args[0].equals( ShortestPathBench.DIRECTION_OUT ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", args[0], errMsg ) );
+            return;
+        }
+
+        if ( args[1].equals( GROUP_BY_START ) == false && args[1].equals( GROUP_BY_END ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 1: %s\n%s", args[1], errMsg ) );
+            return;
+        }
+
+        List<String> algorithms;
+        try
+        {
+            algorithms = ShortestPathBench.parseAlgorithms( ( args.length == 3 ) ? args[2]
+                    : ShortestPathBench.DEFAULT_ALGORITHMS );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 2: %s\n%s", args[2], errMsg ) );
+            return;
+        }
+
+        GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( Config.DB_DIR ).setConfig(
+                Config.NEO4J_CONFIG ).newGraphDatabase();
+
+        int runCount = 1000;
+        List<Pair<Node>> startAndEndNodes = ShortestPathBench.loadStartAndEndNodes( db, runCount );
+        Direction direction = ShortestPathBench.parseDirection( args[0] );
+        boolean byStart = args[1].equals( GROUP_BY_START );
+        Map<Node, List<Node>> groups = groupPairs( startAndEndNodes, byStart );
+        System.out.println( "Direction =\t" + direction );
+        System.out.println( "Grouping =\t" + args[1] );
+        System.out.println( "Pairs =\t\t" + startAndEndNodes.size() );
+        System.out.println( "Groups =\t" + groups.size() );
+
+        Map<String, PathFinder<? extends Path>> pathFinders = ShortestPathBench.createPathFinders( db,
+                direction, algorithms );
+
+        for ( Map.Entry<String, PathFinder<? extends Path>> pathFinder : pathFinders.entrySet() )
+        {
+            String batchedString = ( pathFinder.getValue() instanceof BatchPathFinder ) ? runBatched(
+                    (BatchPathFinder<?>) pathFinder.getValue(), groups, byStart ) : "\tBatched\t : Not Supported\n";
+            System.out.println( "- " + pathFinder.getKey() + " -\n"
+                                + runPairAtATime( pathFinder.getValue(), groups, byStart ) + batchedString );
+        }
+
+        db.shutdown();
+    }
+
+    // Other nodes of every pair, keyed by the node the pairs share, in order of first appearance
+    public static Map<Node, List<Node>> groupPairs( List<Pair<Node>> startAndEndNodes, boolean byStart )
+    {
+        Map<Node, List<Node>> groups = new LinkedHashMap<Node, List<Node>>();
+        for ( Pair<Node> startAndEndNode : startAndEndNodes )
+        {
+            Node shared = ( byStart ) ? startAndEndNode.getFirst() : startAndEndNode.getSecond();
+            Node other = ( byStart ) ? startAndEndNode.getSecond() : startAndEndNode.getFirst();
+            List<Node> others = groups.get( shared );
+            if ( null == others )
+            {
+                others = new ArrayList<Node>();
+                groups.put( shared, others );
+            }
+            others.add( other );
+        }
+        return groups;
+    }
+
+    public static String runPairAtATime( PathFinder<? extends Path> pathFinder, Map<Node, List<Node>> groups,
+            boolean byStart )
+    {
+        Histogram timeHistogram = ConcurrentShortestPathBench.newTimeHistogram();
+        long pathCount = 0;
+        long notFoundCount = 0;
+        long totalTime = 0;
+        for ( Map.Entry<Node, List<Node>> group : groups.entrySet() )
+        {
+            for ( Node other : group.getValue() )
+            {
+                Node start = ( byStart ) ? group.getKey() : other;
+                Node end = ( byStart ) ? other : group.getKey();
+                long startTime = System.nanoTime();
+                Path path = pathFinder.findSinglePath( start, end );
+                long runTime = System.nanoTime() - startTime;
+                totalTime += runTime;
+                pathCount++;
+                if ( null == path )
+                {
+                    notFoundCount++;
+                    continue;
+                }
+                timeHistogram.recordValue( TimeUnit.NANOSECONDS.toMicros( runTime ) );
+            }
+        }
+        return resultString( "Pair-At-A-Time", timeHistogram, pathCount, notFoundCount, totalTime );
+    }
+
+    public static String runBatched( BatchPathFinder<?> pathFinder, Map<Node, List<Node>> groups, boolean byStart )
+    {
+        Histogram timeHistogram = ConcurrentShortestPathBench.newTimeHistogram();
+        long pathCount = 0;
+        long notFoundCount = 0;
+        long totalTime = 0;
+        for ( Map.Entry<Node, List<Node>> group : groups.entrySet() )
+        {
+            long startTime = System.nanoTime();
+            List<? extends Path> paths = ( byStart ) ? pathFinder.findSinglePathsFrom( group.getKey(),
+                    group.getValue() ) : pathFinder.findSinglePathsTo( group.getValue(), group.getKey() );
+            long runTime = System.nanoTime() - startTime;
+            totalTime += runTime;
+            pathCount += paths.size();
+            long amortizedRunTime = TimeUnit.NANOSECONDS.toMicros( runTime / paths.size() );
+            for ( Path path : paths )
+            {
+                if ( null == path )
+                    notFoundCount++;
+                else
+                    timeHistogram.recordValue( amortizedRunTime );
+            }
+        }
+        return resultString( "Batched", timeHistogram, pathCount, notFoundCount, totalTime );
+    }
+
+    private static String resultString( String name, Histogram timeHistogram, long pathCount, long notFoundCount,
+            long totalTime )
+    {
+        double throughput = pathCount / ( totalTime / (double) TimeUnit.SECONDS.toNanos( 1 ) );
+        return String.format( "\t%s\t : Paths[%s] Not Found[%s] Total Time[%s(ms)] Throughput[%.2f(paths/s)]\n",
+                name, pathCount, notFoundCount, TimeUnit.NANOSECONDS.toMillis( totalTime ), throughput )
+               + ShortestPathBench.histogramString( timeHistogram, name + " Time Per Path (us)" );
+    }
+}
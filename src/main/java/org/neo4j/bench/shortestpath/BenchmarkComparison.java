@@ -0,0 +1,294 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.HistogramLogReader;
+
+/**
+ * Compares two sets of interval logs, as {@link ShortestPathBench} writes them to results/ (or a {@link SweepRunner}
+ * writes them per cell and phase), matched by file name: algorithm, single/all paths and direction. The intervals
+ * after each log's warmup window are merged, and the distributions compared by percentiles, throughput and a two
+ * sample Kolmogorov-Smirnov test. A run regresses when its p50 or p99 is higher than the baseline's by more than the
+ * threshold and the KS test finds the distributions different, or when its throughput is lower by more than the
+ * threshold. Exits with status 1 if any run regressed, if a baseline run is missing from the new set or either run
+ * has no queries after the warmup window, or if nothing was compared, so it can gate upgrades.
+ */
+public class BenchmarkComparison
+{
+    static double DEFAULT_P50_THRESHOLD = 10;
+    static double DEFAULT_P99_THRESHOLD = 20;
+    static double DEFAULT_THROUGHPUT_THRESHOLD = 10;
+    static double DEFAULT_SIGNIFICANCE = 0.01;
+    static double[] PERCENTILES = new double[] { 50, 90, 99, 99.9 };
+    private static final Pattern WARMUP = Pattern.compile( "warmup (\\d+)\\(s\\)" );
+    private static final String LOG_SUFFIX = ".hlog";
+
+    public static void main( String[] args ) throws IOException
+    {
+        String errMsg = String.format( "Expected 2 to 6 parameters, found %s. Parameters should be "
+                                       + "<baseline directory> <new directory> [p50 threshold] [p99 threshold] "
+                                       + "[throughput threshold] [significance]\n"
+                                       + "Thresholds are percentages, defaults %s, %s and %s. Significance is the KS "
+                                       + "test level, default %s\n", args.length,
+                DEFAULT_P50_THRESHOLD, DEFAULT_P99_THRESHOLD, DEFAULT_THROUGHPUT_THRESHOLD, DEFAULT_SIGNIFICANCE );
+
+        if ( args.length < 2 || args.length > 6 )
+        {
+            System.out.println( errMsg );
+            System.exit( 2 );
+        }
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            if ( false == new File( args[i] ).isDirectory() )
+            {
+                System.out.println( String.format( "Unexpected value for parameter %s: %s\n%s", i, args[i], errMsg ) );
+                System.exit( 2 );
+            }
+        }
+
+        double[] limits = new double[] { DEFAULT_P50_THRESHOLD, DEFAULT_P99_THRESHOLD, DEFAULT_THROUGHPUT_THRESHOLD,
+                DEFAULT_SIGNIFICANCE };
+        for ( int i = 2; i < args.length; i++ )
+        {
+            try
+            {
+                limits[i - 2] = Double.parseDouble( args[i] );
+            }
+            catch ( NumberFormatException e )
+            {
+                limits[i - 2] = -1;
+            }
+            if ( limits[i - 2] < 0 )
+            {
+                System.out.println( String.format( "Unexpected value for parameter %s: %s\n%s", i, args[i], errMsg ) );
+                System.exit( 2 );
+            }
+        }
+        double p50Threshold = limits[0];
+        double p99Threshold = limits[1];
+        double throughputThreshold = limits[2];
+        double significance = limits[3];
+
+        Map<String, Run> baselineRuns = loadRuns( new File( args[0] ) );
+        Map<String, Run> newRuns = loadRuns( new File( args[1] ) );
+        System.out.println( "Baseline =\t" + args[0] );
+        System.out.println( "New =\t\t" + args[1] );
+        System.out.println( String.format( "Thresholds =\tp50[%s%%] p99[%s%%] Throughput[%s%%] Significance[%s]",
+                p50Threshold, p99Threshold, throughputThreshold, significance ) );
+        System.out.println( "Run times in microseconds, throughput in queries/s\n" );
+
+        int comparedCount = 0;
+        int regressionCount = 0;
+        int failedCount = 0;
+        TreeSet<String> names = new TreeSet<String>( baselineRuns.keySet() );
+        names.addAll( newRuns.keySet() );
+        for ( String name : names )
+        {
+            Run baseline = baselineRuns.get( name );
+            Run run = newRuns.get( name );
+            // A run missing from the new set, or without queries, most likely crashed
+            if ( null == run )
+            {
+                failedCount++;
+                System.out.println( String.format( "%s\n\tFAILED : only in baseline\n", name ) );
+                continue;
+            }
+            if ( null == baseline )
+            {
+                System.out.println( String.format( "%s\n\tOnly in new\n", name ) );
+                continue;
+            }
+            if ( baseline.histogram.getTotalCount() == 0 || run.histogram.getTotalCount() == 0 )
+            {
+                failedCount++;
+                System.out.println( String.format( "%s\n\tFAILED : no queries after the warmup window in %s\n", name,
+                        ( run.histogram.getTotalCount() == 0 ) ? "new" : "baseline" ) );
+                continue;
+            }
+            comparedCount++;
+
+            StringBuilder sb = new StringBuilder( name ).append( "\n\t" );
+            for ( double percentile : PERCENTILES )
+            {
+                sb.append( String.format( "p%s%s ", ( percentile == Math.rint( percentile ) ) ? String.valueOf(
+                        (long) percentile ) : String.valueOf( percentile ), delta(
+                        baseline.histogram.getValueAtPercentile( percentile ),
+                        run.histogram.getValueAtPercentile( percentile ) ) ) );
+            }
+            sb.append( String.format( "MAX%s\n\tThroughput%s Queries[%s -> %s]", delta(
+                    baseline.histogram.getMaxValue(), run.histogram.getMaxValue() ), delta( baseline.throughput(),
+                    run.throughput() ), baseline.histogram.getTotalCount(), run.histogram.getTotalCount() ) );
+            double[] test = kolmogorovSmirnov( baseline.histogram, run.histogram );
+            boolean different = test[1] < significance;
+            sb.append( String.format( " KS[D=%.3f p=%.4f%s]\n\t", test[0], test[1], different ? " different" : "" ) );
+
+            StringBuilder regressions = new StringBuilder();
+            if ( different && change( baseline.histogram.getValueAtPercentile( 50 ),
+                    run.histogram.getValueAtPercentile( 50 ) ) > p50Threshold ) regressions.append( " p50" );
+            if ( different && change( baseline.histogram.getValueAtPercentile( 99 ),
+                    run.histogram.getValueAtPercentile( 99 ) ) > p99Threshold ) regressions.append( " p99" );
+            if ( -change( baseline.throughput(), run.throughput() ) > throughputThreshold )
+                regressions.append( " throughput" );
+            if ( regressions.length() > 0 ) regressionCount++;
+            sb.append( ( regressions.length() > 0 ) ? "REGRESSION :" + regressions : "OK" );
+            System.out.println( sb.append( "\n" ) );
+        }
+
+        System.out.println( String.format( "Compared %s runs, %s regressed, %s failed", comparedCount,
+                regressionCount, failedCount ) );
+        System.exit( ( regressionCount > 0 || failedCount > 0 || comparedCount == 0 ) ? 1 : 0 );
+    }
+
+    // Interval logs in the directory, by file name without suffix
+    private static Map<String, Run> loadRuns( File directory ) throws IOException
+    {
+        Map<String, Run> runs = new TreeMap<String, Run>();
+        File[] logFiles = directory.listFiles( new FilenameFilter()
+        {
+            @Override
+            public boolean accept( File dir, String name )
+            {
+                return name.endsWith( LOG_SUFFIX );
+            }
+        } );
+        for ( File logFile : logFiles )
+        {
+            String name = logFile.getName();
+            runs.put( name.substring( 0, name.length() - LOG_SUFFIX.length() ), loadRun( logFile ) );
+        }
+        return runs;
+    }
+
+    // Merges the intervals that start after the warmup window written in the log's comments, as IntervalReporter does
+    private static Run loadRun( File logFile ) throws IOException
+    {
+        int warmupSeconds = 0;
+        BufferedReader commentReader = new BufferedReader( new FileReader( logFile ) );
+        try
+        {
+            for ( String line = commentReader.readLine(); null != line && line.startsWith( "#" ); line =
+                    commentReader.readLine() )
+            {
+                Matcher matcher = WARMUP.matcher( line );
+                if ( matcher.find() )
+                {
+                    warmupSeconds = Integer.parseInt( matcher.group( 1 ) );
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            commentReader.close();
+        }
+
+        Run run = new Run();
+        HistogramLogReader reader = new HistogramLogReader( logFile );
+        for ( EncodableHistogram interval = reader.nextIntervalHistogram(); null != interval; interval =
+                reader.nextIntervalHistogram() )
+        {
+            // Logged start times are rounded to milliseconds
+            double startSeconds = interval.getStartTimeStamp() / 1000.0 - reader.getStartTimeSec();
+            if ( startSeconds < warmupSeconds - 0.001 ) continue;
+            run.histogram.add( (AbstractHistogram) interval );
+            run.seconds += ( interval.getEndTimeStamp() - interval.getStartTimeStamp() ) / 1000.0;
+        }
+        return run;
+    }
+
+    private static String delta( double baseline, double value )
+    {
+        return String.format( "[%s -> %s (%+.1f%%)]", format( baseline ), format( value ), change( baseline,
+                value ) );
+    }
+
+    private static String format( double value )
+    {
+        return ( value == Math.rint( value ) ) ? String.valueOf( (long) value ) : String.format( "%.1f", value );
+    }
+
+    // Percentage change from the baseline
+    private static double change( double baseline, double value )
+    {
+        if ( baseline == 0 ) return ( value == 0 ) ? 0 : Double.POSITIVE_INFINITY;
+        return ( value - baseline ) * 100 / baseline;
+    }
+
+    /**
+     * Two sample Kolmogorov-Smirnov test: the largest distance between the cumulative distributions, compared at the
+     * bucket boundaries of both histograms, and its asymptotic p-value (Numerical Recipes, probks). Returns the
+     * distance and the p-value.
+     */
+    static double[] kolmogorovSmirnov( AbstractHistogram first, AbstractHistogram second )
+    {
+        TreeMap<Long, Long> firstCumulative = cumulativeCounts( first );
+        TreeMap<Long, Long> secondCumulative = cumulativeCounts( second );
+        TreeSet<Long> values = new TreeSet<Long>( firstCumulative.keySet() );
+        values.addAll( secondCumulative.keySet() );
+        double firstCount = first.getTotalCount();
+        double secondCount = second.getTotalCount();
+        double distance = 0;
+        for ( long value : values )
+        {
+            Map.Entry<Long, Long> firstEntry = firstCumulative.floorEntry( value );
+            Map.Entry<Long, Long> secondEntry = secondCumulative.floorEntry( value );
+            double firstFraction = ( null == firstEntry ) ? 0 : firstEntry.getValue() / firstCount;
+            double secondFraction = ( null == secondEntry ) ? 0 : secondEntry.getValue() / secondCount;
+            distance = Math.max( distance, Math.abs( firstFraction - secondFraction ) );
+        }
+        double effectiveCount = Math.sqrt( firstCount * secondCount / ( firstCount + secondCount ) );
+        return new double[] { distance, ksProbability( ( effectiveCount + 0.12 + 0.11 / effectiveCount ) * distance ) };
+    }
+
+    private static TreeMap<Long, Long> cumulativeCounts( AbstractHistogram histogram )
+    {
+        TreeMap<Long, Long> cumulative = new TreeMap<Long, Long>();
+        for ( HistogramIterationValue value : histogram.recordedValues() )
+        {
+            cumulative.put( value.getValueIteratedTo(), value.getTotalCountToThisValue() );
+        }
+        return cumulative;
+    }
+
+    // Kolmogorov distribution tail, 1 where the series does not converge (tiny distances)
+    private static double ksProbability( double lambda )
+    {
+        double factor = 2;
+        double sum = 0;
+        double previousTerm = 0;
+        for ( int j = 1; j <= 100; j++ )
+        {
+            double term = factor * Math.exp( -2 * lambda * lambda * j * j );
+            sum += term;
+            if ( Math.abs( term ) <= 0.001 * previousTerm || Math.abs( term ) <= 1e-8 * sum ) return sum;
+            factor = -factor;
+            previousTerm = Math.abs( term );
+        }
+        return 1;
+    }
+
+    private static class Run
+    {
+        private final Histogram histogram = new Histogram( IntervalReporter.MAX_RUN_TIME, 3 );
+        private double seconds = 0;
+
+        private double throughput()
+        {
+            return ( seconds > 0 ) ? histogram.getTotalCount() / seconds : 0;
+        }
+    }
+}
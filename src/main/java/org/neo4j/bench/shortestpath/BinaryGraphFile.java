@@ -0,0 +1,270 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fixed width binary alternative to the generated CSV files, little-endian throughout. A {@link #HEADER_SIZE} byte
+ * header (magic, version, record type, record size, record count) is followed by the records:
+ * <ul>
+ * <li>nodes: long id, float weight</li>
+ * <li>relationships: long from, long to, float weight (all of type LINK)</li>
+ * <li>pairs: long start, long end</li>
+ * </ul>
+ * Ids are Neo4j ids, as in the CSV files. Weights are the values the CSV files hold, as floats.
+ */
+public class BinaryGraphFile
+{
+    public static final int MAGIC = 0x53504246; // SPBF
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    static final int BUFFER_SIZE = 1024 * 1024;
+    static final int WINDOW_SIZE = 256 * 1024 * 1024;
+
+    public enum RecordType
+    {
+        NODES( 12 ), RELATIONSHIPS( 20 ), PAIRS( 16 );
+
+        private final int recordSize;
+
+        RecordType( int recordSize )
+        {
+            this.recordSize = recordSize;
+        }
+
+        public int recordSize()
+        {
+            return recordSize;
+        }
+    }
+
+    // True if the binary file exists and is at least as recent as the CSV file, so it holds the current data
+    public static boolean isCurrent( File binaryFile, File csvFile )
+    {
+        return binaryFile.isFile()
+               && ( false == csvFile.isFile() || binaryFile.lastModified() >= csvFile.lastModified() );
+    }
+
+    // True if the file starts with the magic number
+    public static boolean isBinary( File file ) throws IOException
+    {
+        if ( file.length() < HEADER_SIZE ) return false;
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+        try
+        {
+            return Integer.reverseBytes( randomAccessFile.readInt() ) == MAGIC;
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    public static ByteBuffer header( RecordType type, long recordCount )
+    {
+        ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+        header.putInt( MAGIC ).putInt( VERSION ).putInt( type.ordinal() ).putInt( type.recordSize() );
+        header.putLong( recordCount );
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Buffered record writer, the header count is filled in on close. Without a header only the records are written,
+     * for part files that are concatenated behind a {@link #header(RecordType, long)} later. Not thread safe.
+     */
+    public static class Writer implements Closeable
+    {
+        private final RecordType type;
+        private final boolean header;
+        private final FileOutputStream outputStream;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect( BUFFER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+        private long recordCount = 0;
+
+        public Writer( File file, RecordType type, boolean header ) throws IOException
+        {
+            this.type = type;
+            this.header = header;
+            this.outputStream = new FileOutputStream( file );
+            this.channel = outputStream.getChannel();
+            if ( header ) write( header( type, 0 ) );
+        }
+
+        public void writeNode( long id, float weight ) throws IOException
+        {
+            startRecord( RecordType.NODES );
+            buffer.putLong( id ).putFloat( weight );
+        }
+
+        public void writeRelationship( long startNodeId, long endNodeId, float weight ) throws IOException
+        {
+            startRecord( RecordType.RELATIONSHIPS );
+            buffer.putLong( startNodeId ).putLong( endNodeId ).putFloat( weight );
+        }
+
+        public void writePair( long startNodeId, long endNodeId ) throws IOException
+        {
+            startRecord( RecordType.PAIRS );
+            buffer.putLong( startNodeId ).putLong( endNodeId );
+        }
+
+        public long recordCount()
+        {
+            return recordCount;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                flush();
+                if ( header ) channel.write( header( type, recordCount ), 0 );
+            }
+            finally
+            {
+                channel.close();
+                outputStream.close();
+            }
+        }
+
+        private void startRecord( RecordType recordType ) throws IOException
+        {
+            if ( recordType != type )
+                throw new IllegalStateException( String.format( "Can not write %s to a %s file", recordType, type ) );
+            if ( buffer.remaining() < type.recordSize() ) flush();
+            recordCount++;
+        }
+
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            write( buffer );
+            buffer.clear();
+        }
+
+        private void write( ByteBuffer bytes ) throws IOException
+        {
+            while ( bytes.hasRemaining() )
+            {
+                channel.write( bytes );
+            }
+        }
+    }
+
+    /**
+     * Iterates the records of a memory-mapped file without parsing or allocating: {@link #next()} moves to the next
+     * record, whose fields are then read with the accessors of its type. Files larger than {@link #WINDOW_SIZE} are
+     * mapped one window at a time.
+     */
+    public static class Reader implements Closeable
+    {
+        private final File file;
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private final RecordType type;
+        private final int recordSize;
+        private final long recordCount;
+        private final long recordsPerWindow;
+        private MappedByteBuffer window = null;
+        private long windowFirstRecord = 0;
+        private long record = -1;
+        private int position = -1;
+
+        public Reader( File file ) throws IOException
+        {
+            this.file = file;
+            this.randomAccessFile = new RandomAccessFile( file, "r" );
+            this.channel = randomAccessFile.getChannel();
+            byte[] headerBytes = new byte[HEADER_SIZE];
+            boolean complete = ( randomAccessFile.length() >= HEADER_SIZE );
+            if ( complete ) randomAccessFile.readFully( headerBytes );
+            ByteBuffer header = ByteBuffer.wrap( headerBytes ).order( ByteOrder.LITTLE_ENDIAN );
+            if ( false == complete || header.getInt() != MAGIC || header.getInt() != VERSION )
+            {
+                close();
+                throw new IOException( String.format( "Not a version %s binary graph file [%s]", VERSION, file ) );
+            }
+            int typeIndex = header.getInt();
+            this.recordSize = header.getInt();
+            this.recordCount = header.getLong();
+            if ( typeIndex < 0 || typeIndex >= RecordType.values().length
+                 || recordSize != RecordType.values()[typeIndex].recordSize()
+                 || HEADER_SIZE + recordCount * recordSize > channel.size() )
+            {
+                close();
+                throw new IOException( String.format( "Corrupt header or truncated binary graph file [%s]", file ) );
+            }
+            this.type = RecordType.values()[typeIndex];
+            this.recordsPerWindow = WINDOW_SIZE / recordSize;
+        }
+
+        public RecordType type()
+        {
+            return type;
+        }
+
+        public long recordCount()
+        {
+            return recordCount;
+        }
+
+        // Returns false once there are no more records
+        public boolean next() throws IOException
+        {
+            if ( record + 1 >= recordCount ) return false;
+            record++;
+            if ( null == window || record - windowFirstRecord >= recordsPerWindow )
+            {
+                windowFirstRecord = record;
+                long windowRecords = Math.min( recordsPerWindow, recordCount - record );
+                window = channel.map( FileChannel.MapMode.READ_ONLY, HEADER_SIZE + record * recordSize,
+                        windowRecords * recordSize );
+                window.order( ByteOrder.LITTLE_ENDIAN );
+            }
+            position = (int) ( ( record - windowFirstRecord ) * recordSize );
+            return true;
+        }
+
+        // Node id, relationship start node id or pair start node id
+        public long firstId()
+        {
+            return window.getLong( position );
+        }
+
+        // Relationship end node id or pair end node id
+        public long secondId()
+        {
+            return window.getLong( position + 8 );
+        }
+
+        // Node or relationship weight
+        public float weight()
+        {
+            return window.getFloat( position + recordSize - 4 );
+        }
+
+        // Mapped windows are only unmapped once garbage collected
+        @Override
+        public void close() throws IOException
+        {
+            window = null;
+            channel.close();
+            randomAccessFile.close();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "BinaryGraphFile.Reader[file=%s, type=%s, records=%s]", file, type, recordCount );
+        }
+    }
+}
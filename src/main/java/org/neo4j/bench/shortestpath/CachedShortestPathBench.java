@@ -0,0 +1,127 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.bench.shortestpath.ShortestPathBench.Pair;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
+/**
+ * Runs the start/end pairs through a {@link CachingPathFinder} per algorithm, each with its own empty cache. Only
+ * meaningful when the pairs repeat, generate them with a Zipf distribution (see {@link InputFilesCreator}).
+ */
+public class CachedShortestPathBench
+{
+    public static void main( String[] args ) throws IOException
+    {
+        String errMsg = String.format( "Expected 4 or 5 parameters, found %s. Parameters should be <%s|%s> <%s|%s> "
+                                       + "<%s> <cache capacity (entries, at least 1)> [algorithms]\n"
+                                       + "Algorithms is a comma separated subset of %s, default is %s\n",
+                args.length, ShortestPathBench.PATHS_SINGLE, ShortestPathBench.PATHS_ALL,
+                ShortestPathBench.DIRECTION_BOTH, ShortestPathBench.DIRECTION_OUT, join( PathCache.POLICIES ),
+                ShortestPathBench.ALGORITHMS, ShortestPathBench.DEFAULT_ALGORITHMS );
+
+        if ( args.length != 4 && args.length != 5 )
+        {
+            System.out.println( errMsg );
+            return;
+        }
+
+        if ( args[0].equals( ShortestPathBench.PATHS_ALL ) == false
+             && args[0].equals( ShortestPathBench.PATHS_SINGLE ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", args[0], errMsg ) );
+            return;
+        }
+
+        if ( args[1].equals( ShortestPathBench.DIRECTION_BOTH ) == false
+             && args[1].equals( ShortestPathBench.DIRECTION_OUT ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 1: %s\n%s", args[1], errMsg ) );
+            return;
+        }
+
+        if ( false == PathCache.POLICIES.contains( args[2] ) )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 2: %s\n%s", args[2], errMsg ) );
+            return;
+        }
+
+        int capacity;
+        try
+        {
+            capacity = Integer.parseInt( args[3] );
+        }
+        catch ( NumberFormatException e )
+        {
+            // Rejected below, as any capacity under 1
+            capacity = 0;
+        }
+        if ( capacity < 1 )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 3: %s\n%s", args[3], errMsg ) );
+            return;
+        }
+
+        List<String> algorithms;
+        try
+        {
+            algorithms = ShortestPathBench.parseAlgorithms( ( args.length == 5 ) ? args[4]
+                    : ShortestPathBench.DEFAULT_ALGORITHMS );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 4: %s\n%s", args[4], errMsg ) );
+            return;
+        }
+
+        GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( Config.DB_DIR ).setConfig(
+                Config.NEO4J_CONFIG ).newGraphDatabase();
+
+        int runCount = 1000;
+        List<Pair<Node>> startAndEndNodes = ShortestPathBench.loadStartAndEndNodes( db, runCount );
+        Direction direction = ShortestPathBench.parseDirection( args[1] );
+        boolean singlePath = args[0].equals( ShortestPathBench.PATHS_SINGLE );
+        System.out.println( "Paths =\t\t" + args[0] );
+        System.out.println( "Direction =\t" + direction );
+        System.out.println( "Eviction =\t" + args[2] );
+        System.out.println( "Capacity =\t" + capacity );
+
+        Map<String, PathFinder<? extends Path>> pathFinders = ShortestPathBench.createPathFinders( db,
+                direction, algorithms );
+
+        for ( Map.Entry<String, PathFinder<? extends Path>> pathFinder : pathFinders.entrySet() )
+        {
+            PathCache<CachingPathFinder.Key> cache = PathCache.create( args[2], capacity );
+            CachingPathFinder cachingPathFinder = new CachingPathFinder( db, pathFinder.getValue(),
+                    pathFinder.getKey(), direction, cache );
+            String runString = ( singlePath ) ? ShortestPathBench.runFindSinglePath( cachingPathFinder,
+                    startAndEndNodes ) : ShortestPathBench.runFindAllPaths( cachingPathFinder, startAndEndNodes,
+                    Integer.MAX_VALUE );
+            System.out.println( "- " + pathFinder.getKey() + " -\n" + runString + "\t" + cache + "\n"
+                                + ShortestPathBench.histogramString( cachingPathFinder.getHitTimeHistogram(),
+                                        "Hit Time (us)" )
+                                + ShortestPathBench.histogramString( cachingPathFinder.getMissTimeHistogram(),
+                                        "Miss Time (us)" ) );
+        }
+
+        db.shutdown();
+    }
+
+    private static String join( List<String> values )
+    {
+        StringBuilder sb = new StringBuilder();
+        for ( String value : values )
+        {
+            if ( sb.length() > 0 ) sb.append( "|" );
+            sb.append( value );
+        }
+        return sb.toString();
+    }
+}
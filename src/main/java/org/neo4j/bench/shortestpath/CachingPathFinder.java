@@ -0,0 +1,177 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
+
+/**
+ * Puts a {@link PathCache} in front of a {@link PathFinder}. Results are cached per (start, end, algorithm, direction)
+ * and query mode, no path found is cached too. A path is stored as its relationship ids followed by its start node
+ * id: node ids alone can not tell parallel relationships apart, and the path is rebuilt from this exactly on a hit.
+ * Latency of hits and misses is recorded separately, in microseconds.
+ */
+public class CachingPathFinder implements PathFinder<Path>
+{
+    private static final long[][] NO_PATHS = new long[0][];
+
+    private final GraphDatabaseService db;
+    private final PathFinder<? extends Path> pathFinder;
+    private final String algorithm;
+    private final Direction direction;
+    private final PathCache<Key> cache;
+    private final Histogram hitTimeHistogram = new ConcurrentHistogram( TimeUnit.MINUTES.toMicros( 10 ), 3 );
+    private final Histogram missTimeHistogram = new ConcurrentHistogram( TimeUnit.MINUTES.toMicros( 10 ), 3 );
+
+    public CachingPathFinder( GraphDatabaseService db, PathFinder<? extends Path> pathFinder, String algorithm,
+            Direction direction, PathCache<Key> cache )
+    {
+        this.db = db;
+        this.pathFinder = pathFinder;
+        this.algorithm = algorithm;
+        this.direction = direction;
+        this.cache = cache;
+    }
+
+    @Override
+    public Path findSinglePath( Node start, Node end )
+    {
+        long startTime = System.nanoTime();
+        Key key = new Key( start.getId(), end.getId(), algorithm, direction, false );
+        long[][] cached = cache.get( key );
+        if ( null != cached )
+        {
+            Path path = ( cached.length == 0 ) ? null : decode( cached[0] );
+            record( hitTimeHistogram, startTime );
+            return path;
+        }
+        Path path = pathFinder.findSinglePath( start, end );
+        cache.put( key, ( null == path ) ? NO_PATHS : new long[][] { encode( path ) } );
+        record( missTimeHistogram, startTime );
+        return path;
+    }
+
+    @Override
+    public Iterable<Path> findAllPaths( Node start, Node end )
+    {
+        long startTime = System.nanoTime();
+        Key key = new Key( start.getId(), end.getId(), algorithm, direction, true );
+        long[][] cached = cache.get( key );
+        List<Path> paths = new ArrayList<Path>();
+        if ( null != cached )
+        {
+            for ( long[] encodedPath : cached )
+            {
+                paths.add( decode( encodedPath ) );
+            }
+            record( hitTimeHistogram, startTime );
+            return paths;
+        }
+        // The whole result has to be materialized to be cached
+        for ( Path path : pathFinder.findAllPaths( start, end ) )
+        {
+            paths.add( path );
+        }
+        long[][] encodedPaths = new long[paths.size()][];
+        for ( int i = 0; i < encodedPaths.length; i++ )
+        {
+            encodedPaths[i] = encode( paths.get( i ) );
+        }
+        cache.put( key, encodedPaths );
+        record( missTimeHistogram, startTime );
+        return paths;
+    }
+
+    // Metadata of the last miss, hits do not traverse anything
+    @Override
+    public TraversalMetadata metadata()
+    {
+        return pathFinder.metadata();
+    }
+
+    public PathCache<Key> getCache()
+    {
+        return cache;
+    }
+
+    public Histogram getHitTimeHistogram()
+    {
+        return hitTimeHistogram;
+    }
+
+    public Histogram getMissTimeHistogram()
+    {
+        return missTimeHistogram;
+    }
+
+    private static void record( Histogram histogram, long startTime )
+    {
+        long runTime = TimeUnit.NANOSECONDS.toMicros( System.nanoTime() - startTime );
+        histogram.recordValue( Math.min( runTime, histogram.getHighestTrackableValue() ) );
+    }
+
+    private static long[] encode( Path path )
+    {
+        long[] encodedPath = new long[path.length() + 1];
+        int i = 0;
+        for ( Relationship relationship : path.relationships() )
+        {
+            encodedPath[i++] = relationship.getId();
+        }
+        encodedPath[i] = path.startNode().getId();
+        return encodedPath;
+    }
+
+    private Path decode( long[] encodedPath )
+    {
+        int length = encodedPath.length - 1;
+        return GraphUtils.buildPath( db, encodedPath[length], encodedPath, length );
+    }
+
+    public static class Key
+    {
+        private final long startNodeId;
+        private final long endNodeId;
+        private final String algorithm;
+        private final Direction direction;
+        private final boolean allPaths;
+
+        public Key( long startNodeId, long endNodeId, String algorithm, Direction direction, boolean allPaths )
+        {
+            this.startNodeId = startNodeId;
+            this.endNodeId = endNodeId;
+            this.algorithm = algorithm;
+            this.direction = direction;
+            this.allPaths = allPaths;
+        }
+
+        @Override
+        public boolean equals( Object other )
+        {
+            if ( this == other ) return true;
+            if ( false == other instanceof Key ) return false;
+            Key key = (Key) other;
+            return startNodeId == key.startNodeId && endNodeId == key.endNodeId && allPaths == key.allPaths
+                   && direction == key.direction && algorithm.equals( key.algorithm );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = (int) ( startNodeId ^ ( startNodeId >>> 32 ) );
+            result = 31 * result + (int) ( endNodeId ^ ( endNodeId >>> 32 ) );
+            result = 31 * result + algorithm.hashCode();
+            result = 31 * result + direction.hashCode();
+            return 31 * result + ( allPaths ? 1 : 0 );
+        }
+    }
+}
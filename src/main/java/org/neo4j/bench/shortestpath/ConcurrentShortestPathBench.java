@@ -0,0 +1,245 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.HdrHistogram.Histogram;
+import org.neo4j.bench.shortestpath.ShortestPathBench.Pair;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
+/**
+ * Closed-loop driver: a fixed number of worker threads share one list of start/end pairs, each worker issues its
+ * next query as soon as the previous one returns. Run once per thread count to see where each algorithm stops
+ * scaling.
+ */
+public class ConcurrentShortestPathBench
+{
+    public static void main( String[] args ) throws IOException, InterruptedException
+    {
+        String errMsg = String.format( "Expected 3 or 4 parameters, found %s. Parameters should be <%s|%s> <%s|%s> "
+                                       + "<thread counts, e.g. 1,2,4,8> [algorithms]\n"
+                                       + "Algorithms is a comma separated subset of %s, default is %s\n",
+                args.length, ShortestPathBench.PATHS_SINGLE, ShortestPathBench.PATHS_ALL,
+                ShortestPathBench.DIRECTION_BOTH, ShortestPathBench.DIRECTION_OUT, ShortestPathBench.ALGORITHMS,
+                ShortestPathBench.DEFAULT_ALGORITHMS );
+
+        if ( args.length != 3 && args.length != 4 )
+        {
+            System.out.println( errMsg );
+            return;
+        }
+
+        if ( args[0].equals( ShortestPathBench.PATHS_ALL ) == false
+             && args[0].equals( ShortestPathBench.PATHS_SINGLE ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", args[0], errMsg ) );
+            return;
+        }
+
+        if ( args[1].equals( ShortestPathBench.DIRECTION_BOTH ) == false
+             && args[1].equals( ShortestPathBench.DIRECTION_OUT ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 1: %s\n%s", args[1], errMsg ) );
+            return;
+        }
+
+        List<Integer> threadCounts = new ArrayList<Integer>();
+        try
+        {
+            for ( String threadCount : args[2].split( "," ) )
+            {
+                threadCounts.add( Integer.parseInt( threadCount.trim() ) );
+            }
+        }
+        catch ( NumberFormatException e )
+        {
+            // Rejected below, as any thread count under 1
+            threadCounts.add( 0 );
+        }
+        for ( int threadCount : threadCounts )
+        {
+            if ( threadCount < 1 )
+            {
+                System.out.println( String.format( "Unexpected value for parameter 2: %s\n%s", args[2], errMsg ) );
+                return;
+            }
+        }
+
+        List<String> algorithms;
+        try
+        {
+            algorithms = ShortestPathBench.parseAlgorithms( ( args.length == 4 ) ? args[3]
+                    : ShortestPathBench.DEFAULT_ALGORITHMS );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 3: %s\n%s", args[3], errMsg ) );
+            return;
+        }
+
+        GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( Config.DB_DIR ).setConfig(
+                Config.NEO4J_CONFIG ).newGraphDatabase();
+
+        int runCount = 1000;
+        List<Pair<Node>> startAndEndNodes = ShortestPathBench.loadStartAndEndNodes( db, runCount );
+        Direction direction = ShortestPathBench.parseDirection( args[1] );
+        boolean singlePath = args[0].equals( ShortestPathBench.PATHS_SINGLE );
+        System.out.println( "Paths =\t\t" + args[0] );
+        System.out.println( "Direction =\t" + direction );
+        System.out.println( "Threads =\t" + threadCounts );
+
+        Map<String, PathFinder<? extends Path>> pathFinders = ShortestPathBench.createPathFinders( db,
+                direction, algorithms );
+
+        for ( Map.Entry<String, PathFinder<? extends Path>> pathFinder : pathFinders.entrySet() )
+        {
+            System.out.println( "- " + pathFinder.getKey() + " -\n" );
+            for ( int threadCount : threadCounts )
+            {
+                System.out.println( runConcurrently( pathFinder.getValue(), startAndEndNodes, threadCount,
+                        singlePath ) );
+            }
+        }
+
+        db.shutdown();
+    }
+
+    public static String runConcurrently( PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes,
+            int threadCount, boolean singlePath ) throws InterruptedException
+    {
+        if ( threadCount < 1 )
+        {
+            throw new IllegalArgumentException( "Expected at least 1 thread, found " + threadCount );
+        }
+        AtomicInteger nextPair = new AtomicInteger( 0 );
+        CountDownLatch startGate = new CountDownLatch( 1 );
+        CountDownLatch endGate = new CountDownLatch( threadCount );
+        List<QueryWorker> workers = new ArrayList<QueryWorker>();
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            QueryWorker worker = new QueryWorker( pathFinder, startAndEndNodes, nextPair, startGate, endGate,
+                    singlePath );
+            workers.add( worker );
+            Thread thread = new Thread( worker, "query-worker-" + i );
+            thread.setDaemon( true );
+            thread.start();
+        }
+
+        long startTime = System.nanoTime();
+        startGate.countDown();
+        endGate.await();
+        long wallTime = System.nanoTime() - startTime;
+
+        Histogram timeHistogram = newTimeHistogram();
+        Histogram pathLengthHistogram = new Histogram( 10000, 5 );
+        long failedCount = 0;
+        for ( QueryWorker worker : workers )
+        {
+            if ( null != worker.failure )
+            {
+                throw new RuntimeException( "Query worker failed", worker.failure );
+            }
+            timeHistogram.add( worker.timeHistogram );
+            pathLengthHistogram.add( worker.pathLengthHistogram );
+            failedCount += worker.notFoundCount;
+        }
+
+        long queryCount = timeHistogram.getTotalCount() + failedCount;
+        double throughput = queryCount / ( wallTime / (double) TimeUnit.SECONDS.toNanos( 1 ) );
+        String throughputString = String.format(
+                "\tThreads[%s] Queries[%s] Not Found[%s] Wall Time[%s(ms)] Throughput[%.2f(queries/s)]\n",
+                threadCount, queryCount, failedCount, TimeUnit.NANOSECONDS.toMillis( wallTime ), throughput );
+        return throughputString + ShortestPathBench.histogramString( timeHistogram, "Run Time (us)" )
+               + ShortestPathBench.histogramString( pathLengthHistogram, "Path Length" );
+    }
+
+    static Histogram newTimeHistogram()
+    {
+        return new Histogram( TimeUnit.MICROSECONDS.convert( 10, TimeUnit.MINUTES ), 3 );
+    }
+
+    // Returns the length of the (first) path found, or -1 if there is none
+    static int runQuery( PathFinder<? extends Path> pathFinder, Pair<Node> startAndEndNode, boolean singlePath )
+    {
+        if ( singlePath )
+        {
+            Path path = pathFinder.findSinglePath( startAndEndNode.getFirst(), startAndEndNode.getSecond() );
+            return ( null == path ) ? -1 : path.length();
+        }
+        // Consumes every path, so the measured time covers the complete search
+        int pathLength = -1;
+        for ( Path path : pathFinder.findAllPaths( startAndEndNode.getFirst(), startAndEndNode.getSecond() ) )
+        {
+            if ( pathLength < 0 ) pathLength = path.length();
+        }
+        return pathLength;
+    }
+
+    private static class QueryWorker implements Runnable
+    {
+        private final PathFinder<? extends Path> pathFinder;
+        private final List<Pair<Node>> startAndEndNodes;
+        private final AtomicInteger nextPair;
+        private final CountDownLatch startGate;
+        private final CountDownLatch endGate;
+        private final boolean singlePath;
+
+        private final Histogram timeHistogram = newTimeHistogram();
+        private final Histogram pathLengthHistogram = new Histogram( 10000, 5 );
+        private long notFoundCount = 0;
+        private volatile Throwable failure = null;
+
+        QueryWorker( PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes,
+                AtomicInteger nextPair, CountDownLatch startGate, CountDownLatch endGate, boolean singlePath )
+        {
+            this.pathFinder = pathFinder;
+            this.startAndEndNodes = startAndEndNodes;
+            this.nextPair = nextPair;
+            this.startGate = startGate;
+            this.endGate = endGate;
+            this.singlePath = singlePath;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                startGate.await();
+                int pairIndex;
+                while ( ( pairIndex = nextPair.getAndIncrement() ) < startAndEndNodes.size() )
+                {
+                    Pair<Node> startAndEndNode = startAndEndNodes.get( pairIndex );
+                    long startTime = System.nanoTime();
+                    int pathLength = runQuery( pathFinder, startAndEndNode, singlePath );
+                    long runTime = System.nanoTime() - startTime;
+                    if ( pathLength < 0 )
+                    {
+                        notFoundCount++;
+                        continue;
+                    }
+                    timeHistogram.recordValue( TimeUnit.NANOSECONDS.toMicros( runTime ) );
+                    pathLengthHistogram.recordValue( pathLength );
+                }
+            }
+            catch ( Throwable e )
+            {
+                failure = e;
+            }
+            finally
+            {
+                endGate.countDown();
+            }
+        }
+    }
+}
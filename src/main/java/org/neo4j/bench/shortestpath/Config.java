@@ -29,4 +29,20 @@ public class Config
     public final static String NODE_ID_FILE = "data/generated/nodes.csv";
     public final static String RELATIONSHIP_ID_FILE = "data/generated/relationships.csv";
     public final static String PATH_START_END_ID_FILE = "data/generated/path-start-and-end-nodes.csv";
+
+    // New node ids and their original ids, written when InputFilesCreator reorders the nodes
+    public final static String NODE_ID_MAPPING_FILE = "data/generated/node-id-mapping.csv";
+
+    // Binary versions of the above, see BinaryGraphFile
+    public final static String NODE_BINARY_FILE = "data/generated/nodes.bin";
+    public final static String RELATIONSHIP_BINARY_FILE = "data/generated/relationships.bin";
+    public final static String PATH_START_END_BINARY_FILE = "data/generated/path-start-and-end-nodes.bin";
+
+    // Formatted with the search direction
+    public final static String LANDMARKS_FILE = "data/generated/landmarks-%s.bin";
+    public final static String CONTRACTION_HIERARCHY_FILE = "data/generated/contraction-hierarchy-%s.bin";
+    public final static String HOP_DISTANCES_FILE = "data/generated/hop-distances-%s.bin";
+
+    // Formatted with the algorithm, single or all paths and the search direction
+    public final static String HISTOGRAM_LOG_FILE = "results/%s-%s-%s.hlog";
 }
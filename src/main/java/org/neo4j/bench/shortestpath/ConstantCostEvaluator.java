@@ -0,0 +1,25 @@
+package org.neo4j.bench.shortestpath;
+
+/**
+ * Every relationship has the same cost. Path finders recognise this evaluator and may use BFS instead of Dijkstra.
+ */
+public class ConstantCostEvaluator implements PrimitiveCostEvaluator
+{
+    private final double cost;
+
+    public ConstantCostEvaluator( double cost )
+    {
+        this.cost = cost;
+    }
+
+    @Override
+    public double getCost( long relationshipId )
+    {
+        return cost;
+    }
+
+    public double cost()
+    {
+        return cost;
+    }
+}
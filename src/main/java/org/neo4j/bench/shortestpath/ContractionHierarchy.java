@@ -0,0 +1,619 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Contraction Hierarchy over the weighted relationships of a {@link CsrGraph}. Nodes are contracted one at a time in
+ * order of importance (edge difference plus number of already contracted neighbours). Contracting a node v adds a
+ * shortcut u->w for every pair of neighbours where u->v->w is the only shortest path, which is decided with a bounded
+ * witness search. A query then only has to search upwards in the hierarchy from both ends, see
+ * {@link ContractionHierarchyShortestPath}.
+ * <p>
+ * Arcs are directed. When the search direction is BOTH every relationship contributes an arc in each direction.
+ * Original arcs reference their relationship, shortcuts reference the two arcs they replace so paths can be unpacked.
+ */
+public class ContractionHierarchy
+{
+    private static final int FILE_MAGIC = 0x43483032; // "CH02"
+    private static final int HEAP_ARITY = 4;
+    // Bounds the witness search, a missed witness only costs an unnecessary shortcut
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int SIMULATED_WITNESS_SETTLE_LIMIT = 50;
+
+    private final Direction direction;
+    private final int nodeCount;
+    private final long graphChecksum;
+    private final int shortcutCount;
+    private final int[] ranks;
+    private final int arcCount;
+    private final int[] arcSources;
+    private final int[] arcTargets;
+    private final double[] arcWeights;
+    // -1 for shortcuts
+    private final long[] arcRelationshipIds;
+    // -1 for original arcs
+    private final int[] arcFirstChildren;
+    private final int[] arcSecondChildren;
+
+    // Arcs leading to a higher ranked node, by source (upward) and by target (downward, searched in reverse)
+    private final int[] upwardOffsets;
+    private final int[] upwardArcs;
+    private final int[] downwardOffsets;
+    private final int[] downwardArcs;
+
+    private ContractionHierarchy( Direction direction, int nodeCount, long graphChecksum, int shortcutCount,
+            int[] ranks, int arcCount, int[] arcSources, int[] arcTargets, double[] arcWeights,
+            long[] arcRelationshipIds, int[] arcFirstChildren, int[] arcSecondChildren )
+    {
+        this.direction = direction;
+        this.nodeCount = nodeCount;
+        this.graphChecksum = graphChecksum;
+        this.shortcutCount = shortcutCount;
+        this.ranks = ranks;
+        this.arcCount = arcCount;
+        this.arcSources = arcSources;
+        this.arcTargets = arcTargets;
+        this.arcWeights = arcWeights;
+        this.arcRelationshipIds = arcRelationshipIds;
+        this.arcFirstChildren = arcFirstChildren;
+        this.arcSecondChildren = arcSecondChildren;
+
+        upwardOffsets = new int[nodeCount + 1];
+        downwardOffsets = new int[nodeCount + 1];
+        for ( int arc = 0; arc < arcCount; arc++ )
+        {
+            if ( ranks[arcTargets[arc]] > ranks[arcSources[arc]] )
+                upwardOffsets[arcSources[arc] + 1]++;
+            else
+                downwardOffsets[arcTargets[arc] + 1]++;
+        }
+        for ( int node = 0; node < nodeCount; node++ )
+        {
+            upwardOffsets[node + 1] += upwardOffsets[node];
+            downwardOffsets[node + 1] += downwardOffsets[node];
+        }
+        upwardArcs = new int[upwardOffsets[nodeCount]];
+        downwardArcs = new int[downwardOffsets[nodeCount]];
+        int[] upwardPositions = Arrays.copyOf( upwardOffsets, nodeCount );
+        int[] downwardPositions = Arrays.copyOf( downwardOffsets, nodeCount );
+        for ( int arc = 0; arc < arcCount; arc++ )
+        {
+            if ( ranks[arcTargets[arc]] > ranks[arcSources[arc]] )
+                upwardArcs[upwardPositions[arcSources[arc]]++] = arc;
+            else
+                downwardArcs[downwardPositions[arcTargets[arc]]++] = arc;
+        }
+    }
+
+    public static void main( String[] args ) throws IOException
+    {
+        String errMsg = String.format( "Expected 1 parameter, found %s. Parameters should be <%s|%s>\n", args.length,
+                ShortestPathBench.DIRECTION_BOTH, ShortestPathBench.DIRECTION_OUT );
+
+        if ( args.length != 1 )
+        {
+            System.out.println( errMsg );
+            return;
+        }
+
+        if ( args[0].equals( ShortestPathBench.DIRECTION_BOTH ) == false
+             && args[0].equals( ShortestPathBench.DIRECTION_OUT ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", args[0], errMsg ) );
+            return;
+        }
+
+        Direction direction = ShortestPathBench.parseDirection( args[0] );
+
+        long startTime = System.currentTimeMillis();
+        CsrGraph graph = CsrGraph.loadFromRelationshipsFile( "weight" );
+        System.out.println( String.format( "Loaded %s in %s(ms)", graph, System.currentTimeMillis() - startTime ) );
+
+        startTime = System.currentTimeMillis();
+        ContractionHierarchy hierarchy = compute( graph, direction );
+        System.out.println( String.format( "Computed %s in %s(ms)", hierarchy, System.currentTimeMillis()
+                                                                            - startTime ) );
+
+        File hierarchyFile = file( direction );
+        hierarchy.write( hierarchyFile );
+        System.out.println( String.format( "Written to %s (%s bytes)", hierarchyFile, hierarchyFile.length() ) );
+    }
+
+    public static File file( Direction direction )
+    {
+        return new File( String.format( Config.CONTRACTION_HIERARCHY_FILE, direction.name().toLowerCase() ) );
+    }
+
+    // Uses the persisted hierarchy when it was computed for this graph (same checksum) and direction, otherwise
+    // computes and stores
+    public static ContractionHierarchy loadOrCompute( CsrGraph graph, Direction direction ) throws IOException
+    {
+        File hierarchyFile = file( direction );
+        if ( hierarchyFile.exists() && hasCurrentFormat( hierarchyFile ) )
+        {
+            ContractionHierarchy hierarchy = read( hierarchyFile );
+            if ( hierarchy.direction == direction && hierarchy.nodeCount == graph.nodeCount()
+                 && hierarchy.graphChecksum == graph.checksum() )
+            {
+                return hierarchy;
+            }
+        }
+        ContractionHierarchy hierarchy = compute( graph, direction );
+        hierarchy.write( hierarchyFile );
+        return hierarchy;
+    }
+
+    public static ContractionHierarchy compute( CsrGraph graph, Direction direction )
+    {
+        return new Contractor( graph, direction ).contractAll();
+    }
+
+    // Files written before the graph checksum was stored have another magic number
+    private static boolean hasCurrentFormat( File file ) throws IOException
+    {
+        DataInputStream in = new DataInputStream( new FileInputStream( file ) );
+        try
+        {
+            return file.length() >= 4 && in.readInt() == FILE_MAGIC;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public static ContractionHierarchy read( File file ) throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 1 << 16 ) );
+        try
+        {
+            if ( in.readInt() != FILE_MAGIC ) throw new IOException( "Not a contraction hierarchy file: " + file );
+            Direction direction = Direction.valueOf( in.readUTF() );
+            int nodeCount = in.readInt();
+            long graphChecksum = in.readLong();
+            int shortcutCount = in.readInt();
+            int arcCount = in.readInt();
+            int[] ranks = new int[nodeCount];
+            for ( int node = 0; node < nodeCount; node++ )
+            {
+                ranks[node] = in.readInt();
+            }
+            int[] arcSources = new int[arcCount];
+            int[] arcTargets = new int[arcCount];
+            double[] arcWeights = new double[arcCount];
+            long[] arcRelationshipIds = new long[arcCount];
+            int[] arcFirstChildren = new int[arcCount];
+            int[] arcSecondChildren = new int[arcCount];
+            for ( int arc = 0; arc < arcCount; arc++ )
+            {
+                arcSources[arc] = in.readInt();
+                arcTargets[arc] = in.readInt();
+                arcWeights[arc] = in.readDouble();
+                // Original arcs store their relationship, shortcuts store their children
+                if ( in.readBoolean() )
+                {
+                    arcRelationshipIds[arc] = -1;
+                    arcFirstChildren[arc] = in.readInt();
+                    arcSecondChildren[arc] = in.readInt();
+                }
+                else
+                {
+                    arcRelationshipIds[arc] = in.readLong();
+                    arcFirstChildren[arc] = -1;
+                    arcSecondChildren[arc] = -1;
+                }
+            }
+            return new ContractionHierarchy( direction, nodeCount, graphChecksum, shortcutCount, ranks, arcCount,
+                    arcSources, arcTargets, arcWeights, arcRelationshipIds, arcFirstChildren, arcSecondChildren );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public void write( File file ) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream( new FileOutputStream( file ), 1 << 16 ) );
+        try
+        {
+            out.writeInt( FILE_MAGIC );
+            out.writeUTF( direction.name() );
+            out.writeInt( nodeCount );
+            out.writeLong( graphChecksum );
+            out.writeInt( shortcutCount );
+            out.writeInt( arcCount );
+            for ( int node = 0; node < nodeCount; node++ )
+            {
+                out.writeInt( ranks[node] );
+            }
+            for ( int arc = 0; arc < arcCount; arc++ )
+            {
+                out.writeInt( arcSources[arc] );
+                out.writeInt( arcTargets[arc] );
+                out.writeDouble( arcWeights[arc] );
+                boolean shortcut = isShortcut( arc );
+                out.writeBoolean( shortcut );
+                if ( shortcut )
+                {
+                    out.writeInt( arcFirstChildren[arc] );
+                    out.writeInt( arcSecondChildren[arc] );
+                }
+                else
+                {
+                    out.writeLong( arcRelationshipIds[arc] );
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    public Direction direction()
+    {
+        return direction;
+    }
+
+    public int nodeCount()
+    {
+        return nodeCount;
+    }
+
+    public int shortcutCount()
+    {
+        return shortcutCount;
+    }
+
+    public int[] upwardOffsets()
+    {
+        return upwardOffsets;
+    }
+
+    public int[] upwardArcs()
+    {
+        return upwardArcs;
+    }
+
+    public int[] downwardOffsets()
+    {
+        return downwardOffsets;
+    }
+
+    public int[] downwardArcs()
+    {
+        return downwardArcs;
+    }
+
+    public int arcSource( int arc )
+    {
+        return arcSources[arc];
+    }
+
+    public int arcTarget( int arc )
+    {
+        return arcTargets[arc];
+    }
+
+    public double arcWeight( int arc )
+    {
+        return arcWeights[arc];
+    }
+
+    public boolean isShortcut( int arc )
+    {
+        return arcRelationshipIds[arc] < 0;
+    }
+
+    // Appends the relationships an arc stands for, in path order, returns the new path length
+    public int unpack( int arc, long[] relationshipIds, int length )
+    {
+        if ( false == isShortcut( arc ) )
+        {
+            relationshipIds[length] = arcRelationshipIds[arc];
+            return length + 1;
+        }
+        length = unpack( arcFirstChildren[arc], relationshipIds, length );
+        return unpack( arcSecondChildren[arc], relationshipIds, length );
+    }
+
+    public long memoryBytes()
+    {
+        // ranks + offsets, then per arc: source, target, weight, relationship, children and one adjacency entry
+        return nodeCount * 12L + arcCount * 40L;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "ContractionHierarchy[nodes=%s, arcs=%s, shortcuts=%s, direction=%s, memory=%s(KB)]",
+                nodeCount, arcCount, shortcutCount, direction, memoryBytes() / 1024 );
+    }
+
+    /**
+     * Mutable graph used while contracting. Arcs of a contracted node are removed from the adjacency lists of its
+     * remaining neighbours, so the lists only ever hold arcs between uncontracted nodes.
+     */
+    private static class Contractor
+    {
+        private final CsrGraph graph;
+        private final Direction direction;
+        private final int nodeCount;
+
+        private int arcCount = 0;
+        private int[] arcSources;
+        private int[] arcTargets;
+        private double[] arcWeights;
+        private long[] arcRelationshipIds;
+        private int[] arcFirstChildren;
+        private int[] arcSecondChildren;
+
+        private final int[][] outArcs;
+        private final int[] outArcCounts;
+        private final int[][] inArcs;
+        private final int[] inArcCounts;
+        private final int[] contractedNeighbours;
+        private final int[] ranks;
+
+        // Witness search state, reset by stamp
+        private final IndexedMinHeap witnessHeap;
+        private final double[] witnessDistances;
+        private final int[] witnessStamps;
+        private final int[] witnessTargetStamps;
+        private int witnessStamp = 0;
+
+        Contractor( CsrGraph graph, Direction direction )
+        {
+            this.graph = graph;
+            this.direction = direction;
+            this.nodeCount = graph.nodeCount();
+            int initialArcCapacity = Math.max( 16, graph.relationshipCount() * 2 );
+            arcSources = new int[initialArcCapacity];
+            arcTargets = new int[initialArcCapacity];
+            arcWeights = new double[initialArcCapacity];
+            arcRelationshipIds = new long[initialArcCapacity];
+            arcFirstChildren = new int[initialArcCapacity];
+            arcSecondChildren = new int[initialArcCapacity];
+            outArcs = new int[nodeCount][];
+            outArcCounts = new int[nodeCount];
+            inArcs = new int[nodeCount][];
+            inArcCounts = new int[nodeCount];
+            contractedNeighbours = new int[nodeCount];
+            ranks = new int[nodeCount];
+            witnessHeap = new IndexedMinHeap( nodeCount, HEAP_ARITY );
+            witnessDistances = new double[nodeCount];
+            witnessStamps = new int[nodeCount];
+            witnessTargetStamps = new int[nodeCount];
+        }
+
+        ContractionHierarchy contractAll()
+        {
+            int[] offsets = graph.offsets( Direction.OUTGOING );
+            int[] targets = graph.targets( Direction.OUTGOING );
+            long[] relationshipIds = graph.relationshipIds( Direction.OUTGOING );
+            float[] weights = graph.weights( Direction.OUTGOING );
+            for ( int node = 0; node < nodeCount; node++ )
+            {
+                for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+                {
+                    if ( targets[r] == node ) continue;
+                    addArc( node, targets[r], weights[r], relationshipIds[r], -1, -1 );
+                    if ( direction == Direction.BOTH )
+                    {
+                        addArc( targets[r], node, weights[r], relationshipIds[r], -1, -1 );
+                    }
+                }
+            }
+
+            IndexedMinHeap queue = new IndexedMinHeap( nodeCount, HEAP_ARITY );
+            for ( int node = 0; node < nodeCount; node++ )
+            {
+                queue.insertOrDecrease( node, priority( node ) );
+            }
+            int originalArcCount = arcCount;
+            int rank = 0;
+            while ( false == queue.isEmpty() )
+            {
+                int node = queue.poll();
+                // Priorities go stale as neighbours are contracted, they are only recomputed when a node comes up
+                double priority = priority( node );
+                if ( false == queue.isEmpty() && priority > queue.minKey() )
+                {
+                    queue.insertOrDecrease( node, priority );
+                    continue;
+                }
+                contract( node, false );
+                ranks[node] = rank++;
+                detach( node );
+            }
+
+            int shortcutCount = arcCount - originalArcCount;
+            return new ContractionHierarchy( direction, nodeCount, graph.checksum(), shortcutCount, ranks,
+                    arcCount, Arrays.copyOf( arcSources, arcCount ), Arrays.copyOf( arcTargets, arcCount ),
+                    Arrays.copyOf( arcWeights, arcCount ), Arrays.copyOf( arcRelationshipIds, arcCount ),
+                    Arrays.copyOf( arcFirstChildren, arcCount ), Arrays.copyOf( arcSecondChildren, arcCount ) );
+        }
+
+        // Edge difference plus contracted neighbours, which spreads contraction evenly over the graph
+        private double priority( int node )
+        {
+            int shortcuts = contract( node, true );
+            return shortcuts - outArcCounts[node] - inArcCounts[node] + contractedNeighbours[node];
+        }
+
+        // Returns the number of shortcuts contracting the node requires, only adds them if not simulating
+        private int contract( int node, boolean simulate )
+        {
+            int shortcuts = 0;
+            for ( int i = 0; i < inArcCounts[node]; i++ )
+            {
+                int inArc = inArcs[node][i];
+                int source = arcSources[inArc];
+
+                nextWitnessStamp();
+                double maxWeight = -1;
+                int targetCount = 0;
+                for ( int j = 0; j < outArcCounts[node]; j++ )
+                {
+                    int outArc = outArcs[node][j];
+                    int target = arcTargets[outArc];
+                    if ( target == source ) continue;
+                    maxWeight = Math.max( maxWeight, arcWeights[inArc] + arcWeights[outArc] );
+                    if ( witnessTargetStamps[target] != witnessStamp )
+                    {
+                        witnessTargetStamps[target] = witnessStamp;
+                        targetCount++;
+                    }
+                }
+                if ( targetCount == 0 ) continue;
+
+                witnessSearch( source, node, maxWeight, targetCount, ( simulate ) ? SIMULATED_WITNESS_SETTLE_LIMIT
+                        : WITNESS_SETTLE_LIMIT );
+                for ( int j = 0; j < outArcCounts[node]; j++ )
+                {
+                    int outArc = outArcs[node][j];
+                    int target = arcTargets[outArc];
+                    if ( target == source ) continue;
+                    double weight = arcWeights[inArc] + arcWeights[outArc];
+                    if ( witnessStamps[target] == witnessStamp && witnessDistances[target] <= weight ) continue;
+                    shortcuts++;
+                    if ( false == simulate )
+                    {
+                        addArc( source, target, weight, -1, inArc, outArc );
+                        // Later pairs from the same source can use this shortcut as their witness
+                        witnessStamps[target] = witnessStamp;
+                        witnessDistances[target] = weight;
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        private void nextWitnessStamp()
+        {
+            if ( ++witnessStamp == Integer.MAX_VALUE )
+            {
+                Arrays.fill( witnessStamps, 0 );
+                Arrays.fill( witnessTargetStamps, 0 );
+                witnessStamp = 1;
+            }
+        }
+
+        // Bounded Dijkstra from source over uncontracted nodes, avoiding the node being contracted. Stops once every
+        // target is settled, nothing is cheaper than the most expensive path via the avoided node or the limit is hit
+        private void witnessSearch( int source, int avoid, double maxWeight, int targetCount, int settleLimit )
+        {
+            witnessStamps[source] = witnessStamp;
+            witnessDistances[source] = 0;
+            witnessHeap.insertOrDecrease( source, 0 );
+            int settled = 0;
+            while ( false == witnessHeap.isEmpty() && settled < settleLimit && targetCount > 0 )
+            {
+                if ( witnessHeap.minKey() > maxWeight ) break;
+                int node = witnessHeap.poll();
+                settled++;
+                if ( witnessTargetStamps[node] == witnessStamp ) targetCount--;
+                double distance = witnessDistances[node];
+                for ( int i = 0; i < outArcCounts[node]; i++ )
+                {
+                    int arc = outArcs[node][i];
+                    int target = arcTargets[arc];
+                    if ( target == avoid ) continue;
+                    double targetDistance = distance + arcWeights[arc];
+                    if ( targetDistance > maxWeight ) continue;
+                    if ( witnessStamps[target] == witnessStamp && targetDistance >= witnessDistances[target] )
+                        continue;
+                    witnessStamps[target] = witnessStamp;
+                    witnessDistances[target] = targetDistance;
+                    witnessHeap.insertOrDecrease( target, targetDistance );
+                }
+            }
+            witnessHeap.clear();
+        }
+
+        // Removes the arcs of a contracted node from its neighbours
+        private void detach( int node )
+        {
+            for ( int i = 0; i < outArcCounts[node]; i++ )
+            {
+                int target = arcTargets[outArcs[node][i]];
+                inArcCounts[target] = remove( inArcs[target], inArcCounts[target], outArcs[node][i] );
+                contractedNeighbours[target]++;
+            }
+            for ( int i = 0; i < inArcCounts[node]; i++ )
+            {
+                int source = arcSources[inArcs[node][i]];
+                outArcCounts[source] = remove( outArcs[source], outArcCounts[source], inArcs[node][i] );
+                contractedNeighbours[source]++;
+            }
+            outArcs[node] = null;
+            outArcCounts[node] = 0;
+            inArcs[node] = null;
+            inArcCounts[node] = 0;
+        }
+
+        private void addArc( int source, int target, double weight, long relationshipId, int firstChild,
+                int secondChild )
+        {
+            if ( arcCount == arcSources.length )
+            {
+                int capacity = arcCount * 2;
+                arcSources = Arrays.copyOf( arcSources, capacity );
+                arcTargets = Arrays.copyOf( arcTargets, capacity );
+                arcWeights = Arrays.copyOf( arcWeights, capacity );
+                arcRelationshipIds = Arrays.copyOf( arcRelationshipIds, capacity );
+                arcFirstChildren = Arrays.copyOf( arcFirstChildren, capacity );
+                arcSecondChildren = Arrays.copyOf( arcSecondChildren, capacity );
+            }
+            int arc = arcCount++;
+            arcSources[arc] = source;
+            arcTargets[arc] = target;
+            arcWeights[arc] = weight;
+            arcRelationshipIds[arc] = relationshipId;
+            arcFirstChildren[arc] = firstChild;
+            arcSecondChildren[arc] = secondChild;
+            outArcs[source] = append( outArcs[source], outArcCounts[source]++, arc );
+            inArcs[target] = append( inArcs[target], inArcCounts[target]++, arc );
+        }
+
+        private static int[] append( int[] arcs, int index, int arc )
+        {
+            if ( null == arcs )
+            {
+                arcs = new int[4];
+            }
+            else if ( index == arcs.length )
+            {
+                arcs = Arrays.copyOf( arcs, index * 2 );
+            }
+            arcs[index] = arc;
+            return arcs;
+        }
+
+        // Swaps the last arc into the removed one's slot, returns the new count
+        private static int remove( int[] arcs, int count, int arc )
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                if ( arcs[i] == arc )
+                {
+                    arcs[i] = arcs[count - 1];
+                    return count - 1;
+                }
+            }
+            return count;
+        }
+    }
+}
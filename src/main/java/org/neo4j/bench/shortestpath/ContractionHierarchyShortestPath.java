@@ -0,0 +1,213 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.WeightedPathImpl;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
+
+/**
+ * Weighted shortest path query on a {@link ContractionHierarchy}: a bidirectional Dijkstra where the forward search
+ * only follows arcs up the hierarchy from the start node and the backward search only follows arcs down to the end
+ * node, in reverse. The searches meet at the highest ranked node of the path, shortcuts are then unpacked into the
+ * original relationships. The hierarchy only preserves one minimal cost path per pair, so findAllPaths returns at
+ * most that one path.
+ */
+public class ContractionHierarchyShortestPath implements PathFinder<WeightedPath>
+{
+    private static final int HEAP_ARITY = 4;
+
+    private final GraphDatabaseService db;
+    private final ContractionHierarchy hierarchy;
+    private final ThreadLocal<SearchState> searchStates = new ThreadLocal<SearchState>()
+    {
+        @Override
+        protected SearchState initialValue()
+        {
+            return new SearchState( hierarchy.nodeCount() );
+        }
+    };
+
+    public ContractionHierarchyShortestPath( GraphDatabaseService db, ContractionHierarchy hierarchy )
+    {
+        this.db = db;
+        this.hierarchy = hierarchy;
+    }
+
+    @Override
+    public WeightedPath findSinglePath( Node start, Node end )
+    {
+        int startNode = (int) start.getId();
+        int endNode = (int) end.getId();
+        if ( false == contains( startNode ) || false == contains( endNode ) ) return null;
+        SearchState state = searchStates.get();
+        state.reset();
+        try
+        {
+            int meetingNode = search( state, startNode, endNode );
+            if ( meetingNode < 0 ) return null;
+            // Upward arcs are collected from the meeting node back to the start, then unpacked in path order
+            int arcCount = 0;
+            for ( int node = meetingNode; node != startNode; )
+            {
+                int arc = state.forward.parentArcs[node];
+                state.pathArcs[arcCount++] = arc;
+                node = hierarchy.arcSource( arc );
+            }
+            long[] path = state.pathRelationshipIds;
+            int length = 0;
+            for ( int i = arcCount - 1; i >= 0; i-- )
+            {
+                length = hierarchy.unpack( state.pathArcs[i], path, length );
+            }
+            for ( int node = meetingNode; node != endNode; )
+            {
+                int arc = state.backward.parentArcs[node];
+                length = hierarchy.unpack( arc, path, length );
+                node = hierarchy.arcTarget( arc );
+            }
+            state.pathsReturned = 1;
+            double cost = state.forward.distances[meetingNode] + state.backward.distances[meetingNode];
+            return new WeightedPathImpl( cost, GraphUtils.buildPath( db, startNode, path, length ) );
+        }
+        finally
+        {
+            state.forward.heap.clear();
+            state.backward.heap.clear();
+        }
+    }
+
+    @Override
+    public Iterable<WeightedPath> findAllPaths( Node start, Node end )
+    {
+        WeightedPath path = findSinglePath( start, end );
+        return ( null == path ) ? Collections.<WeightedPath>emptyList() : Collections.singletonList( path );
+    }
+
+    @Override
+    public TraversalMetadata metadata()
+    {
+        final SearchState state = searchStates.get();
+        return new TraversalMetadata()
+        {
+            @Override
+            public int getNumberOfPathsReturned()
+            {
+                return state.pathsReturned;
+            }
+
+            @Override
+            public int getNumberOfRelationshipsTraversed()
+            {
+                return (int) Math.min( Integer.MAX_VALUE, state.relationshipsTraversed );
+            }
+        };
+    }
+
+    private boolean contains( int node )
+    {
+        return node >= 0 && node < hierarchy.nodeCount();
+    }
+
+    // Returns the node where the cheapest path crosses from the upward to the downward search, -1 if none
+    private int search( SearchState state, int startNode, int endNode )
+    {
+        int stamp = state.stamp;
+        Side forward = state.forward;
+        Side backward = state.backward;
+        forward.reach( startNode, stamp, 0, -1 );
+        forward.heap.insertOrDecrease( startNode, 0 );
+        backward.reach( endNode, stamp, 0, -1 );
+        backward.heap.insertOrDecrease( endNode, 0 );
+        double bestCost = Double.POSITIVE_INFINITY;
+        int meetingNode = -1;
+        while ( false == forward.heap.isEmpty() || false == backward.heap.isEmpty() )
+        {
+            double forwardMin = ( forward.heap.isEmpty() ) ? Double.POSITIVE_INFINITY : forward.heap.minKey();
+            double backwardMin = ( backward.heap.isEmpty() ) ? Double.POSITIVE_INFINITY : backward.heap.minKey();
+            // Neither search can still improve on the best meeting
+            if ( Math.min( forwardMin, backwardMin ) >= bestCost ) break;
+            boolean expandForward = forwardMin <= backwardMin;
+            Side expanding = ( expandForward ) ? forward : backward;
+            Side other = ( expandForward ) ? backward : forward;
+            int node = expanding.heap.poll();
+            double distance = expanding.distances[node];
+            if ( other.stamps[node] == stamp && distance + other.distances[node] < bestCost )
+            {
+                bestCost = distance + other.distances[node];
+                meetingNode = node;
+            }
+            int[] offsets = ( expandForward ) ? hierarchy.upwardOffsets() : hierarchy.downwardOffsets();
+            int[] arcs = ( expandForward ) ? hierarchy.upwardArcs() : hierarchy.downwardArcs();
+            for ( int i = offsets[node]; i < offsets[node + 1]; i++ )
+            {
+                state.relationshipsTraversed++;
+                int arc = arcs[i];
+                int target = ( expandForward ) ? hierarchy.arcTarget( arc ) : hierarchy.arcSource( arc );
+                double targetDistance = distance + hierarchy.arcWeight( arc );
+                if ( expanding.stamps[target] == stamp && targetDistance >= expanding.distances[target] ) continue;
+                expanding.reach( target, stamp, targetDistance, arc );
+                expanding.heap.insertOrDecrease( target, targetDistance );
+            }
+        }
+        return meetingNode;
+    }
+
+    private static class Side
+    {
+        private final int[] stamps;
+        private final double[] distances;
+        private final int[] parentArcs;
+        private final IndexedMinHeap heap;
+
+        Side( int nodeCount )
+        {
+            stamps = new int[nodeCount];
+            distances = new double[nodeCount];
+            parentArcs = new int[nodeCount];
+            heap = new IndexedMinHeap( nodeCount, HEAP_ARITY );
+        }
+
+        void reach( int node, int stamp, double distance, int parentArc )
+        {
+            stamps[node] = stamp;
+            distances[node] = distance;
+            parentArcs[node] = parentArc;
+        }
+    }
+
+    private static class SearchState
+    {
+        private final Side forward;
+        private final Side backward;
+        private final int[] pathArcs;
+        private final long[] pathRelationshipIds;
+        private int stamp = 0;
+        private int pathsReturned;
+        private long relationshipsTraversed;
+
+        SearchState( int nodeCount )
+        {
+            forward = new Side( nodeCount );
+            backward = new Side( nodeCount );
+            pathArcs = new int[nodeCount];
+            pathRelationshipIds = new long[nodeCount];
+        }
+
+        void reset()
+        {
+            if ( ++stamp == Integer.MAX_VALUE )
+            {
+                Arrays.fill( forward.stamps, 0 );
+                Arrays.fill( backward.stamps, 0 );
+                stamp = 1;
+            }
+            pathsReturned = 0;
+            relationshipsTraversed = 0;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Read-only, compressed-sparse-row snapshot of a graph. Nodes are indexed directly by their Neo4j id, so the id space
+ * is expected to be dense (as produced by {@link InputFilesCreator} and the batch importers). Both the outgoing and
+ * the incoming adjacency are kept, each as an offset array plus parallel target, relationship id and weight arrays.
+ */
+public class CsrGraph
+{
+    private final int nodeCount;
+    private final int relationshipCount;
+
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final long[] outRelationshipIds;
+    private final float[] outWeights;
+
+    private final int[] inOffsets;
+    private final int[] inTargets;
+    private final long[] inRelationshipIds;
+    private final float[] inWeights;
+
+    private CsrGraph( int nodeCount, int relationshipCount, int[] outOffsets, int[] outTargets,
+            long[] outRelationshipIds, float[] outWeights, int[] inOffsets, int[] inTargets, long[] inRelationshipIds,
+            float[] inWeights )
+    {
+        this.nodeCount = nodeCount;
+        this.relationshipCount = relationshipCount;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outRelationshipIds = outRelationshipIds;
+        this.outWeights = outWeights;
+        this.inOffsets = inOffsets;
+        this.inTargets = inTargets;
+        this.inRelationshipIds = inRelationshipIds;
+        this.inWeights = inWeights;
+    }
+
+    // Relationships are assumed to have been imported in file order, so relationship id == line number (no header)
+    public static CsrGraph loadFromRelationshipsCsv( File relationshipsCsvFile, String weightProperty )
+            throws IOException
+    {
+        MappedCsvParser parser = new MappedCsvParser( relationshipsCsvFile, ',' );
+        try
+        {
+            String[] headers = parser.nextStrings();
+            int weightColumn = -1;
+            for ( int i = 0; null != headers && i < headers.length; i++ )
+            {
+                if ( headers[i].split( "@" )[0].equals( weightProperty ) ) weightColumn = i;
+            }
+            RelationshipsCsvHandler handler = new RelationshipsCsvHandler( weightColumn );
+            parser.parse( handler );
+            return handler.builder.build();
+        }
+        finally
+        {
+            parser.close();
+        }
+    }
+
+    // Relationship id == record number, as for the CSV file, only the weight property is stored in binary files
+    public static CsrGraph loadFromRelationshipsBinary( File relationshipsBinaryFile, String weightProperty )
+            throws IOException
+    {
+        BinaryGraphFile.Reader reader = new BinaryGraphFile.Reader( relationshipsBinaryFile );
+        try
+        {
+            if ( reader.type() != BinaryGraphFile.RecordType.RELATIONSHIPS )
+                throw new IOException( String.format( "Expected relationships in [%s], found %s",
+                        relationshipsBinaryFile, reader.type() ) );
+            boolean weighted = weightProperty.equals( "weight" );
+            Builder builder = new Builder();
+            long relationshipId = 0;
+            while ( reader.next() )
+            {
+                builder.add( reader.firstId(), reader.secondId(), relationshipId++, ( weighted ) ? reader.weight()
+                        : 1F );
+            }
+            return builder.build();
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    // The generated relationships, from the binary file when it is current, else from the CSV file
+    public static CsrGraph loadFromRelationshipsFile( String weightProperty ) throws IOException
+    {
+        File binaryFile = new File( Config.RELATIONSHIP_BINARY_FILE );
+        File csvFile = new File( Config.RELATIONSHIP_ID_FILE );
+        return ( BinaryGraphFile.isCurrent( binaryFile, csvFile ) ) ? loadFromRelationshipsBinary( binaryFile,
+                weightProperty ) : loadFromRelationshipsCsv( csvFile, weightProperty );
+    }
+
+    public static CsrGraph loadFromDatabase( GraphDatabaseService db, String weightProperty )
+    {
+        Builder builder = new Builder();
+        for ( Relationship relationship : GlobalGraphOperations.at( db ).getAllRelationships() )
+        {
+            Object weight = relationship.getProperty( weightProperty, null );
+            builder.add( relationship.getStartNode().getId(), relationship.getEndNode().getId(), relationship.getId(),
+                    ( weight instanceof Number ) ? ( (Number) weight ).floatValue() : 1F );
+        }
+        return builder.build();
+    }
+
+    public int nodeCount()
+    {
+        return nodeCount;
+    }
+
+    public int relationshipCount()
+    {
+        return relationshipCount;
+    }
+
+    public int[] offsets( Direction direction )
+    {
+        return ( direction == Direction.INCOMING ) ? inOffsets : outOffsets;
+    }
+
+    public int[] targets( Direction direction )
+    {
+        return ( direction == Direction.INCOMING ) ? inTargets : outTargets;
+    }
+
+    public long[] relationshipIds( Direction direction )
+    {
+        return ( direction == Direction.INCOMING ) ? inRelationshipIds : outRelationshipIds;
+    }
+
+    public float[] weights( Direction direction )
+    {
+        return ( direction == Direction.INCOMING ) ? inWeights : outWeights;
+    }
+
+    public int degree( int node, Direction direction )
+    {
+        int degree = 0;
+        if ( direction != Direction.INCOMING ) degree += outOffsets[node + 1] - outOffsets[node];
+        if ( direction != Direction.OUTGOING ) degree += inOffsets[node + 1] - inOffsets[node];
+        return degree;
+    }
+
+    /**
+     * Hash of the outgoing adjacency, relationship ids and weights. Preprocessed files store it, so they are not
+     * reused for a graph with the same counts but other weights or node ids.
+     */
+    public long checksum()
+    {
+        long checksum = GraphGenerator.mix( nodeCount * 31L + relationshipCount );
+        for ( int node = 0; node <= nodeCount; node++ )
+        {
+            checksum = GraphGenerator.mix( checksum ^ outOffsets[node] );
+        }
+        for ( int r = 0; r < relationshipCount; r++ )
+        {
+            checksum = GraphGenerator.mix( checksum ^ outTargets[r] );
+            checksum = GraphGenerator.mix( checksum ^ outRelationshipIds[r] );
+            checksum = GraphGenerator.mix( checksum ^ Float.floatToIntBits( outWeights[r] ) );
+        }
+        return checksum;
+    }
+
+    public long memoryBytes()
+    {
+        long perRelationship = 4 + 8 + 4;
+        return 2 * ( ( nodeCount + 1L ) * 4 + relationshipCount * perRelationship );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "CsrGraph[nodes=%s, relationships=%s, memory=%s(MB)]", nodeCount, relationshipCount,
+                memoryBytes() / ( 1024 * 1024 ) );
+    }
+
+    // Columns are from, to, then any others, relationship id is the line number
+    private static class RelationshipsCsvHandler implements CsvColumnHandler
+    {
+        private final Builder builder = new Builder();
+        private final int weightColumn;
+        private long relationshipId = 0;
+        private long startNodeId = -1;
+        private long endNodeId = -1;
+        private float weight = 1F;
+
+        RelationshipsCsvHandler( int weightColumn )
+        {
+            this.weightColumn = weightColumn;
+        }
+
+        @Override
+        public void onLong( int column, long value )
+        {
+            if ( column == 0 ) startNodeId = value;
+            else if ( column == 1 ) endNodeId = value;
+            else if ( column == weightColumn ) weight = value;
+        }
+
+        @Override
+        public void onDouble( int column, double value )
+        {
+            if ( column == weightColumn ) weight = (float) value;
+        }
+
+        @Override
+        public void onText( int column, ByteBuffer buffer, int start, int end )
+        {
+            if ( column <= 1 || column == weightColumn )
+                throw new IllegalArgumentException( String.format( "Column %s of line %s is not a number", column,
+                        relationshipId + 2 ) );
+        }
+
+        @Override
+        public void onLineEnd( int columnCount )
+        {
+            builder.add( startNodeId, endNodeId, relationshipId++, weight );
+            weight = 1F;
+        }
+    }
+
+    public static class Builder
+    {
+        private int[] froms = new int[1024];
+        private int[] tos = new int[1024];
+        private long[] relationshipIds = new long[1024];
+        private float[] weights = new float[1024];
+        private int size = 0;
+        private int maxNodeId = -1;
+
+        public void add( long from, long to, long relationshipId, float weight )
+        {
+            if ( from > Integer.MAX_VALUE - 1 || to > Integer.MAX_VALUE - 1 )
+            {
+                throw new IllegalArgumentException( String.format( "Node id too large for snapshot: %s->%s", from,
+                        to ) );
+            }
+            if ( size == froms.length )
+            {
+                int capacity = size * 2;
+                froms = Arrays.copyOf( froms, capacity );
+                tos = Arrays.copyOf( tos, capacity );
+                relationshipIds = Arrays.copyOf( relationshipIds, capacity );
+                weights = Arrays.copyOf( weights, capacity );
+            }
+            froms[size] = (int) from;
+            tos[size] = (int) to;
+            relationshipIds[size] = relationshipId;
+            weights[size] = weight;
+            size++;
+            maxNodeId = Math.max( maxNodeId, Math.max( (int) from, (int) to ) );
+        }
+
+        public CsrGraph build()
+        {
+            int nodeCount = maxNodeId + 1;
+            int[] outOffsets = new int[nodeCount + 1];
+            int[] inOffsets = new int[nodeCount + 1];
+            for ( int i = 0; i < size; i++ )
+            {
+                outOffsets[froms[i] + 1]++;
+                inOffsets[tos[i] + 1]++;
+            }
+            for ( int node = 0; node < nodeCount; node++ )
+            {
+                outOffsets[node + 1] += outOffsets[node];
+                inOffsets[node + 1] += inOffsets[node];
+            }
+
+            int[] outTargets = new int[size];
+            long[] outRelationshipIds = new long[size];
+            float[] outWeights = new float[size];
+            int[] inTargets = new int[size];
+            long[] inRelationshipIds = new long[size];
+            float[] inWeights = new float[size];
+            int[] outCursors = Arrays.copyOf( outOffsets, nodeCount );
+            int[] inCursors = Arrays.copyOf( inOffsets, nodeCount );
+            for ( int i = 0; i < size; i++ )
+            {
+                int out = outCursors[froms[i]]++;
+                outTargets[out] = tos[i];
+                outRelationshipIds[out] = relationshipIds[i];
+                outWeights[out] = weights[i];
+                int in = inCursors[tos[i]]++;
+                inTargets[in] = froms[i];
+                inRelationshipIds[in] = relationshipIds[i];
+                inWeights[in] = weights[i];
+            }
+            return new CsrGraph( nodeCount, size, outOffsets, outTargets, outRelationshipIds, outWeights, inOffsets,
+                    inTargets, inRelationshipIds, inWeights );
+        }
+    }
+}
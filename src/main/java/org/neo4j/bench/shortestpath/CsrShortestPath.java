@@ -0,0 +1,385 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
+
+/**
+ * Unweighted shortest path over a {@link CsrGraph}, same contract as {@code GraphAlgoFactory.shortestPath}. A single
+ * path is found with a level-synchronous bidirectional BFS that always expands the smaller frontier, all shortest
+ * paths with a forward BFS followed by a walk back over the BFS layers. Batches of pairs sharing a start (or end)
+ * node are answered from one BFS tree that grows until all targets are visited. All search state is preallocated per
+ * thread and reset by bumping a stamp, so the search itself does not allocate, only the returned {@link Path}s do.
+ */
+public class CsrShortestPath implements PathFinder<Path>, BatchPathFinder<Path>
+{
+    private final GraphDatabaseService db;
+    private final CsrGraph graph;
+    private final Direction direction;
+    private final ThreadLocal<SearchState> searchStates = new ThreadLocal<SearchState>()
+    {
+        @Override
+        protected SearchState initialValue()
+        {
+            return new SearchState( graph.nodeCount() );
+        }
+    };
+
+    public CsrShortestPath( GraphDatabaseService db, CsrGraph graph, Direction direction )
+    {
+        this.db = db;
+        this.graph = graph;
+        this.direction = direction;
+    }
+
+    @Override
+    public Path findSinglePath( Node start, Node end )
+    {
+        int startNode = (int) start.getId();
+        int endNode = (int) end.getId();
+        if ( false == contains( startNode ) || false == contains( endNode ) ) return null;
+        SearchState state = searchStates.get();
+        state.reset();
+        if ( startNode == endNode ) return GraphUtils.buildPath( db, startNode, state.pathRelationshipIds, 0 );
+
+        Side forward = state.forward;
+        Side backward = state.backward;
+        forward.start( startNode, direction );
+        backward.start( endNode, direction.reverse() );
+        while ( forward.hasFrontier() && backward.hasFrontier() )
+        {
+            boolean expandForward = forward.frontierSize() <= backward.frontierSize();
+            Side expanding = ( expandForward ) ? forward : backward;
+            Side other = ( expandForward ) ? backward : forward;
+            if ( expandLevel( state, expanding, other ) )
+            {
+                return buildMeetingPath( state, startNode );
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterable<Path> findAllPaths( Node start, Node end )
+    {
+        int startNode = (int) start.getId();
+        int endNode = (int) end.getId();
+        if ( false == contains( startNode ) || false == contains( endNode ) ) return Collections.emptyList();
+        SearchState state = searchStates.get();
+        state.reset();
+        if ( startNode == endNode )
+        {
+            return Collections.singletonList( GraphUtils.buildPath( db, startNode, state.pathRelationshipIds, 0 ) );
+        }
+
+        Side forward = state.forward;
+        forward.start( startNode, direction );
+        while ( forward.hasFrontier() && false == forward.isVisited( endNode, state.stamp ) )
+        {
+            expandLevel( state, forward, null );
+        }
+        if ( false == forward.isVisited( endNode, state.stamp ) ) return Collections.emptyList();
+
+        List<Path> paths = new ArrayList<Path>();
+        int length = forward.distances[endNode];
+        collectPaths( state, startNode, endNode, length, length, paths );
+        return paths;
+    }
+
+    @Override
+    public List<Path> findSinglePathsFrom( Node start, List<Node> ends )
+    {
+        return findSinglePaths( start, ends, false );
+    }
+
+    @Override
+    public List<Path> findSinglePathsTo( List<Node> starts, Node end )
+    {
+        return findSinglePaths( end, starts, true );
+    }
+
+    @Override
+    public TraversalMetadata metadata()
+    {
+        final SearchState state = searchStates.get();
+        return new TraversalMetadata()
+        {
+            @Override
+            public int getNumberOfPathsReturned()
+            {
+                return state.pathsReturned;
+            }
+
+            @Override
+            public int getNumberOfRelationshipsTraversed()
+            {
+                return (int) Math.min( Integer.MAX_VALUE, state.relationshipsTraversed );
+            }
+        };
+    }
+
+    // Nodes without relationships may lie beyond the end of the snapshot
+    private boolean contains( int node )
+    {
+        return node >= 0 && node < graph.nodeCount();
+    }
+
+    // One BFS from the source, in reverse when the source is the end node of all pairs
+    private List<Path> findSinglePaths( Node source, List<Node> targets, boolean reverse )
+    {
+        List<Path> paths = new ArrayList<Path>( targets.size() );
+        SearchState state = searchStates.get();
+        state.reset();
+        int sourceNode = (int) source.getId();
+        if ( false == contains( sourceNode ) )
+        {
+            for ( int i = 0; i < targets.size(); i++ )
+            {
+                paths.add( null );
+            }
+            return paths;
+        }
+
+        int remainingTargets = 0;
+        for ( Node target : targets )
+        {
+            int targetNode = (int) target.getId();
+            if ( contains( targetNode ) && state.targetStamps[targetNode] != state.stamp )
+            {
+                state.targetStamps[targetNode] = state.stamp;
+                remainingTargets++;
+            }
+        }
+        Side tree = state.forward;
+        tree.start( sourceNode, ( reverse ) ? direction.reverse() : direction );
+        if ( state.targetStamps[sourceNode] == state.stamp ) remainingTargets--;
+        while ( remainingTargets > 0 && tree.hasFrontier() )
+        {
+            int levelStart = tree.tail;
+            expandLevel( state, tree, null );
+            for ( int i = levelStart; i < tree.tail; i++ )
+            {
+                if ( state.targetStamps[tree.queue[i]] == state.stamp ) remainingTargets--;
+            }
+        }
+
+        for ( Node target : targets )
+        {
+            int targetNode = (int) target.getId();
+            if ( false == contains( targetNode ) || false == tree.isVisited( targetNode, state.stamp ) )
+            {
+                paths.add( null );
+                continue;
+            }
+            // Walking the tree from a target gives the relationships from end to start, reversed if the tree was
+            // grown backwards from the end node
+            long[] path = state.pathRelationshipIds;
+            int length = tree.distances[targetNode];
+            for ( int i = 0, node = targetNode; i < length; i++ )
+            {
+                path[( reverse ) ? i : length - 1 - i] = tree.parentRelationshipIds[node];
+                node = tree.parents[node];
+            }
+            long startNode = ( reverse ) ? targetNode : sourceNode;
+            paths.add( GraphUtils.buildPath( db, startNode, path, length ) );
+            state.pathsReturned++;
+        }
+        return paths;
+    }
+
+    // Expands one full BFS level, returns true if the other side (if any) was met during this level
+    private boolean expandLevel( SearchState state, Side expanding, Side other )
+    {
+        int stamp = state.stamp;
+        int levelEnd = expanding.tail;
+        for ( int i = expanding.head; i < levelEnd; i++ )
+        {
+            int node = expanding.queue[i];
+            int nextDistance = expanding.distances[node] + 1;
+            for ( int pass = 0; pass < 2; pass++ )
+            {
+                Direction adjacency = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+                if ( expanding.direction != Direction.BOTH && expanding.direction != adjacency ) continue;
+                int[] offsets = graph.offsets( adjacency );
+                int[] targets = graph.targets( adjacency );
+                long[] relationshipIds = graph.relationshipIds( adjacency );
+                for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+                {
+                    state.relationshipsTraversed++;
+                    int target = targets[r];
+                    if ( null != other && other.isVisited( target, stamp ) )
+                    {
+                        int length = nextDistance + other.distances[target];
+                        if ( length < state.meetingLength )
+                        {
+                            state.meetingLength = length;
+                            state.meetingFrom = node;
+                            state.meetingTo = target;
+                            state.meetingRelationshipId = relationshipIds[r];
+                            state.meetingForward = ( expanding == state.forward );
+                        }
+                        continue;
+                    }
+                    if ( expanding.isVisited( target, stamp ) ) continue;
+                    expanding.visit( target, stamp, node, relationshipIds[r], nextDistance );
+                }
+            }
+        }
+        expanding.head = levelEnd;
+        return state.meetingLength < Integer.MAX_VALUE;
+    }
+
+    private Path buildMeetingPath( SearchState state, int startNode )
+    {
+        int forwardNode = ( state.meetingForward ) ? state.meetingFrom : state.meetingTo;
+        int backwardNode = ( state.meetingForward ) ? state.meetingTo : state.meetingFrom;
+        long[] path = state.pathRelationshipIds;
+        int forwardLength = state.forward.distances[forwardNode];
+        for ( int i = forwardLength - 1, node = forwardNode; i >= 0; i-- )
+        {
+            path[i] = state.forward.parentRelationshipIds[node];
+            node = state.forward.parents[node];
+        }
+        path[forwardLength] = state.meetingRelationshipId;
+        int length = forwardLength + 1;
+        for ( int node = backwardNode; state.backward.distances[node] > 0; node = state.backward.parents[node] )
+        {
+            path[length++] = state.backward.parentRelationshipIds[node];
+        }
+        state.pathsReturned = 1;
+        return GraphUtils.buildPath( db, startNode, path, length );
+    }
+
+    // Walks back from the end node over every relationship that leads one BFS layer closer to the start node
+    private void collectPaths( SearchState state, int startNode, int node, int distance, int length,
+            List<Path> paths )
+    {
+        if ( distance == 0 )
+        {
+            paths.add( GraphUtils.buildPath( db, startNode, state.pathRelationshipIds, length ) );
+            state.pathsReturned++;
+            return;
+        }
+        Side forward = state.forward;
+        Direction reverse = direction.reverse();
+        for ( int pass = 0; pass < 2; pass++ )
+        {
+            Direction adjacency = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+            if ( reverse != Direction.BOTH && reverse != adjacency ) continue;
+            int[] offsets = graph.offsets( adjacency );
+            int[] targets = graph.targets( adjacency );
+            long[] relationshipIds = graph.relationshipIds( adjacency );
+            for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+            {
+                int previous = targets[r];
+                if ( forward.isVisited( previous, state.stamp ) && forward.distances[previous] == distance - 1 )
+                {
+                    state.pathRelationshipIds[distance - 1] = relationshipIds[r];
+                    collectPaths( state, startNode, previous, distance - 1, length, paths );
+                }
+            }
+        }
+    }
+
+    private static class Side
+    {
+        private final int[] stamps;
+        private final int[] parents;
+        private final long[] parentRelationshipIds;
+        private final int[] distances;
+        private final int[] queue;
+        private int head;
+        private int tail;
+        private Direction direction;
+        private int stamp;
+
+        Side( int nodeCount )
+        {
+            stamps = new int[nodeCount];
+            parents = new int[nodeCount];
+            parentRelationshipIds = new long[nodeCount];
+            distances = new int[nodeCount];
+            queue = new int[nodeCount];
+        }
+
+        void start( int node, Direction direction )
+        {
+            this.direction = direction;
+            head = 0;
+            tail = 0;
+            visit( node, stamp, -1, -1, 0 );
+        }
+
+        void visit( int node, int stamp, int parent, long parentRelationshipId, int distance )
+        {
+            stamps[node] = stamp;
+            parents[node] = parent;
+            parentRelationshipIds[node] = parentRelationshipId;
+            distances[node] = distance;
+            queue[tail++] = node;
+        }
+
+        boolean isVisited( int node, int stamp )
+        {
+            return stamps[node] == stamp;
+        }
+
+        boolean hasFrontier()
+        {
+            return head < tail;
+        }
+
+        int frontierSize()
+        {
+            return tail - head;
+        }
+    }
+
+    private static class SearchState
+    {
+        private final Side forward;
+        private final Side backward;
+        private final long[] pathRelationshipIds;
+        private final int[] targetStamps;
+        private int stamp = 0;
+        private int meetingLength;
+        private int meetingFrom;
+        private int meetingTo;
+        private long meetingRelationshipId;
+        private boolean meetingForward;
+        private int pathsReturned;
+        private long relationshipsTraversed;
+
+        SearchState( int nodeCount )
+        {
+            forward = new Side( nodeCount );
+            backward = new Side( nodeCount );
+            pathRelationshipIds = new long[nodeCount];
+            targetStamps = new int[nodeCount];
+        }
+
+        void reset()
+        {
+            if ( ++stamp == Integer.MAX_VALUE )
+            {
+                Arrays.fill( forward.stamps, 0 );
+                Arrays.fill( backward.stamps, 0 );
+                Arrays.fill( targetStamps, 0 );
+                stamp = 1;
+            }
+            forward.stamp = stamp;
+            backward.stamp = stamp;
+            meetingLength = Integer.MAX_VALUE;
+            pathsReturned = 0;
+            relationshipsTraversed = 0;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.neo4j.bench.shortestpath;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the columns of every line parsed by {@link MappedCsvParser}, in column order, without allocating.
+ */
+public interface CsvColumnHandler
+{
+    void onLong( int column, long value );
+
+    void onDouble( int column, double value );
+
+    // Column that is not a number (or is empty), bytes [start, end) of buffer, only valid during this call
+    void onText( int column, ByteBuffer buffer, int start, int end );
+
+    void onLineEnd( int columnCount );
+}
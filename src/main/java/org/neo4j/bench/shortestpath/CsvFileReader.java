@@ -17,21 +17,32 @@ public class CsvFileReader implements Iterator<String[]>
     private final Pattern columnSeparatorPattern;
 
     private final BufferedReader csvReader;
+    private final MappedCsvParser csvParser;
 
     private String[] next = null;
     private boolean closed = false;
 
-    public CsvFileReader( File csvFile ) throws FileNotFoundException
+    public CsvFileReader( File csvFile ) throws IOException
     {
-        this( csvFile, "\\ " );
+        this( csvFile, ' ' );
     }
 
+    // Reads lines through a BufferedReader and splits them with the regular expression
     public CsvFileReader( File csvFile, String regexSeparator ) throws FileNotFoundException
     {
         this.csvReader = new BufferedReader( new FileReader( csvFile ) );
+        this.csvParser = null;
         this.columnSeparatorPattern = Pattern.compile( regexSeparator );
     }
 
+    // Reads lines from a memory-mapped file, see MappedCsvParser
+    public CsvFileReader( File csvFile, char separator ) throws IOException
+    {
+        this.csvReader = null;
+        this.csvParser = new MappedCsvParser( csvFile, separator );
+        this.columnSeparatorPattern = null;
+    }
+
     @Override
     public boolean hasNext()
     {
@@ -62,13 +73,14 @@ public class CsvFileReader implements Iterator<String[]>
         String csvLine = null;
         try
         {
+            if ( null != csvParser ) return csvParser.nextStrings();
             csvLine = csvReader.readLine();
             if ( null == csvLine ) return null;
             return parseLine( csvLine );
         }
         catch ( IOException e )
         {
-            String errMsg = String.format( "Error retrieving next csv entry from file [%s]", csvReader );
+            String errMsg = String.format( "Error retrieving next csv entry from file [%s]", reader() );
             logger.error( errMsg, e );
             throw new RuntimeException( errMsg, e.getCause() );
         }
@@ -87,7 +99,7 @@ public class CsvFileReader implements Iterator<String[]>
             logger.error( errMsg );
             throw new RuntimeException( errMsg );
         }
-        if ( null == csvReader )
+        if ( null == csvReader && null == csvParser )
         {
             String errMsg = "Can not close file - reader is null";
             logger.error( errMsg );
@@ -95,14 +107,22 @@ public class CsvFileReader implements Iterator<String[]>
         }
         try
         {
-            csvReader.close();
+            if ( null != csvParser )
+                csvParser.close();
+            else
+                csvReader.close();
         }
         catch ( IOException e )
         {
-            String errMsg = String.format( "Error closing file [%s]", csvReader );
+            String errMsg = String.format( "Error closing file [%s]", reader() );
             logger.error( errMsg, e );
             throw new RuntimeException( errMsg, e.getCause() );
         }
         return true;
     }
+
+    private Object reader()
+    {
+        return ( null != csvParser ) ? csvParser : csvReader;
+    }
 }
@@ -1,34 +1,304 @@
 package org.neo4j.bench.shortestpath;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
+/**
+ * Writes CSV lines into one of two byte buffers, numbers are formatted straight into the buffer. A full buffer is
+ * written to the file channel by a background thread while the other one is being filled, so formatting and disk I/O
+ * overlap. Lines are either written whole with {@link #writeLine(String...)}, or column by column with the write*
+ * methods followed by {@link #endLine()}. Not thread safe, write errors are thrown by the write after the failed one.
+ */
 public class CsvFileWriter
 {
-    private final String COLUMN_SEPARATOR = ",";
-    private BufferedWriter bufferedWriter = null;
+    static final int BUFFER_SIZE = 1024 * 1024;
+    static final int MAX_DECIMALS = 15;
+    private static final byte COLUMN_SEPARATOR = ',';
+    private static final byte[] LINE_SEPARATOR = System.getProperty( "line.separator" ).getBytes();
+    private static final Charset CHARSET = Charset.forName( "UTF-8" );
+    private static final long[] POWERS_OF_TEN = new long[MAX_DECIMALS + 1];
+    // Scaled doubles this close to a rounding tie are rounded exactly, to round exactly as DecimalFormat does
+    private static final double TIE_TOLERANCE = 1e-6;
+    private static final long MAX_EXACT_UNITS = 1L << 53;
+
+    static
+    {
+        POWERS_OF_TEN[0] = 1;
+        for ( int i = 1; i < POWERS_OF_TEN.length; i++ )
+        {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final FileOutputStream outputStream;
+    private final FileChannel channel;
+    private final ExecutorService flusher;
+    private final byte[] digits = new byte[20];
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private byte[] flushBuffer = new byte[BUFFER_SIZE];
+    private Future<Void> pendingFlush = null;
+    private int position = 0;
+    private boolean lineStart = true;
 
     public CsvFileWriter( File file ) throws IOException
     {
-        bufferedWriter = new BufferedWriter( new FileWriter( file ) );
+        outputStream = new FileOutputStream( file );
+        channel = outputStream.getChannel();
+        flusher = Executors.newSingleThreadExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "csv-writer" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
     }
 
     public void writeLine( String... columns ) throws IOException
     {
-        for ( int i = 0; i < columns.length - 1; i++ )
+        for ( String column : columns )
+        {
+            writeString( column );
+        }
+        endLine();
+    }
+
+    public void writeString( String value ) throws IOException
+    {
+        startColumn();
+        int length = value.length();
+        for ( int i = 0; i < length; i++ )
         {
-            bufferedWriter.write( columns[i] );
-            bufferedWriter.write( COLUMN_SEPARATOR );
+            char c = value.charAt( i );
+            if ( c >= 0x80 )
+            {
+                writeBytes( value.substring( i ).getBytes( CHARSET ) );
+                return;
+            }
+            if ( position == buffer.length ) swapBuffers();
+            buffer[position++] = (byte) c;
         }
-        bufferedWriter.write( columns[columns.length - 1] );
-        bufferedWriter.newLine();
+    }
+
+    public void writeLong( long value ) throws IOException
+    {
+        startColumn();
+        if ( value == Long.MIN_VALUE )
+        {
+            writeBytes( Long.toString( value ).getBytes( CHARSET ) );
+            return;
+        }
+        ensureCapacity( digits.length );
+        if ( value < 0 )
+        {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        writeDigits( value, 1 );
+    }
+
+    /**
+     * Formats as DecimalFormat with pattern "#.##" does for two decimals: rounded half-even to at most the given
+     * number of decimals, trailing zeros dropped, but without a sign when rounded to zero.
+     */
+    public void writeDouble( double value, int decimals ) throws IOException
+    {
+        if ( decimals < 0 || decimals > MAX_DECIMALS )
+            throw new IllegalArgumentException( String.format( "Decimals must be in [0,%s], not %s", MAX_DECIMALS,
+                    decimals ) );
+        if ( false == isScalable( value, decimals ) )
+        {
+            startColumn();
+            writeBytes( toPlainString( value, decimals ).getBytes( CHARSET ) );
+            return;
+        }
+        long units = roundedUnits( value, decimals );
+
+        startColumn();
+        ensureCapacity( 2 * digits.length + 2 );
+        if ( value < 0 && units != 0 ) buffer[position++] = '-';
+        writeDigits( units / POWERS_OF_TEN[decimals], 1 );
+        long decimalUnits = units % POWERS_OF_TEN[decimals];
+        if ( decimalUnits == 0 ) return;
+        int decimalDigits = decimals;
+        while ( decimalUnits % 10 == 0 )
+        {
+            decimalUnits /= 10;
+            decimalDigits--;
+        }
+        buffer[position++] = '.';
+        writeDigits( decimalUnits, decimalDigits );
+    }
+
+    public void endLine() throws IOException
+    {
+        writeBytes( LINE_SEPARATOR );
+        lineStart = true;
     }
 
     public void close() throws IOException
     {
-        bufferedWriter.flush();
-        bufferedWriter.close();
+        try
+        {
+            swapBuffers();
+            awaitFlush();
+        }
+        finally
+        {
+            flusher.shutdown();
+            channel.close();
+            outputStream.close();
+        }
+    }
+
+    private void startColumn() throws IOException
+    {
+        if ( false == lineStart )
+        {
+            if ( position == buffer.length ) swapBuffers();
+            buffer[position++] = COLUMN_SEPARATOR;
+        }
+        lineStart = false;
+    }
+
+    // Writes a non negative value, zero padded to at least minDigits, buffer must have room for 20 digits
+    private void writeDigits( long value, int minDigits )
+    {
+        int count = 0;
+        do
+        {
+            digits[count++] = (byte) ( '0' + value % 10 );
+            value /= 10;
+        }
+        while ( value > 0 );
+        while ( count < minDigits )
+        {
+            digits[count++] = '0';
+        }
+        while ( count > 0 )
+        {
+            buffer[position++] = digits[--count];
+        }
+    }
+
+    private void writeBytes( byte[] bytes ) throws IOException
+    {
+        int offset = 0;
+        while ( offset < bytes.length )
+        {
+            if ( position == buffer.length ) swapBuffers();
+            int length = Math.min( bytes.length - offset, buffer.length - position );
+            System.arraycopy( bytes, offset, buffer, position, length );
+            position += length;
+            offset += length;
+        }
+    }
+
+    private void ensureCapacity( int length ) throws IOException
+    {
+        if ( buffer.length - position < length ) swapBuffers();
+    }
+
+    // Hands the filled buffer to the flusher, once it is done with the previous one
+    private void swapBuffers() throws IOException
+    {
+        awaitFlush();
+        final byte[] filled = buffer;
+        final int length = position;
+        buffer = flushBuffer;
+        flushBuffer = filled;
+        position = 0;
+        pendingFlush = flusher.submit( new Callable<Void>()
+        {
+            @Override
+            public Void call() throws IOException
+            {
+                ByteBuffer byteBuffer = ByteBuffer.wrap( filled, 0, length );
+                while ( byteBuffer.hasRemaining() )
+                {
+                    channel.write( byteBuffer );
+                }
+                return null;
+            }
+        } );
+    }
+
+    private void awaitFlush() throws IOException
+    {
+        if ( null == pendingFlush ) return;
+        try
+        {
+            pendingFlush.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while waiting for csv flush" );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException ) throw (IOException) e.getCause();
+            throw new IOException( "Error writing csv buffer", e.getCause() );
+        }
+        finally
+        {
+            pendingFlush = null;
+        }
+    }
+
+    // The value writeDouble writes, as read back by Double.parseDouble
+    static double round( double value, int decimals )
+    {
+        if ( Double.isNaN( value ) || Double.isInfinite( value ) ) return value;
+        if ( false == isScalable( value, decimals ) ) return exactRound( value, decimals ).doubleValue();
+        // Both operands exact, units are at most 2^53, so the quotient is correctly rounded
+        double rounded = roundedUnits( value, decimals ) / (double) POWERS_OF_TEN[decimals];
+        return ( value < 0 ) ? -rounded : rounded;
+    }
+
+    // Below 2^53 the scaled double is off by at most half an ulp of at most 1, so the rounded units are exact
+    private static boolean isScalable( double value, int decimals )
+    {
+        return false == Double.isNaN( value ) && Math.abs( value ) * POWERS_OF_TEN[decimals] < MAX_EXACT_UNITS;
+    }
+
+    // Absolute value scaled by 10^decimals and rounded half-even, value must be scalable
+    private static long roundedUnits( double value, int decimals )
+    {
+        double scaled = Math.abs( value ) * POWERS_OF_TEN[decimals];
+        long units = (long) scaled;
+        double fraction = scaled - units;
+        if ( Math.abs( fraction - 0.5 ) < TIE_TOLERANCE )
+            units = exactRound( Math.abs( value ), decimals ).unscaledValue().longValue();
+        else if ( fraction > 0.5 )
+            units++;
+        return units;
+    }
+
+    private static String toPlainString( double value, int decimals )
+    {
+        if ( Double.isNaN( value ) || Double.isInfinite( value ) ) return Double.toString( value );
+        BigDecimal rounded = exactRound( value, decimals );
+        return ( rounded.signum() == 0 ) ? "0" : rounded.stripTrailingZeros().toPlainString();
+    }
+
+    // Exact binary value of the double, rounded
+    private static BigDecimal exactRound( double value, int decimals )
+    {
+        return new BigDecimal( value ).setScale( decimals, RoundingMode.HALF_EVEN );
     }
 }
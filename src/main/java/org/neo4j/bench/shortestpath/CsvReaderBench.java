@@ -0,0 +1,177 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Read throughput of a CSV file through the regex based {@link CsvFileReader}, the {@link CsvFileReader} wrapper over
+ * {@link MappedCsvParser} and the primitive {@link MappedCsvParser} callbacks. String columns are parsed to numbers
+ * the way callers do, so every reader does the same work, and the sums of all numbers are printed to check that.
+ * Optionally the same data in a {@link BinaryGraphFile} is read too, throughput is then relative to the CSV file size
+ * so that records per second compare directly.
+ */
+public class CsvReaderBench
+{
+    public static void main( String[] args ) throws IOException
+    {
+        String errMsg = String.format( "Expected 2 to 4 parameters, found %s. Parameters should be <csv file> "
+                                       + "<separator> [runs] [binary file]\nSeparator is a single character, runs "
+                                       + "defaults to 3\n", args.length );
+
+        if ( args.length < 2 || args.length > 4 )
+        {
+            System.out.println( errMsg );
+            return;
+        }
+
+        File csvFile = new File( args[0] );
+        if ( false == csvFile.isFile() )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", args[0], errMsg ) );
+            return;
+        }
+
+        if ( args[1].length() != 1 )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 1: %s\n%s", args[1], errMsg ) );
+            return;
+        }
+        char separator = args[1].charAt( 0 );
+
+        int runs;
+        try
+        {
+            runs = ( args.length >= 3 ) ? Integer.parseInt( args[2] ) : 3;
+        }
+        catch ( NumberFormatException e )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 2: %s\n%s", args[2], errMsg ) );
+            return;
+        }
+
+        File binaryFile = ( args.length == 4 ) ? new File( args[3] ) : null;
+        if ( null != binaryFile && false == BinaryGraphFile.isBinary( binaryFile ) )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 3: %s\n%s", args[3], errMsg ) );
+            return;
+        }
+
+        System.out.println( "File =\t\t" + csvFile );
+        System.out.println( "Size =\t\t" + csvFile.length() / ( 1024 * 1024 ) + "(MB)" );
+        for ( int run = 1; run <= runs; run++ )
+        {
+            System.out.println( "- Run " + run + " -" );
+            long startTime = System.nanoTime();
+            Sums sums = readStrings( new CsvFileReader( csvFile, Pattern.quote( args[1] ) ) );
+            System.out.println( resultString( "Regex Reader\t", csvFile, System.nanoTime() - startTime, sums ) );
+
+            startTime = System.nanoTime();
+            sums = readStrings( new CsvFileReader( csvFile, separator ) );
+            System.out.println( resultString( "Mapped Reader\t", csvFile, System.nanoTime() - startTime, sums ) );
+
+            startTime = System.nanoTime();
+            sums = new Sums();
+            MappedCsvParser parser = new MappedCsvParser( csvFile, separator );
+            parser.parse( sums );
+            parser.close();
+            System.out.println( resultString( "Mapped Callbacks", csvFile, System.nanoTime() - startTime, sums ) );
+
+            if ( null == binaryFile ) continue;
+            startTime = System.nanoTime();
+            sums = readBinary( binaryFile );
+            System.out.println( resultString( "Binary Reader\t", csvFile, System.nanoTime() - startTime, sums ) );
+        }
+    }
+
+    static Sums readStrings( CsvFileReader reader )
+    {
+        Sums sums = new Sums();
+        while ( reader.hasNext() )
+        {
+            String[] columns = reader.next();
+            for ( int column = 0; column < columns.length; column++ )
+            {
+                String value = columns[column];
+                if ( value.isEmpty() ) continue;
+                if ( false == Character.isDigit( value.charAt( 0 ) ) && value.charAt( 0 ) != '-' ) continue;
+                if ( value.indexOf( '.' ) >= 0 || value.indexOf( 'e' ) >= 0 || value.indexOf( 'E' ) >= 0 )
+                    sums.onDouble( column, Double.parseDouble( value ) );
+                else
+                    sums.onLong( column, Long.parseLong( value ) );
+            }
+            sums.onLineEnd( columns.length );
+        }
+        return sums;
+    }
+
+    // Summed as the CSV readers see the same values: weights without decimals are written, and summed, as longs.
+    // Weights are floats here, so the double sum is only close to the CSV one
+    private static Sums readBinary( File binaryFile ) throws IOException
+    {
+        Sums sums = new Sums();
+        BinaryGraphFile.Reader reader = new BinaryGraphFile.Reader( binaryFile );
+        try
+        {
+            boolean pairs = ( reader.type() == BinaryGraphFile.RecordType.PAIRS );
+            boolean nodes = ( reader.type() == BinaryGraphFile.RecordType.NODES );
+            while ( reader.next() )
+            {
+                sums.onLong( 0, reader.firstId() );
+                if ( false == nodes ) sums.onLong( 1, reader.secondId() );
+                if ( false == pairs )
+                {
+                    float weight = reader.weight();
+                    if ( weight == Math.rint( weight ) ) sums.onLong( 2, (long) weight );
+                    else sums.onDouble( 2, weight );
+                }
+                sums.onLineEnd( 0 );
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return sums;
+    }
+
+    private static String resultString( String name, File csvFile, long runTime, Sums sums )
+    {
+        double seconds = runTime / (double) TimeUnit.SECONDS.toNanos( 1 );
+        return String.format( "\t%s : Time[%s(ms)] Throughput[%.1f(MB/s)] Lines[%s] Long Sum[%s] Double Sum[%.4f]",
+                name, TimeUnit.NANOSECONDS.toMillis( runTime ), csvFile.length() / ( 1024 * 1024 * seconds ),
+                sums.lineCount, sums.longSum, sums.doubleSum );
+    }
+
+    static class Sums implements CsvColumnHandler
+    {
+        private long lineCount = 0;
+        private long longSum = 0;
+        private double doubleSum = 0;
+
+        @Override
+        public void onLong( int column, long value )
+        {
+            longSum += value;
+        }
+
+        @Override
+        public void onDouble( int column, double value )
+        {
+            doubleSum += value;
+        }
+
+        @Override
+        public void onText( int column, ByteBuffer buffer, int start, int end )
+        {
+        }
+
+        @Override
+        public void onLineEnd( int columnCount )
+        {
+            lineCount++;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Source of the relationships written by {@link InputFilesCreator}, split into chunks that are produced independently
+ * and in parallel. Every edge comes with a key that is unique over all chunks and only depends on the seed and the
+ * generator parameters, it is used to draw the edge weight, so generated files do not depend on the thread count.
+ * Node ids are 0 based, {@link InputFilesCreator} shifts them by one to avoid the Reference Node.
+ */
+public abstract class GraphGenerator
+{
+    public static final String SNAP = "snap";
+    public static final String RMAT = "rmat";
+    public static final String BARABASI_ALBERT = "barabasi-albert";
+    public static final String GRID = "grid";
+    public static final List<String> SYNTHETIC = Arrays.asList( RMAT, BARABASI_ALBERT, GRID );
+
+    static final long EDGES_PER_CHUNK = 1024 * 1024;
+    static final long NODES_PER_CHUNK = 512 * 1024;
+    static final long EDGE_LIST_CHUNK_SIZE = 16 * 1024 * 1024;
+    static final int MAX_CHUNK_COUNT = 4096;
+    static final long MAX_COUNT = 1L << 32;
+
+    public interface EdgeHandler
+    {
+        void onEdge( long key, long startNodeId, long endNodeId ) throws IOException;
+    }
+
+    public static GraphGenerator create( String graph, long nodeCount, long edgeCount, long seed )
+    {
+        if ( nodeCount < 2 || edgeCount < 1 || nodeCount > MAX_COUNT || edgeCount > MAX_COUNT )
+            throw new IllegalArgumentException( String.format( "Expected 2 to %s nodes and 1 to %s edges, found %s "
+                                                               + "and %s", MAX_COUNT, MAX_COUNT, nodeCount,
+                    edgeCount ) );
+        if ( graph.equals( RMAT ) ) return new Rmat( nodeCount, edgeCount, seed );
+        if ( graph.equals( BARABASI_ALBERT ) ) return new BarabasiAlbert( nodeCount, edgeCount, seed );
+        if ( graph.equals( GRID ) ) return new Grid( nodeCount, edgeCount, seed );
+        throw new IllegalArgumentException( String.format( "Unknown graph [%s], expected one of %s", graph,
+                SYNTHETIC ) );
+    }
+
+    public abstract int chunkCount();
+
+    // Reports the edges of a chunk in a fixed order
+    public abstract void generate( int chunk, EdgeHandler handler ) throws IOException;
+
+    // Uniform in [0,1), a function of seed, stream and key only (SplitMix64 finalizer)
+    static double randomDouble( long seed, long stream, long key )
+    {
+        return ( mix( mix( seed + stream ) + key ) >>> 11 ) * 0x1.0p-53;
+    }
+
+    // Uniform in [0,bound), a function of seed, stream and key only
+    static long randomLong( long seed, long stream, long key, long bound )
+    {
+        return ( mix( mix( seed + stream ) + key ) >>> 1 ) % bound;
+    }
+
+    static long mix( long z )
+    {
+        z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+        z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+        return z ^ ( z >>> 31 );
+    }
+
+    // Synthetic graphs are always chunked the same way, chunk boundaries fix which random stream an edge comes from
+    private static int chunksOf( long count, long perChunk )
+    {
+        return (int) ( ( count + perChunk - 1 ) / perChunk );
+    }
+
+    /**
+     * Space separated edge list, one edge per line, as the SNAP datasets are. Chunks are line aligned byte ranges,
+     * edge keys are line offsets.
+     */
+    public static class EdgeList extends GraphGenerator
+    {
+        private final File file;
+        private final long[] lineStarts;
+
+        public EdgeList( File file ) throws IOException
+        {
+            this.file = file;
+            int chunkCount = (int) Math.min( file.length() / EDGE_LIST_CHUNK_SIZE + 1, MAX_CHUNK_COUNT );
+            this.lineStarts = MappedCsvParser.lineStarts( file, chunkCount );
+        }
+
+        @Override
+        public int chunkCount()
+        {
+            return lineStarts.length - 1;
+        }
+
+        @Override
+        public void generate( int chunk, EdgeHandler handler ) throws IOException
+        {
+            MappedCsvParser parser = new MappedCsvParser( file, ' ', lineStarts[chunk], lineStarts[chunk + 1] );
+            try
+            {
+                NodeIdPairHandler nodeIds = new NodeIdPairHandler();
+                long lineOffset = parser.offset();
+                while ( parser.parseLine( nodeIds ) )
+                {
+                    handler.onEdge( lineOffset, nodeIds.startNodeId, nodeIds.endNodeId );
+                    lineOffset = parser.offset();
+                }
+            }
+            finally
+            {
+                parser.close();
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "EdgeList[file=%s, chunks=%s]", file, chunkCount() );
+        }
+    }
+
+    /**
+     * Recursive matrix graph (Chakrabarti, Zhan and Faloutsos) with the Graph500 quadrant probabilities, skewed degrees
+     * and small diameter like social networks. Edges falling outside the node range, and self loops, are drawn again.
+     * Node ids are not permuted, low ids are the hubs.
+     */
+    public static class Rmat extends GraphGenerator
+    {
+        static final double A = 0.57;
+        static final double B = 0.19;
+        static final double C = 0.19;
+        // Quadrant thresholds for a uniform random int shifted to [0,2^31), one draw per level
+        private static final int A_LIMIT = (int) ( A * ( 1L << 31 ) );
+        private static final int AB_LIMIT = (int) ( ( A + B ) * ( 1L << 31 ) );
+        private static final int ABC_LIMIT = (int) ( ( A + B + C ) * ( 1L << 31 ) );
+
+        private final long nodeCount;
+        private final long edgeCount;
+        private final long seed;
+        private final int scale;
+
+        Rmat( long nodeCount, long edgeCount, long seed )
+        {
+            this.nodeCount = nodeCount;
+            this.edgeCount = edgeCount;
+            this.seed = seed;
+            this.scale = 64 - Long.numberOfLeadingZeros( nodeCount - 1 );
+        }
+
+        @Override
+        public int chunkCount()
+        {
+            return chunksOf( edgeCount, EDGES_PER_CHUNK );
+        }
+
+        @Override
+        public void generate( int chunk, EdgeHandler handler ) throws IOException
+        {
+            Random random = new Random( mix( seed + chunk ) );
+            long lastEdge = Math.min( ( chunk + 1 ) * EDGES_PER_CHUNK, edgeCount );
+            for ( long edge = chunk * EDGES_PER_CHUNK; edge < lastEdge; edge++ )
+            {
+                long startNodeId;
+                long endNodeId;
+                do
+                {
+                    startNodeId = 0;
+                    endNodeId = 0;
+                    for ( int level = 0; level < scale; level++ )
+                    {
+                        int quadrant = random.nextInt() >>> 1;
+                        startNodeId <<= 1;
+                        endNodeId <<= 1;
+                        if ( quadrant < A_LIMIT ) continue;
+                        if ( quadrant < AB_LIMIT ) endNodeId |= 1;
+                        else if ( quadrant < ABC_LIMIT ) startNodeId |= 1;
+                        else
+                        {
+                            startNodeId |= 1;
+                            endNodeId |= 1;
+                        }
+                    }
+                }
+                while ( startNodeId >= nodeCount || endNodeId >= nodeCount || startNodeId == endNodeId );
+                handler.onEdge( edge, startNodeId, endNodeId );
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "Rmat[nodes=%s, edges=%s, scale=%s]", nodeCount, edgeCount, scale );
+        }
+    }
+
+    /**
+     * Preferential attachment (Barabasi-Albert): node v > 0 attaches edgesPerNode edges, to endpoints of uniformly
+     * drawn earlier edges, so to nodes with probability proportional to their degree. Uses the stateless formulation of
+     * Sanders and Schulz: the endpoint of an earlier edge is recomputed from its key instead of being stored, so chunks
+     * need no shared state and memory does not grow with the graph. Self loops are drawn again.
+     */
+    public static class BarabasiAlbert extends GraphGenerator
+    {
+        private final long edgeCount;
+        private final long edgesPerNode;
+        private final long seed;
+
+        BarabasiAlbert( long nodeCount, long edgeCount, long seed )
+        {
+            this.edgesPerNode = Math.max( 1, edgeCount / ( nodeCount - 1 ) );
+            this.edgeCount = Math.min( edgeCount, ( nodeCount - 1 ) * edgesPerNode );
+            this.seed = seed;
+        }
+
+        @Override
+        public int chunkCount()
+        {
+            return chunksOf( edgeCount, EDGES_PER_CHUNK );
+        }
+
+        @Override
+        public void generate( int chunk, EdgeHandler handler ) throws IOException
+        {
+            long lastEdge = Math.min( ( chunk + 1 ) * EDGES_PER_CHUNK, edgeCount );
+            for ( long edge = chunk * EDGES_PER_CHUNK; edge < lastEdge; edge++ )
+            {
+                handler.onEdge( edge, source( edge ), target( edge ) );
+            }
+        }
+
+        private long source( long edge )
+        {
+            return edge / edgesPerNode + 1;
+        }
+
+        // Edge e owns endpoint slots 2e (its source) and 2e+1 (its target), the first edge attaches to node 0
+        private long target( long edge )
+        {
+            if ( edge == 0 ) return 0;
+            long source = source( edge );
+            for ( long attempt = 0;; attempt++ )
+            {
+                long slot = randomLong( seed, attempt, edge, 2 * edge );
+                long target = ( slot % 2 == 0 ) ? source( slot / 2 ) : target( slot / 2 );
+                if ( target != source ) return target;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "BarabasiAlbert[nodes=%s, edges=%s, edgesPerNode=%s]", source( edgeCount - 1 ) + 1,
+                    edgeCount, edgesPerNode );
+        }
+    }
+
+    /**
+     * Road-like grid: nodes on a square lattice, row by row, linked to their right and lower neighbours. Fewer edges
+     * than the lattice has are reached by dropping lattice edges at random, more by adding local shortcuts (two
+     * diagonals and skips of two), at most 4 per node. The result has a large diameter and low, uniform degree.
+     */
+    public static class Grid extends GraphGenerator
+    {
+        private static final int DIRECTIONS = 6;
+
+        private final long nodeCount;
+        private final long width;
+        private final long seed;
+        private final double latticeProbability;
+        private final double shortcutProbability;
+
+        Grid( long nodeCount, long edgeCount, long seed )
+        {
+            this.nodeCount = nodeCount;
+            this.width = (long) Math.ceil( Math.sqrt( nodeCount ) );
+            this.seed = seed;
+            long height = ( nodeCount + width - 1 ) / width;
+            long latticeEdgeCount = ( width - 1 ) * height + width * ( height - 1 );
+            this.latticeProbability = Math.min( 1.0, edgeCount / (double) latticeEdgeCount );
+            this.shortcutProbability = Math.min( 1.0, Math.max( 0, edgeCount - latticeEdgeCount )
+                                                      / ( 4.0 * nodeCount ) );
+        }
+
+        @Override
+        public int chunkCount()
+        {
+            return chunksOf( nodeCount, NODES_PER_CHUNK );
+        }
+
+        @Override
+        public void generate( int chunk, EdgeHandler handler ) throws IOException
+        {
+            long lastNode = Math.min( ( chunk + 1 ) * NODES_PER_CHUNK, nodeCount );
+            for ( long node = chunk * NODES_PER_CHUNK; node < lastNode; node++ )
+            {
+                long column = node % width;
+                for ( int direction = 0; direction < DIRECTIONS; direction++ )
+                {
+                    long neighbour = neighbour( node, column, direction );
+                    if ( neighbour < 0 ) continue;
+                    double probability = ( direction < 2 ) ? latticeProbability : shortcutProbability;
+                    long key = node * DIRECTIONS + direction;
+                    if ( randomDouble( seed, 0, key ) < probability ) handler.onEdge( key, node, neighbour );
+                }
+            }
+        }
+
+        // Right, down, then the shortcuts: down-right, down-left, two right, two down. -1 if outside the grid
+        private long neighbour( long node, long column, int direction )
+        {
+            long neighbour;
+            switch ( direction )
+            {
+            case 0:
+                neighbour = ( column + 1 < width ) ? node + 1 : -1;
+                break;
+            case 1:
+                neighbour = node + width;
+                break;
+            case 2:
+                neighbour = ( column + 1 < width ) ? node + width + 1 : -1;
+                break;
+            case 3:
+                neighbour = ( column > 0 ) ? node + width - 1 : -1;
+                break;
+            case 4:
+                neighbour = ( column + 2 < width ) ? node + 2 : -1;
+                break;
+            default:
+                neighbour = node + 2 * width;
+                break;
+            }
+            return ( neighbour < nodeCount ) ? neighbour : -1;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "Grid[nodes=%s, width=%s, latticeProbability=%.3f, shortcutProbability=%.3f]",
+                    nodeCount, width, latticeProbability, shortcutProbability );
+        }
+    }
+
+    // Raw edge list line
+    private static class NodeIdPairHandler implements CsvColumnHandler
+    {
+        private long startNodeId;
+        private long endNodeId;
+
+        @Override
+        public void onLong( int column, long value )
+        {
+            if ( column == 0 ) startNodeId = value;
+            else if ( column == 1 ) endNodeId = value;
+        }
+
+        @Override
+        public void onDouble( int column, double value )
+        {
+            throw new IllegalArgumentException( String.format( "Node id expected in column %s, found %s", column,
+                    value ) );
+        }
+
+        @Override
+        public void onText( int column, ByteBuffer buffer, int start, int end )
+        {
+            throw new IllegalArgumentException( String.format( "Node id expected in column %s", column ) );
+        }
+
+        @Override
+        public void onLineEnd( int columnCount )
+        {
+            if ( columnCount < 2 )
+                throw new IllegalArgumentException( String.format( "Expected 2 columns, found %s", columnCount ) );
+        }
+    }
+}
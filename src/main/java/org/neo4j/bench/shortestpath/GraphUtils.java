@@ -1,119 +1,178 @@
 package org.neo4j.bench.shortestpath;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.neo4j.graphalgo.impl.util.PathImpl;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
-import org.neo4j.tooling.GlobalGraphOperations;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.core.NodeManager;
 
 public class GraphUtils
 {
-    public static long nodeCount( GraphDatabaseService db, long transactionSize )
+    static final int SCAN_RANGE_SIZE = 50000;
+    // Node ids index arrays, the JVMs allow array lengths up to a few below Integer.MAX_VALUE
+    static final long MAX_SCANNED_NODE_ID = Integer.MAX_VALUE - 9;
+
+    /**
+     * Scans the node and relationship id spaces once, split into ranges that are read in parallel, each range in its
+     * own transaction. Relationships are read by id rather than through node relationship chains, degrees are tallied
+     * from relationship endpoints. Reading by id still fills the node and relationship caches. Node 0 is the reference
+     * node and is skipped. Node ids are array indexes, stores with node ids above {@link #MAX_SCANNED_NODE_ID} are
+     * rejected.
+     */
+    public static StoreStatistics scanStore( GraphDatabaseService db, int threadCount )
     {
-        GlobalGraphOperations globalOperations = GlobalGraphOperations.at( db );
-        long nodeCount = 0;
-        Transaction tx = db.beginTx();
-        try
+        final GraphDatabaseService database = db;
+        NodeManager nodeManager = ( (GraphDatabaseAPI) db ).getDependencyResolver().resolveDependency(
+                NodeManager.class );
+        long highestNodeId = nodeManager.getHighestPossibleIdInUse( Node.class );
+        long highestRelationshipId = nodeManager.getHighestPossibleIdInUse( Relationship.class );
+        if ( highestNodeId > MAX_SCANNED_NODE_ID )
         {
-            for ( Node node : globalOperations.getAllNodes() )
+            throw new IllegalArgumentException( String.format( "Node id too large for a store scan: %s, at most %s",
+                    highestNodeId, MAX_SCANNED_NODE_ID ) );
+        }
+        final boolean[] nodesInUse = new boolean[(int) highestNodeId + 1];
+        final AtomicIntegerArray degrees = new AtomicIntegerArray( (int) highestNodeId + 1 );
+
+        ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+        List<Future<StoreStatistics>> ranges = new ArrayList<Future<StoreStatistics>>();
+        for ( long rangeStart = 1; rangeStart <= highestNodeId; rangeStart += SCAN_RANGE_SIZE )
+        {
+            final long from = rangeStart;
+            final long to = Math.min( rangeStart + SCAN_RANGE_SIZE, highestNodeId + 1 );
+            ranges.add( executor.submit( new Callable<StoreStatistics>()
             {
-                if ( node.getId() == 0 ) continue;
-                nodeCount++;
-                if ( nodeCount % transactionSize == 0 )
+                @Override
+                public StoreStatistics call()
                 {
-                    tx.success();
-                    tx = db.beginTx();
+                    return scanNodeRange( database, from, to, nodesInUse );
                 }
-            }
-            tx.success();
+            } ) );
         }
-        catch ( Exception e )
+        for ( long rangeStart = 0; rangeStart <= highestRelationshipId; rangeStart += SCAN_RANGE_SIZE )
         {
-            throw new RuntimeException( e.getCause() );
+            final long from = rangeStart;
+            final long to = Math.min( rangeStart + SCAN_RANGE_SIZE, highestRelationshipId + 1 );
+            ranges.add( executor.submit( new Callable<StoreStatistics>()
+            {
+                @Override
+                public StoreStatistics call()
+                {
+                    return scanRelationshipRange( database, from, to, degrees );
+                }
+            } ) );
         }
-        return nodeCount;
-    }
+        executor.shutdown();
 
-    public static long relationshipCount( GraphDatabaseService db, long transactionSize )
-    {
-        GlobalGraphOperations globalOperations = GlobalGraphOperations.at( db );
-        long relationshipCount = 0;
-        Transaction tx = db.beginTx();
+        StoreStatistics statistics = new StoreStatistics();
+        statistics.setHighestIds( highestNodeId, highestRelationshipId );
         try
         {
-            for ( Relationship relationship : globalOperations.getAllRelationships() )
+            for ( Future<StoreStatistics> range : ranges )
             {
-                relationshipCount++;
-                if ( relationshipCount % transactionSize == 0 )
-                {
-                    tx.success();
-                    tx = db.beginTx();
-                }
+                statistics.add( range.get() );
             }
-            tx.success();
         }
-        catch ( Exception e )
+        catch ( InterruptedException e )
         {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+        catch ( ExecutionException e )
+        {
+            executor.shutdownNow();
             throw new RuntimeException( e.getCause() );
         }
-        return relationshipCount;
+        for ( int nodeId = 1; nodeId < nodesInUse.length; nodeId++ )
+        {
+            if ( nodesInUse[nodeId] ) statistics.addDegree( degrees.get( nodeId ) );
+        }
+        return statistics;
     }
 
-    public static long nodePropertyCount( GraphDatabaseService db, long transactionSize )
+    private static StoreStatistics scanNodeRange( GraphDatabaseService db, long from, long to, boolean[] nodesInUse )
     {
-        GlobalGraphOperations globalOperations = GlobalGraphOperations.at( db );
-        long nodePropertyCount = 0;
+        StoreStatistics statistics = new StoreStatistics();
         Transaction tx = db.beginTx();
         try
         {
-            for ( Node node : globalOperations.getAllNodes() )
+            for ( long nodeId = from; nodeId < to; nodeId++ )
             {
-                for ( String key : node.getPropertyKeys() )
+                Node node;
+                try
+                {
+                    node = db.getNodeById( nodeId );
+                }
+                catch ( NotFoundException e )
                 {
-                    node.getProperty( key );
-                    nodePropertyCount++;
-                    if ( nodePropertyCount % transactionSize == 0 )
-                    {
-                        tx.success();
-                        tx = db.beginTx();
-                    }
+                    // Id not in use, deleted or never allocated
+                    continue;
                 }
+                nodesInUse[(int) nodeId] = true;
+                statistics.addNode( node );
             }
             tx.success();
         }
-        catch ( Exception e )
+        finally
         {
-            throw new RuntimeException( e.getCause() );
+            tx.finish();
         }
-        return nodePropertyCount;
+        return statistics;
     }
 
-    public static long relationshipPropertyCount( GraphDatabaseService db, long transactionSize )
+    private static StoreStatistics scanRelationshipRange( GraphDatabaseService db, long from, long to,
+            AtomicIntegerArray degrees )
     {
-        GlobalGraphOperations globalOperations = GlobalGraphOperations.at( db );
-        long relationshipPropertyCount = 0;
+        StoreStatistics statistics = new StoreStatistics();
         Transaction tx = db.beginTx();
         try
         {
-            for ( Relationship relationship : globalOperations.getAllRelationships() )
+            for ( long relationshipId = from; relationshipId < to; relationshipId++ )
             {
-                for ( String key : relationship.getPropertyKeys() )
+                Relationship relationship;
+                try
                 {
-                    relationship.getProperty( key );
-                    relationshipPropertyCount++;
-                    if ( relationshipPropertyCount % transactionSize == 0 )
-                    {
-                        tx.success();
-                        tx = db.beginTx();
-                    }
+                    relationship = db.getRelationshipById( relationshipId );
                 }
+                catch ( NotFoundException e )
+                {
+                    continue;
+                }
+                degrees.incrementAndGet( (int) relationship.getStartNode().getId() );
+                degrees.incrementAndGet( (int) relationship.getEndNode().getId() );
+                statistics.addRelationship( relationship );
             }
             tx.success();
         }
-        catch ( Exception e )
+        finally
         {
-            throw new RuntimeException( e.getCause() );
+            tx.finish();
+        }
+        return statistics;
+    }
+
+    // Materializes a path found outside of the Neo4j traversal framework, relationships ordered from the start node
+    public static Path buildPath( GraphDatabaseService db, long startNodeId, long[] relationshipIds, int length )
+    {
+        PathImpl.Builder builder = new PathImpl.Builder( db.getNodeById( startNodeId ) );
+        for ( int i = 0; i < length; i++ )
+        {
+            builder = builder.push( db.getRelationshipById( relationshipIds[i] ) );
         }
-        return relationshipPropertyCount;
+        return builder.build();
     }
 }
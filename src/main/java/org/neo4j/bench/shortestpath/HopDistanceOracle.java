@@ -0,0 +1,541 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
+
+/**
+ * Exact hop distance between every pair of nodes, for graphs small enough to hold a table of nodes^2 entries. The
+ * table is built with bit-parallel BFS: 64 sources are searched at once, with one long per node holding a bit per
+ * source, so a pass over the relationships advances all 64 frontiers by a level. Entries take 4 bits, distances up
+ * to {@link #MAX_DISTANCE}, {@link #FAR} marks pairs that are unreachable or, if the table is saturated, farther
+ * apart than that. Building takes nodes / 64 passes of (diameter) levels over the graph, memory is nodes^2 / 2 bytes.
+ */
+public class HopDistanceOracle
+{
+    public static final int MAX_DISTANCE = 14;
+    public static final int FAR = 15;
+    public static final int DEFAULT_QUERIES_PER_BUILD = 1000000;
+
+    private static final int FILE_MAGIC = 0x484f5033; // "HOP3"
+    private static final int ENTRIES_PER_WORD = 16;
+    private static final int SOURCES_PER_PASS = 64;
+
+    private final Direction direction;
+    private final int nodeCount;
+    private final long graphChecksum;
+    // 16 entries per word, entry of (source, target) at source * nodeCount + target
+    private final long[] table;
+    private final int maxDistance;
+    private final boolean saturated;
+    private final long buildTimeMillis;
+
+    private HopDistanceOracle( Direction direction, int nodeCount, long graphChecksum, long[] table,
+            int maxDistance, boolean saturated, long buildTimeMillis )
+    {
+        this.direction = direction;
+        this.nodeCount = nodeCount;
+        this.graphChecksum = graphChecksum;
+        this.table = table;
+        this.maxDistance = maxDistance;
+        this.saturated = saturated;
+        this.buildTimeMillis = buildTimeMillis;
+    }
+
+    public static void main( String[] args ) throws IOException
+    {
+        String errMsg = String.format( "Expected 1 or 2 parameters, found %s. Parameters should be <%s|%s> "
+                                       + "[queries per build]\nQueries per build is the number of queries answered "
+                                       + "before the graph changes, for the break-even estimate, default is %s\n",
+                args.length, ShortestPathBench.DIRECTION_BOTH, ShortestPathBench.DIRECTION_OUT,
+                DEFAULT_QUERIES_PER_BUILD );
+
+        if ( args.length < 1 || args.length > 2 )
+        {
+            System.out.println( errMsg );
+            return;
+        }
+
+        if ( args[0].equals( ShortestPathBench.DIRECTION_BOTH ) == false
+             && args[0].equals( ShortestPathBench.DIRECTION_OUT ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", args[0], errMsg ) );
+            return;
+        }
+
+        long queriesPerBuild = DEFAULT_QUERIES_PER_BUILD;
+        if ( args.length == 2 )
+        {
+            try
+            {
+                queriesPerBuild = Long.parseLong( args[1] );
+            }
+            catch ( NumberFormatException e )
+            {
+                queriesPerBuild = -1;
+            }
+            if ( queriesPerBuild <= 0 )
+            {
+                System.out.println( String.format( "Unexpected value for parameter 1: %s\n%s", args[1], errMsg ) );
+                return;
+            }
+        }
+
+        Direction direction = ShortestPathBench.parseDirection( args[0] );
+
+        long startTime = System.currentTimeMillis();
+        CsrGraph graph = CsrGraph.loadFromRelationshipsFile( "weight" );
+        System.out.println( String.format( "Loaded %s in %s(ms)", graph, System.currentTimeMillis() - startTime ) );
+
+        HopDistanceOracle oracle = compute( graph, direction );
+        System.out.println( "Computed " + oracle );
+
+        File oracleFile = file( direction );
+        oracle.write( oracleFile );
+        System.out.println( "Written to " + oracleFile );
+
+        System.out.print( oracle.breakEvenString( graph, loadStartAndEndNodeIds( 1000 ), queriesPerBuild ) );
+    }
+
+    public static File file( Direction direction )
+    {
+        return new File( String.format( Config.HOP_DISTANCES_FILE, direction.name().toLowerCase() ) );
+    }
+
+    // Uses the persisted table when it was computed for this graph (same checksum) and direction, otherwise computes
+    // and stores
+    public static HopDistanceOracle loadOrCompute( CsrGraph graph, Direction direction ) throws IOException
+    {
+        File oracleFile = file( direction );
+        if ( oracleFile.exists() && hasCurrentFormat( oracleFile ) )
+        {
+            HopDistanceOracle oracle = read( oracleFile );
+            if ( oracle.direction == direction && oracle.nodeCount == graph.nodeCount()
+                 && oracle.graphChecksum == graph.checksum() )
+            {
+                return oracle;
+            }
+        }
+        HopDistanceOracle oracle = compute( graph, direction );
+        oracle.write( oracleFile );
+        return oracle;
+    }
+
+    public static HopDistanceOracle compute( CsrGraph graph, Direction direction )
+    {
+        long startTime = System.currentTimeMillis();
+        int nodeCount = graph.nodeCount();
+        long entryCount = (long) nodeCount * nodeCount;
+        if ( entryCount / ENTRIES_PER_WORD >= Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( "Too many nodes for a hop distance table: " + nodeCount );
+        }
+        long[] table = new long[(int) ( ( entryCount + ENTRIES_PER_WORD - 1 ) / ENTRIES_PER_WORD )];
+        Arrays.fill( table, -1L );
+        // Bit i of a node's word is source firstSource + i
+        long[] visited = new long[nodeCount];
+        long[] frontier = new long[nodeCount];
+        long[] next = new long[nodeCount];
+        int maxDistance = 0;
+        boolean saturated = false;
+
+        for ( int firstSource = 0; firstSource < nodeCount; firstSource += SOURCES_PER_PASS )
+        {
+            int sourceCount = Math.min( SOURCES_PER_PASS, nodeCount - firstSource );
+            Arrays.fill( visited, 0 );
+            Arrays.fill( frontier, 0 );
+            for ( int i = 0; i < sourceCount; i++ )
+            {
+                visited[firstSource + i] = 1L << i;
+                frontier[firstSource + i] = 1L << i;
+                set( table, (long) ( firstSource + i ) * nodeCount + firstSource + i, 0 );
+            }
+            boolean hasFrontier = sourceCount > 0;
+            for ( int distance = 1; hasFrontier; distance++ )
+            {
+                Arrays.fill( next, 0 );
+                for ( int pass = 0; pass < 2; pass++ )
+                {
+                    Direction adjacency = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+                    if ( direction != Direction.BOTH && direction != adjacency ) continue;
+                    int[] offsets = graph.offsets( adjacency );
+                    int[] targets = graph.targets( adjacency );
+                    for ( int node = 0; node < nodeCount; node++ )
+                    {
+                        long sources = frontier[node];
+                        if ( sources == 0 ) continue;
+                        for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+                        {
+                            next[targets[r]] |= sources;
+                        }
+                    }
+                }
+                hasFrontier = false;
+                for ( int node = 0; node < nodeCount; node++ )
+                {
+                    long reached = next[node] & ~visited[node];
+                    frontier[node] = reached;
+                    if ( reached == 0 ) continue;
+                    // The level past MAX_DISTANCE is only expanded to tell whether any pair is farther apart
+                    if ( distance > MAX_DISTANCE )
+                    {
+                        saturated = true;
+                        break;
+                    }
+                    hasFrontier = true;
+                    maxDistance = Math.max( maxDistance, distance );
+                    visited[node] |= reached;
+                    while ( reached != 0 )
+                    {
+                        int source = firstSource + Long.numberOfTrailingZeros( reached );
+                        set( table, (long) source * nodeCount + node, distance );
+                        reached &= reached - 1;
+                    }
+                }
+            }
+        }
+        return new HopDistanceOracle( direction, nodeCount, graph.checksum(), table, maxDistance, saturated,
+                System.currentTimeMillis() - startTime );
+    }
+
+    // Files written before the graph checksum was stored, or with saturation set at the cap, have another magic number
+    private static boolean hasCurrentFormat( File file ) throws IOException
+    {
+        DataInputStream in = new DataInputStream( new FileInputStream( file ) );
+        try
+        {
+            return file.length() >= 4 && in.readInt() == FILE_MAGIC;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public static HopDistanceOracle read( File file ) throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 1 << 16 ) );
+        try
+        {
+            if ( in.readInt() != FILE_MAGIC ) throw new IOException( "Not a hop distance file: " + file );
+            Direction direction = Direction.valueOf( in.readUTF() );
+            int nodeCount = in.readInt();
+            long graphChecksum = in.readLong();
+            int maxDistance = in.readInt();
+            boolean saturated = in.readBoolean();
+            long buildTimeMillis = in.readLong();
+            long[] table = new long[in.readInt()];
+            for ( int i = 0; i < table.length; i++ )
+            {
+                table[i] = in.readLong();
+            }
+            return new HopDistanceOracle( direction, nodeCount, graphChecksum, table, maxDistance, saturated,
+                    buildTimeMillis );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public void write( File file ) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream( new FileOutputStream( file ), 1 << 16 ) );
+        try
+        {
+            out.writeInt( FILE_MAGIC );
+            out.writeUTF( direction.name() );
+            out.writeInt( nodeCount );
+            out.writeLong( graphChecksum );
+            out.writeInt( maxDistance );
+            out.writeBoolean( saturated );
+            out.writeLong( buildTimeMillis );
+            out.writeInt( table.length );
+            for ( long word : table )
+            {
+                out.writeLong( word );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    // Hop distance from source to target in the table's direction, FAR for nodes outside the table
+    public int distance( int source, int target )
+    {
+        if ( source < 0 || source >= nodeCount || target < 0 || target >= nodeCount ) return FAR;
+        long index = (long) source * nodeCount + target;
+        return (int) ( table[(int) ( index / ENTRIES_PER_WORD )] >>> ( ( index % ENTRIES_PER_WORD ) * 4 ) ) & 0xF;
+    }
+
+    public Direction direction()
+    {
+        return direction;
+    }
+
+    public int nodeCount()
+    {
+        return nodeCount;
+    }
+
+    // Whether some pairs are farther apart than MAX_DISTANCE, so FAR does not mean unreachable
+    public boolean saturated()
+    {
+        return saturated;
+    }
+
+    public long memoryBytes()
+    {
+        return table.length * 8L;
+    }
+
+    public <P extends Path> CrossCheck<P> crossCheck( PathFinder<P> pathFinder )
+    {
+        return new CrossCheck<P>( this, pathFinder );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "HopDistanceOracle[nodes=%s, direction=%s, max distance=%s%s, memory=%s(KB), "
+                              + "build time=%s(ms)]", nodeCount, direction, maxDistance,
+                ( saturated ) ? " (saturated)" : "", memoryBytes() / 1024, buildTimeMillis );
+    }
+
+    /**
+     * Times a plain BFS and a table lookup per pair and estimates the node count from which the table no longer pays
+     * off. At the same average degree and diameter the build time grows with nodes^2 (nodes / 64 passes over the
+     * graph) and a BFS with nodes, so building is worth it while build time < queries per build * time saved per
+     * query, up to nodes * queries per build * saved / build. The table also has to fit in the heap, at nodes^2 / 2
+     * bytes. Both are extrapolations from this graph, to tell roughly where the oracle stops being worth it.
+     */
+    public String breakEvenString( CsrGraph graph, List<long[]> startAndEndNodeIds, long queriesPerBuild )
+    {
+        int[] queue = new int[nodeCount];
+        int[] distances = new int[nodeCount];
+        int[] breadthFirstDistances = new int[startAndEndNodeIds.size()];
+        int[] tableDistances = new int[startAndEndNodeIds.size()];
+        long breadthFirstNanos = 0;
+        long lookupNanos = 0;
+        // Timed on the second round, the first warms up
+        for ( int round = 0; round < 2; round++ )
+        {
+            long startTime = System.nanoTime();
+            for ( int i = 0; i < breadthFirstDistances.length; i++ )
+            {
+                long[] startAndEndNodeId = startAndEndNodeIds.get( i );
+                breadthFirstDistances[i] = breadthFirstDistance( graph, (int) startAndEndNodeId[0],
+                        (int) startAndEndNodeId[1], queue, distances );
+            }
+            breadthFirstNanos = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for ( int i = 0; i < tableDistances.length; i++ )
+            {
+                long[] startAndEndNodeId = startAndEndNodeIds.get( i );
+                tableDistances[i] = distance( (int) startAndEndNodeId[0], (int) startAndEndNodeId[1] );
+            }
+            lookupNanos = System.nanoTime() - startTime;
+        }
+        int mismatchCount = 0;
+        for ( int i = 0; i < tableDistances.length; i++ )
+        {
+            int distance = breadthFirstDistances[i];
+            if ( ( distance <= MAX_DISTANCE ) ? distance != tableDistances[i] : tableDistances[i] != FAR )
+                mismatchCount++;
+        }
+
+        int pairCount = Math.max( 1, startAndEndNodeIds.size() );
+        double savedNanos = Math.max( 0, ( breadthFirstNanos - lookupNanos ) / (double) pairCount );
+        double buildNanos = Math.max( 1, TimeUnit.MILLISECONDS.toNanos( buildTimeMillis ) );
+        long timeBreakEven = (long) ( nodeCount * queriesPerBuild * savedNanos / buildNanos );
+        long memoryBreakEven = (long) Math.sqrt( 2.0 * Runtime.getRuntime().maxMemory() );
+        StringBuilder sb = new StringBuilder();
+        sb.append( String.format( "\tPairs\t\t\t : Count[%s] Mismatches With BFS[%s]\n", pairCount,
+                mismatchCount ) );
+        sb.append( String.format( "\tMean Query Time\t\t : BFS[%.1f(us)] Lookup[%.3f(us)]\n",
+                breadthFirstNanos / 1000.0 / pairCount, lookupNanos / 1000.0 / pairCount ) );
+        sb.append( String.format( "\tBuild\t\t\t : Time[%s(ms)] Memory[%s(KB)] Amortized Over[%s] queries\n",
+                buildTimeMillis, memoryBytes() / 1024, (long) Math.ceil( buildNanos / Math.max( 1, savedNanos ) ) ) );
+        sb.append( String.format( "\tBreak-Even\t\t : Build Time[%s nodes at %s queries per build] "
+                                  + "Memory[%s nodes in %s(MB) heap]\n", timeBreakEven, queriesPerBuild,
+                memoryBreakEven, Runtime.getRuntime().maxMemory() / ( 1024 * 1024 ) ) );
+        sb.append( String.format( "\tWorth It Up To\t\t : %s nodes\n", Math.min( timeBreakEven, memoryBreakEven ) ) );
+        return sb.toString();
+    }
+
+    private static void set( long[] table, long index, int distance )
+    {
+        int word = (int) ( index / ENTRIES_PER_WORD );
+        int shift = (int) ( index % ENTRIES_PER_WORD ) * 4;
+        table[word] = ( table[word] & ~( 0xFL << shift ) ) | ( (long) distance << shift );
+    }
+
+    // Unbounded distance, Integer.MAX_VALUE if unreachable
+    private int breadthFirstDistance( CsrGraph graph, int source, int target, int[] queue, int[] distances )
+    {
+        if ( source < 0 || source >= nodeCount || target < 0 || target >= nodeCount ) return Integer.MAX_VALUE;
+        Arrays.fill( distances, -1 );
+        distances[source] = 0;
+        queue[0] = source;
+        for ( int head = 0, tail = 1; head < tail; head++ )
+        {
+            int node = queue[head];
+            if ( node == target ) return distances[node];
+            for ( int pass = 0; pass < 2; pass++ )
+            {
+                Direction adjacency = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+                if ( direction != Direction.BOTH && direction != adjacency ) continue;
+                int[] offsets = graph.offsets( adjacency );
+                int[] targets = graph.targets( adjacency );
+                for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+                {
+                    if ( distances[targets[r]] >= 0 ) continue;
+                    distances[targets[r]] = distances[node] + 1;
+                    queue[tail++] = targets[r];
+                }
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private static List<long[]> loadStartAndEndNodeIds( int maxCount ) throws IOException
+    {
+        List<long[]> startAndEndNodeIds = new ArrayList<long[]>();
+        CsvFileReader reader = new CsvFileReader( new File( Config.PATH_START_END_ID_FILE ), ',' );
+        // Skip Files Headers
+        if ( reader.hasNext() )
+        {
+            reader.next();
+        }
+        while ( startAndEndNodeIds.size() < maxCount && reader.hasNext() )
+        {
+            String[] startAndEndNode = reader.next();
+            startAndEndNodeIds.add( new long[] { Long.parseLong( startAndEndNode[0] ),
+                    Long.parseLong( startAndEndNode[1] ) } );
+        }
+        return startAndEndNodeIds;
+    }
+
+    /**
+     * Checks the length of the first path another finder returns per query against the table: unweighted finders
+     * must return exactly the hop distance, weighted ones may return longer paths but never shorter ones. Missed are
+     * queries without a path between nodes the table has a distance for. Pairs beyond a saturated table are not
+     * checked. Not thread safe.
+     */
+    public static class CrossCheck<P extends Path> implements PathFinder<P>
+    {
+        private final HopDistanceOracle oracle;
+        private final PathFinder<P> pathFinder;
+        private long checkedCount = 0;
+        private long equalCount = 0;
+        private long longerCount = 0;
+        private long shorterCount = 0;
+        private long missedCount = 0;
+
+        private CrossCheck( HopDistanceOracle oracle, PathFinder<P> pathFinder )
+        {
+            this.oracle = oracle;
+            this.pathFinder = pathFinder;
+        }
+
+        @Override
+        public P findSinglePath( Node start, Node end )
+        {
+            P path = pathFinder.findSinglePath( start, end );
+            check( start, end, path );
+            return path;
+        }
+
+        @Override
+        public Iterable<P> findAllPaths( final Node start, final Node end )
+        {
+            final Iterable<P> paths = pathFinder.findAllPaths( start, end );
+            return new Iterable<P>()
+            {
+                @Override
+                public Iterator<P> iterator()
+                {
+                    final Iterator<P> iterator = paths.iterator();
+                    return new Iterator<P>()
+                    {
+                        private boolean checked = false;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            boolean hasNext = iterator.hasNext();
+                            if ( false == hasNext && false == checked )
+                            {
+                                check( start, end, null );
+                                checked = true;
+                            }
+                            return hasNext;
+                        }
+
+                        @Override
+                        public P next()
+                        {
+                            P path = iterator.next();
+                            if ( false == checked ) check( start, end, path );
+                            checked = true;
+                            return path;
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            iterator.remove();
+                        }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public TraversalMetadata metadata()
+        {
+            return pathFinder.metadata();
+        }
+
+        private void check( Node start, Node end, Path path )
+        {
+            int distance = oracle.distance( (int) start.getId(), (int) end.getId() );
+            if ( distance == FAR && oracle.saturated ) return;
+            checkedCount++;
+            if ( null == path )
+            {
+                if ( distance == FAR ) equalCount++;
+                else missedCount++;
+            }
+            else if ( distance == FAR || path.length() < distance ) shorterCount++;
+            else if ( path.length() > distance ) longerCount++;
+            else equalCount++;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "\tHop Distance Check\t : Checked[%s] Equal[%s] Longer[%s] Shorter[%s] Missed[%s]\n",
+                    checkedCount, equalCount, longerCount, shorterCount, missedCount );
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
+
+/**
+ * Unweighted shortest path answered from a {@link HopDistanceOracle}: the distance is a table lookup, the path is
+ * rebuilt greedily from the start node by following any relationship to a neighbor one hop closer to the end node,
+ * all shortest paths by following every such relationship. Pairs beyond a saturated table are handed to a
+ * {@link CsrShortestPath}.
+ */
+public class HopDistanceOracleShortestPath implements PathFinder<Path>
+{
+    private final GraphDatabaseService db;
+    private final HopDistanceOracle oracle;
+    private final CsrGraph graph;
+    private final Direction direction;
+    private final CsrShortestPath fallback;
+    private final ThreadLocal<SearchState> searchStates = new ThreadLocal<SearchState>()
+    {
+        @Override
+        protected SearchState initialValue()
+        {
+            return new SearchState();
+        }
+    };
+
+    public HopDistanceOracleShortestPath( GraphDatabaseService db, HopDistanceOracle oracle, CsrGraph graph )
+    {
+        this.db = db;
+        this.oracle = oracle;
+        this.graph = graph;
+        this.direction = oracle.direction();
+        this.fallback = new CsrShortestPath( db, graph, direction );
+    }
+
+    public HopDistanceOracle oracle()
+    {
+        return oracle;
+    }
+
+    @Override
+    public Path findSinglePath( Node start, Node end )
+    {
+        int startNode = (int) start.getId();
+        int endNode = (int) end.getId();
+        SearchState state = searchStates.get();
+        state.reset();
+        int distance = oracle.distance( startNode, endNode );
+        if ( distance == HopDistanceOracle.FAR )
+        {
+            return ( oracle.saturated() ) ? fallback.findSinglePath( start, end ) : null;
+        }
+        int node = startNode;
+        for ( int length = 0; length < distance; length++ )
+        {
+            node = step( state, node, endNode, distance - length, length );
+        }
+        state.pathsReturned = 1;
+        return GraphUtils.buildPath( db, startNode, state.pathRelationshipIds, distance );
+    }
+
+    @Override
+    public Iterable<Path> findAllPaths( Node start, Node end )
+    {
+        int startNode = (int) start.getId();
+        int endNode = (int) end.getId();
+        SearchState state = searchStates.get();
+        state.reset();
+        int distance = oracle.distance( startNode, endNode );
+        if ( distance == HopDistanceOracle.FAR )
+        {
+            return ( oracle.saturated() ) ? fallback.findAllPaths( start, end ) : Collections.<Path>emptyList();
+        }
+        List<Path> paths = new ArrayList<Path>();
+        collectPaths( state, startNode, startNode, endNode, distance, 0, paths );
+        return paths;
+    }
+
+    @Override
+    public TraversalMetadata metadata()
+    {
+        final SearchState state = searchStates.get();
+        return new TraversalMetadata()
+        {
+            @Override
+            public int getNumberOfPathsReturned()
+            {
+                return state.pathsReturned;
+            }
+
+            @Override
+            public int getNumberOfRelationshipsTraversed()
+            {
+                return (int) Math.min( Integer.MAX_VALUE, state.relationshipsTraversed );
+            }
+        };
+    }
+
+    // Follows the first relationship to a neighbor one hop closer to the end node, there always is one
+    private int step( SearchState state, int node, int endNode, int distance, int length )
+    {
+        for ( int pass = 0; pass < 2; pass++ )
+        {
+            Direction adjacency = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+            if ( direction != Direction.BOTH && direction != adjacency ) continue;
+            int[] offsets = graph.offsets( adjacency );
+            int[] targets = graph.targets( adjacency );
+            long[] relationshipIds = graph.relationshipIds( adjacency );
+            for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+            {
+                state.relationshipsTraversed++;
+                if ( oracle.distance( targets[r], endNode ) == distance - 1 )
+                {
+                    state.pathRelationshipIds[length] = relationshipIds[r];
+                    return targets[r];
+                }
+            }
+        }
+        throw new IllegalStateException( String.format( "No neighbor of %s at distance %s from %s", node,
+                distance - 1, endNode ) );
+    }
+
+    private void collectPaths( SearchState state, int startNode, int node, int endNode, int distance, int length,
+            List<Path> paths )
+    {
+        if ( distance == 0 )
+        {
+            paths.add( GraphUtils.buildPath( db, startNode, state.pathRelationshipIds, length ) );
+            state.pathsReturned++;
+            return;
+        }
+        for ( int pass = 0; pass < 2; pass++ )
+        {
+            Direction adjacency = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+            if ( direction != Direction.BOTH && direction != adjacency ) continue;
+            int[] offsets = graph.offsets( adjacency );
+            int[] targets = graph.targets( adjacency );
+            long[] relationshipIds = graph.relationshipIds( adjacency );
+            for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+            {
+                state.relationshipsTraversed++;
+                if ( oracle.distance( targets[r], endNode ) == distance - 1 )
+                {
+                    state.pathRelationshipIds[length] = relationshipIds[r];
+                    collectPaths( state, startNode, targets[r], endNode, distance - 1, length + 1, paths );
+                }
+            }
+        }
+    }
+
+    private static class SearchState
+    {
+        private final long[] pathRelationshipIds = new long[HopDistanceOracle.MAX_DISTANCE];
+        private int pathsReturned;
+        private long relationshipsTraversed;
+
+        void reset()
+        {
+            pathsReturned = 0;
+            relationshipsTraversed = 0;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.Arrays;
+
+/**
+ * d-ary min-heap of int node indexes with primitive double keys. Positions are tracked per node, so a node's key can
+ * be decreased in place instead of inserting duplicates.
+ */
+public class IndexedMinHeap
+{
+    private final int arity;
+    private final int[] nodes;
+    private final double[] keys;
+    private final int[] positions;
+    private int size = 0;
+
+    public IndexedMinHeap( int capacity, int arity )
+    {
+        this.arity = arity;
+        this.nodes = new int[capacity];
+        this.keys = new double[capacity];
+        this.positions = new int[capacity];
+        Arrays.fill( positions, -1 );
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean contains( int node )
+    {
+        return positions[node] >= 0;
+    }
+
+    public double minKey()
+    {
+        return keys[0];
+    }
+
+    // Inserts the node, or lowers its key if it is already queued with a higher one. Returns false if unchanged
+    public boolean insertOrDecrease( int node, double key )
+    {
+        int position = positions[node];
+        if ( position < 0 )
+        {
+            position = size++;
+        }
+        else if ( key >= keys[position] )
+        {
+            return false;
+        }
+        siftUp( position, node, key );
+        return true;
+    }
+
+    // Inserts the node, or moves it to its new key whether that is lower or higher than the current one
+    public void update( int node, double key )
+    {
+        int position = positions[node];
+        if ( position < 0 || key < keys[position] )
+        {
+            insertOrDecrease( node, key );
+        }
+        else
+        {
+            siftDown( position, node, key );
+        }
+    }
+
+    public int poll()
+    {
+        int min = nodes[0];
+        positions[min] = -1;
+        size--;
+        if ( size > 0 ) siftDown( 0, nodes[size], keys[size] );
+        return min;
+    }
+
+    public void clear()
+    {
+        for ( int i = 0; i < size; i++ )
+        {
+            positions[nodes[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp( int position, int node, double key )
+    {
+        while ( position > 0 )
+        {
+            int parent = ( position - 1 ) / arity;
+            if ( keys[parent] <= key ) break;
+            move( parent, position );
+            position = parent;
+        }
+        place( position, node, key );
+    }
+
+    private void siftDown( int position, int node, double key )
+    {
+        while ( true )
+        {
+            int firstChild = position * arity + 1;
+            if ( firstChild >= size ) break;
+            int lastChild = Math.min( firstChild + arity, size );
+            int minChild = firstChild;
+            for ( int child = firstChild + 1; child < lastChild; child++ )
+            {
+                if ( keys[child] < keys[minChild] ) minChild = child;
+            }
+            if ( keys[minChild] >= key ) break;
+            move( minChild, position );
+            position = minChild;
+        }
+        place( position, node, key );
+    }
+
+    private void move( int from, int to )
+    {
+        nodes[to] = nodes[from];
+        keys[to] = keys[from];
+        positions[nodes[to]] = to;
+    }
+
+    private void place( int position, int node, double key )
+    {
+        nodes[position] = node;
+        keys[position] = key;
+        positions[node] = position;
+    }
+}
@@ -1,132 +1,743 @@
 package org.neo4j.bench.shortestpath;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphdb.Direction;
 
 public class InputFilesCreator
 {
     private static String DIRECTED_FALSE = "undirected";
     private static String DIRECTED_TRUE = "directed";
+    private static String PAIRS_UNIFORM = "uniform";
+    private static String PAIRS_ZIPF = "zipf";
+    private static String PAIRS_GROUPED = "grouped";
+    private static double DEFAULT_ZIPF_EXPONENT = 1.0;
+    private static int DEFAULT_TARGETS_PER_SOURCE = 10;
+    private static int WEIGHT_DECIMALS = 2;
+    // Every stage draws from its own stream, so generated files only depend on the seed, not on the thread count
+    private static long SEED = 42;
+    private static long RELATIONSHIP_WEIGHT_STREAM = 1;
+    private static long NODE_WEIGHT_STREAM = 2;
+    private static long PAIRS_STREAM = 3;
+    private static long GRAPH_STREAM = 4;
+    private static long ORDERING_STREAM = 5;
+    private static String FORMAT_CSV = "csv";
+    private static String FORMAT_BINARY = "binary";
+    private static String FORMAT_BOTH = "both";
 
     public static void main( String[] args ) throws IOException
     {
-        String errMsg = String.format( "Expected 1 parameter, found %s. Parameters should be <%s|%s>\n", args.length,
-                DIRECTED_FALSE, DIRECTED_TRUE );
+        String errMsg = String.format( "Expected 1 to 8 parameters, found %s. Parameters should be <%s|%s> [%s|%s|%s] "
+                                       + "[zipf exponent|targets per source] [%s|%s|%s|%s] [node count] "
+                                       + "[edge count] [%s|%s|%s] [ordering]\nPairs are %s by default, the zipf "
+                                       + "exponent defaults to %s, targets per source to %s. The graph is read from "
+                                       + "%s by default (%s), the synthetic graphs need node and edge counts. Files "
+                                       + "are written as %s by default. Orderings are %s, default %s\n", args.length,
+                DIRECTED_FALSE, DIRECTED_TRUE, PAIRS_UNIFORM, PAIRS_ZIPF, PAIRS_GROUPED, GraphGenerator.SNAP,
+                GraphGenerator.RMAT, GraphGenerator.BARABASI_ALBERT, GraphGenerator.GRID, FORMAT_CSV, FORMAT_BINARY,
+                FORMAT_BOTH, PAIRS_UNIFORM, DEFAULT_ZIPF_EXPONENT, DEFAULT_TARGETS_PER_SOURCE,
+                Config.RAW_RELATIONSHIP_FILE, GraphGenerator.SNAP, FORMAT_CSV, NodeOrdering.ORDERINGS,
+                NodeOrdering.ORIGINAL );
 
-        if ( args.length != 1 )
+        if ( args.length < 1 || args.length > 8 )
         {
             System.out.println( errMsg );
             return;
         }
 
-        if ( args[0].equals( DIRECTED_FALSE ) == false && args[0].equals( DIRECTED_TRUE ) == false )
+        // The ordering is always last, the format before it, the other parameters are parsed without them
+        String ordering = NodeOrdering.ORIGINAL;
+        if ( NodeOrdering.ORDERINGS.contains( args[args.length - 1] ) )
+        {
+            ordering = args[args.length - 1];
+            args = Arrays.copyOf( args, args.length - 1 );
+        }
+        else if ( args.length == 8 )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 7: %s\n%s", args[7], errMsg ) );
+            return;
+        }
+
+        String format = FORMAT_CSV;
+        String last = ( args.length > 0 ) ? args[args.length - 1] : "";
+        if ( last.equals( FORMAT_CSV ) || last.equals( FORMAT_BINARY ) || last.equals( FORMAT_BOTH ) )
         {
-            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", args[0], errMsg ) );
+            format = last;
+            args = Arrays.copyOf( args, args.length - 1 );
+        }
+        else if ( args.length == 7 )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 6: %s\n%s", last, errMsg ) );
             return;
         }
 
-        Random random = new Random( 42 );
-        DecimalFormat doubleFormat = new DecimalFormat( "#.##" );
+        if ( args.length == 0 || args[0].equals( DIRECTED_FALSE ) == false && args[0].equals( DIRECTED_TRUE ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", ( args.length > 0 ) ? args[0]
+                    : "", errMsg ) );
+            return;
+        }
+
+        // Optional parameters may be left out from the right, and the pairs parameters before the graph parameters
+        int parameter = 1;
+        String pairs = PAIRS_UNIFORM;
+        if ( parameter < args.length && false == isGraph( args[parameter] ) )
+        {
+            pairs = args[parameter];
+            if ( pairs.equals( PAIRS_UNIFORM ) == false && pairs.equals( PAIRS_ZIPF ) == false
+                 && pairs.equals( PAIRS_GROUPED ) == false )
+            {
+                System.out.println( String.format( "Unexpected value for parameter %s: %s\n%s", parameter,
+                        args[parameter], errMsg ) );
+                return;
+            }
+            parameter++;
+        }
+
+        double zipfExponent = DEFAULT_ZIPF_EXPONENT;
+        int targetsPerSource = DEFAULT_TARGETS_PER_SOURCE;
+        if ( parameter < args.length && false == isGraph( args[parameter] ) )
+        {
+            try
+            {
+                if ( pairs.equals( PAIRS_GROUPED ) )
+                    targetsPerSource = Integer.parseInt( args[parameter] );
+                else
+                    zipfExponent = Double.parseDouble( args[parameter] );
+            }
+            catch ( NumberFormatException e )
+            {
+                // Rejected below, as any targets per source under 1 and any negative exponent
+                targetsPerSource = 0;
+                zipfExponent = -1;
+            }
+            // NaN exponents would make every cumulative probability NaN
+            if ( targetsPerSource < 1 || false == ( zipfExponent >= 0 ) || Double.isInfinite( zipfExponent ) )
+            {
+                System.out.println( String.format( "Unexpected value for parameter %s: %s\n%s", parameter,
+                        args[parameter], errMsg ) );
+                return;
+            }
+            parameter++;
+        }
+
+        String graph = ( parameter < args.length ) ? args[parameter] : GraphGenerator.SNAP;
+        if ( false == isGraph( graph ) )
+        {
+            System.out.println( String.format( "Unexpected value for parameter %s: %s\n%s", parameter, graph,
+                    errMsg ) );
+            return;
+        }
+        int countsParameter = parameter + 1;
+        boolean synthetic = GraphGenerator.SYNTHETIC.contains( graph );
+        int expectedCount = ( synthetic ) ? countsParameter + 2 : Math.min( countsParameter, args.length );
+        if ( args.length != expectedCount )
+        {
+            System.out.println( String.format( "Unexpected parameter count for graph %s: %s\n%s", graph,
+                    args.length, errMsg ) );
+            return;
+        }
+
+        GraphGenerator generator;
+        if ( synthetic )
+        {
+            try
+            {
+                long nodeCount = Long.parseLong( args[countsParameter] );
+                long edgeCount = Long.parseLong( args[countsParameter + 1] );
+                generator = GraphGenerator.create( graph, nodeCount, edgeCount, GraphGenerator.mix( SEED
+                                                                                                    + GRAPH_STREAM ) );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                System.out.println( String.format( "Unexpected value for parameters %s and %s: %s %s (%s)\n%s",
+                        countsParameter, countsParameter + 1, args[countsParameter], args[countsParameter + 1],
+                        e.getMessage(), errMsg ) );
+                return;
+            }
+        }
+        else
+        {
+            generator = new GraphGenerator.EdgeList( new File( Config.RAW_RELATIONSHIP_FILE ) );
+        }
+
         int pathCount = 10000;
         boolean directed = ( args[0].equals( DIRECTED_TRUE ) );
+        final String pairsDistribution = pairs;
+        final String nodeOrdering = ordering;
+        final double exponent = zipfExponent;
+        final int targets = targetsPerSource;
 
-        File relationshipsCsvFile = new File( Config.RELATIONSHIP_ID_FILE );
-        relationshipsCsvFile.delete();
-        relationshipsCsvFile.createNewFile();
-        CsvFileWriter relationshipsWriter = new CsvFileWriter( relationshipsCsvFile );
-        CsvFileReader relationshipsReader = new CsvFileReader( new File( Config.RAW_RELATIONSHIP_FILE ) );
+        final boolean csv = ( format.equals( FORMAT_BINARY ) == false );
+        final boolean binary = ( format.equals( FORMAT_CSV ) == false );
+        final OutputFiles relationshipsFiles = new OutputFiles( csv, Config.RELATIONSHIP_ID_FILE, binary,
+                Config.RELATIONSHIP_BINARY_FILE );
+        final OutputFiles nodesFiles = new OutputFiles( csv, Config.NODE_ID_FILE, binary, Config.NODE_BINARY_FILE );
+        final OutputFiles pairsFiles = new OutputFiles( csv, Config.PATH_START_END_ID_FILE, binary,
+                Config.PATH_START_END_BINARY_FILE );
 
-        File nodesCsvFile = new File( Config.NODE_ID_FILE );
-        nodesCsvFile.delete();
-        nodesCsvFile.createNewFile();
-        CsvFileWriter nodesWriter = new CsvFileWriter( nodesCsvFile );
+        ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+        try
+        {
+            long startTime = System.currentTimeMillis();
+            final NodeIdSet nodeIds = createRelationshipFileAndReturnUniqueNodeIds( executor, generator,
+                    relationshipsFiles, directed );
+            System.out.println( String.format( "Created %s from %s in %s(ms), found %s", relationshipsFiles,
+                    generator, System.currentTimeMillis() - startTime, nodeIds ) );
 
-        File pathStartAndEndNodesCsvFile = new File( Config.PATH_START_END_ID_FILE );
-        pathStartAndEndNodesCsvFile.delete();
-        pathStartAndEndNodesCsvFile.createNewFile();
-        CsvFileWriter pathStartAndEndNodesWriter = new CsvFileWriter( pathStartAndEndNodesCsvFile );
+            File nodeIdMappingFile = new File( Config.NODE_ID_MAPPING_FILE );
+            final int[] newNodeIds;
+            if ( nodeOrdering.equals( NodeOrdering.ORIGINAL ) )
+            {
+                newNodeIds = null;
+                nodeIdMappingFile.delete();
+            }
+            else
+            {
+                startTime = System.currentTimeMillis();
+                CsrGraph relationships = ( null != relationshipsFiles.binaryFile )
+                                         ? CsrGraph.loadFromRelationshipsBinary( relationshipsFiles.binaryFile,
+                                                 "weight" )
+                                         : CsrGraph.loadFromRelationshipsCsv( relationshipsFiles.csvFile, "weight" );
+                double originalDistance = NodeOrdering.meanIdDistance( relationships, NodeOrdering.newNodeIds(
+                        NodeOrdering.ORIGINAL, relationships, nodeIds, 0 ) );
+                long orderingSeed = GraphGenerator.mix( SEED + ORDERING_STREAM );
+                newNodeIds = NodeOrdering.newNodeIds( nodeOrdering, relationships, nodeIds, orderingSeed );
+                reorderRelationshipFile( relationships, newNodeIds, relationshipsFiles );
+                createNodeIdMappingFile( newNodeIds, nodeIdMappingFile );
+                System.out.println( String.format( "Reordered %s in %s order in %s(ms), created %s, mean id distance "
+                                                   + "of related nodes %.1f -> %.1f", relationshipsFiles,
+                        nodeOrdering, System.currentTimeMillis() - startTime, nodeIdMappingFile, originalDistance,
+                        NodeOrdering.meanIdDistance( relationships, newNodeIds ) ) );
+            }
 
-        Set<Long> nodeIds = createRelationshipFileAndReturnUniqueNodeIds( relationshipsReader, relationshipsWriter,
-                random, doubleFormat, directed );
+            // Both files only read the node ids, so they are written concurrently
+            startTime = System.currentTimeMillis();
+            Future<Void> nodeFile = executor.submit( new Callable<Void>()
+            {
+                @Override
+                public Void call() throws IOException
+                {
+                    createNodeFile( nodeIds, newNodeIds, nodesFiles );
+                    return null;
+                }
+            } );
+            final int pathsToCreate = pathCount;
+            Future<Void> pathStartAndEndNodesFile = executor.submit( new Callable<Void>()
+            {
+                @Override
+                public Void call() throws IOException
+                {
+                    createPathStartAndEndNodeFile( nodeIds, newNodeIds, pairsFiles, pairsDistribution,
+                            pathsToCreate, exponent, targets );
+                    return null;
+                }
+            } );
+            await( nodeFile );
+            await( pathStartAndEndNodesFile );
+            System.out.println( String.format( "Created %s and %s in %s(ms)", nodesFiles, pairsFiles,
+                    System.currentTimeMillis() - startTime ) );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
 
-        createNodeFile( nodeIds, nodesWriter, random, doubleFormat );
+    private static boolean isGraph( String parameter )
+    {
+        return parameter.equals( GraphGenerator.SNAP ) || GraphGenerator.SYNTHETIC.contains( parameter );
+    }
 
-        // Make Path Start And End Nodes File
-        createPathStartAndEndNodeFile( pathStartAndEndNodesWriter, nodeIds, pathCount, random );
+    // Make Weighted Relationship File: the generator chunks are generated and written in parallel, each to its own
+    // part files, the parts are then concatenated in order
+    private static NodeIdSet createRelationshipFileAndReturnUniqueNodeIds( ExecutorService executor,
+            final GraphGenerator generator, OutputFiles relationshipsFiles, final boolean bidirectional )
+            throws IOException
+    {
+        int chunkCount = generator.chunkCount();
+        List<OutputFiles> partFiles = new ArrayList<OutputFiles>();
+        List<Future<NodeIdSet>> chunkNodeIds = new ArrayList<Future<NodeIdSet>>();
+        for ( int chunk = 0; chunk < chunkCount; chunk++ )
+        {
+            final int chunkIndex = chunk;
+            final OutputFiles chunkFiles = relationshipsFiles.part( chunk );
+            partFiles.add( chunkFiles );
+            chunkNodeIds.add( executor.submit( new Callable<NodeIdSet>()
+            {
+                @Override
+                public NodeIdSet call() throws IOException
+                {
+                    return createRelationshipFilePart( generator, chunkIndex, chunkFiles, chunkIndex == 0,
+                            bidirectional );
+                }
+            } ) );
+        }
+
+        NodeIdSet nodeIds = await( chunkNodeIds.get( 0 ) );
+        for ( int chunk = 1; chunk < chunkCount; chunk++ )
+        {
+            nodeIds.addAll( await( chunkNodeIds.get( chunk ) ) );
+        }
+        if ( null != relationshipsFiles.csvFile )
+        {
+            List<File> csvPartFiles = new ArrayList<File>();
+            for ( OutputFiles chunkFiles : partFiles )
+            {
+                csvPartFiles.add( chunkFiles.csvFile );
+            }
+            concatenate( csvPartFiles, relationshipsFiles.csvFile, null );
+        }
+        if ( null != relationshipsFiles.binaryFile )
+        {
+            // Binary parts hold records only, the header with the total count goes in front of them
+            List<File> binaryPartFiles = new ArrayList<File>();
+            long recordCount = 0;
+            for ( OutputFiles chunkFiles : partFiles )
+            {
+                binaryPartFiles.add( chunkFiles.binaryFile );
+                recordCount += chunkFiles.binaryFile.length() / BinaryGraphFile.RecordType.RELATIONSHIPS.recordSize();
+            }
+            concatenate( binaryPartFiles, relationshipsFiles.binaryFile, BinaryGraphFile.header(
+                    BinaryGraphFile.RecordType.RELATIONSHIPS, recordCount ) );
+        }
+        return nodeIds;
+    }
 
-        relationshipsWriter.close();
-        nodesWriter.close();
-        pathStartAndEndNodesWriter.close();
+    // Weights are drawn from the edge key, so they do not depend on how the work is scheduled. Ids are incremented by
+    // one to avoid the Reference Node in Neo4j (ID==0)
+    private static NodeIdSet createRelationshipFilePart( GraphGenerator generator, int chunk, OutputFiles partFiles,
+            boolean header, final boolean bidirectional ) throws IOException
+    {
+        final RecordWriter relationshipsWriter = new RecordWriter( partFiles, BinaryGraphFile.RecordType.RELATIONSHIPS,
+                false );
+        try
+        {
+            if ( header ) relationshipsWriter.writeCsvHeader( "from", "to", "type", "weight@double" );
+            final NodeIdSet nodeIds = new NodeIdSet();
+            generator.generate( chunk, new GraphGenerator.EdgeHandler()
+            {
+                @Override
+                public void onEdge( long key, long startNodeId, long endNodeId ) throws IOException
+                {
+                    long correctedStartNodeId = startNodeId + 1;
+                    long correctedEndNodeId = endNodeId + 1;
+                    nodeIds.add( correctedStartNodeId );
+                    nodeIds.add( correctedEndNodeId );
+                    double weight = randomDouble( RELATIONSHIP_WEIGHT_STREAM, key );
+                    relationshipsWriter.writeRelationship( correctedStartNodeId, correctedEndNodeId, weight );
+                    if ( bidirectional )
+                    {
+                        relationshipsWriter.writeRelationship( correctedEndNodeId, correctedStartNodeId, weight );
+                    }
+                }
+            } );
+            return nodeIds;
+        }
+        finally
+        {
+            relationshipsWriter.close();
+        }
     }
 
-    // Make Weighted Relationship File
-    private static Set<Long> createRelationshipFileAndReturnUniqueNodeIds( CsvFileReader relationshipsReader,
-            CsvFileWriter relationshipsWriter, Random random, DecimalFormat doubleFormat, boolean bidirectional )
+    // Reorder Relationship File: relationships grouped by start node, start nodes in new id order, so the
+    // relationship records of a node are contiguous in the store. Written next to the files it then replaces
+    private static void reorderRelationshipFile( CsrGraph graph, int[] newNodeIds, OutputFiles relationshipsFiles )
             throws IOException
     {
-        relationshipsWriter.writeLine( "from", "to", "type", "weight@double" );
-        Set<Long> nodeIds = new HashSet<Long>();
-        while ( relationshipsReader.hasNext() )
+        int[] originalNodeIds = originalNodeIds( newNodeIds );
+        int[] offsets = graph.offsets( Direction.OUTGOING );
+        int[] targets = graph.targets( Direction.OUTGOING );
+        float[] weights = graph.weights( Direction.OUTGOING );
+        OutputFiles reorderedFiles = relationshipsFiles.suffixed( ".reordered" );
+        RecordWriter relationshipsWriter = new RecordWriter( reorderedFiles, BinaryGraphFile.RecordType.RELATIONSHIPS,
+                true );
+        try
         {
-            String[] relationshipNodes = relationshipsReader.next();
-            for ( String node : relationshipNodes )
+            relationshipsWriter.writeCsvHeader( "from", "to", "type", "weight@double" );
+            for ( int nodeId = 1; nodeId < originalNodeIds.length; nodeId++ )
             {
-                nodeIds.add( incByOne( node ) );
+                int node = originalNodeIds[nodeId];
+                for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+                {
+                    relationshipsWriter.writeRelationship( nodeId, newNodeIds[targets[r]], weights[r] );
+                }
             }
-            double weight = random.nextDouble();
-            String correctedStartNodeId = incByOne( relationshipNodes[0] ).toString();
-            String correctedEndNodeId = incByOne( relationshipNodes[1] ).toString();
-            String formattedWeight = doubleFormat.format( weight );
-            relationshipsWriter.writeLine( correctedStartNodeId, correctedEndNodeId, "LINK", formattedWeight );
-            if ( bidirectional )
+        }
+        finally
+        {
+            relationshipsWriter.close();
+        }
+        reorderedFiles.renameTo( relationshipsFiles );
+    }
+
+    // Make Node Id Mapping File: new ids in order, with the ids of the original ordering
+    private static void createNodeIdMappingFile( int[] newNodeIds, File nodeIdMappingFile ) throws IOException
+    {
+        int[] originalNodeIds = originalNodeIds( newNodeIds );
+        CsvFileWriter mappingWriter = new CsvFileWriter( nodeIdMappingFile );
+        try
+        {
+            mappingWriter.writeLine( "id", "original_id" );
+            for ( int nodeId = 1; nodeId < originalNodeIds.length; nodeId++ )
             {
-                relationshipsWriter.writeLine( correctedEndNodeId, correctedStartNodeId, "LINK", formattedWeight );
+                if ( originalNodeIds[nodeId] == 0 ) continue;
+                mappingWriter.writeLong( nodeId );
+                mappingWriter.writeLong( originalNodeIds[nodeId] );
+                mappingWriter.endLine();
             }
         }
-        return nodeIds;
+        finally
+        {
+            mappingWriter.close();
+        }
+    }
+
+    // Original node ids by new node id, 0 for unused new ids
+    private static int[] originalNodeIds( int[] newNodeIds )
+    {
+        int highestNodeId = 0;
+        for ( int newNodeId : newNodeIds )
+        {
+            highestNodeId = Math.max( highestNodeId, newNodeId );
+        }
+        int[] originalNodeIds = new int[highestNodeId + 1];
+        for ( int nodeId = 0; nodeId < newNodeIds.length; nodeId++ )
+        {
+            if ( newNodeIds[nodeId] > 0 ) originalNodeIds[newNodeIds[nodeId]] = nodeId;
+        }
+        return originalNodeIds;
+    }
+
+    // Make Weighted Node File: nodes in id order, weights are drawn from the original node id, so they follow the
+    // node through any reordering
+    private static void createNodeFile( NodeIdSet nodeIds, int[] newNodeIds, OutputFiles nodesFiles )
+            throws IOException
+    {
+        RecordWriter nodesWriter = new RecordWriter( nodesFiles, BinaryGraphFile.RecordType.NODES, true );
+        try
+        {
+            nodesWriter.writeCsvHeader( "id", "weight@double" );
+            if ( null == newNodeIds )
+            {
+                for ( long nodeId = nodeIds.next( 0 ); nodeId >= 0; nodeId = nodeIds.next( nodeId + 1 ) )
+                {
+                    nodesWriter.writeNode( nodeId, randomDouble( NODE_WEIGHT_STREAM, nodeId ) );
+                }
+            }
+            else
+            {
+                int[] originalNodeIds = originalNodeIds( newNodeIds );
+                for ( int nodeId = 1; nodeId < originalNodeIds.length; nodeId++ )
+                {
+                    if ( originalNodeIds[nodeId] == 0 ) continue;
+                    nodesWriter.writeNode( nodeId, randomDouble( NODE_WEIGHT_STREAM, originalNodeIds[nodeId] ) );
+                }
+            }
+        }
+        finally
+        {
+            nodesWriter.close();
+        }
     }
 
-    // Make Weighted Node File
-    private static void createNodeFile( Set<Long> nodeIds, CsvFileWriter nodesWriter, Random random,
-            DecimalFormat doubleFormat ) throws IOException
+    // Make Path Start And End Nodes File: pairs are drawn from the original node ids, so every ordering queries the
+    // same pairs, and written with the new ones
+    private static void createPathStartAndEndNodeFile( NodeIdSet nodeIds, int[] newNodeIds,
+            OutputFiles pathStartAndEndNodesFiles, String pairs, int pathCount, double zipfExponent,
+            int targetsPerSource ) throws IOException
     {
-        nodesWriter.writeLine( "id", "weight@double" );
-        for ( Long nodeId : nodeIds )
+        RecordWriter pathStartAndEndNodesWriter = new RecordWriter( pathStartAndEndNodesFiles,
+                BinaryGraphFile.RecordType.PAIRS, true, newNodeIds );
+        Random random = new Random( GraphGenerator.mix( SEED + PAIRS_STREAM ) );
+        try
+        {
+            // Pairs have distinct start and end nodes, they would be drawn forever from fewer than two nodes
+            if ( nodeIds.size() < 2 )
+            {
+                throw new IOException( String.format( "Expected at least 2 nodes to pick pairs from, found %s",
+                        nodeIds.size() ) );
+            }
+            pathStartAndEndNodesWriter.writeCsvHeader( "start", "end" );
+            if ( pairs.equals( PAIRS_ZIPF ) )
+            {
+                createZipfPathStartAndEndNodes( pathStartAndEndNodesWriter, nodeIds, pathCount, zipfExponent,
+                        random );
+            }
+            else if ( pairs.equals( PAIRS_GROUPED ) )
+            {
+                createGroupedPathStartAndEndNodes( pathStartAndEndNodesWriter, nodeIds, pathCount, targetsPerSource,
+                        random );
+            }
+            else
+            {
+                for ( int i = 0; i < pathCount; i++ )
+                {
+                    long[] startAndEndNodeId = randomStartAndEndNodeId( nodeIds, random );
+                    pathStartAndEndNodesWriter.writePair( startAndEndNodeId[0], startAndEndNodeId[1] );
+                }
+            }
+        }
+        finally
         {
-            double weight = random.nextDouble();
-            nodesWriter.writeLine( nodeId.toString(), doubleFormat.format( weight ) );
+            pathStartAndEndNodesWriter.close();
         }
     }
 
-    // Make Path Start And End Nodes File
-    private static void createPathStartAndEndNodeFile( CsvFileWriter pathStartAndEndNodesWriter, Set<Long> nodeIds,
-            int pathCount, Random random ) throws IOException
+    // Zipf Distributed Path Start And End Nodes: pathCount uniformly drawn pairs are ranked in the order drawn, then
+    // the pair of rank k is picked with probability proportional to 1/k^exponent
+    private static void createZipfPathStartAndEndNodes( RecordWriter pathStartAndEndNodesWriter,
+            NodeIdSet nodeIds, int pathCount, double exponent, Random random ) throws IOException
     {
-        pathStartAndEndNodesWriter.writeLine( "start", "end" );
-        List<Long> allNodeIds = Arrays.asList( nodeIds.toArray( new Long[nodeIds.size()] ) );
-        int allNodeIdsCount = allNodeIds.size();
+        long[][] rankedStartAndEndNodeIds = new long[pathCount][];
+        double[] cumulativeProbabilities = new double[pathCount];
+        double total = 0;
+        for ( int rank = 0; rank < pathCount; rank++ )
+        {
+            rankedStartAndEndNodeIds[rank] = randomStartAndEndNodeId( nodeIds, random );
+            total += 1 / Math.pow( rank + 1, exponent );
+            cumulativeProbabilities[rank] = total;
+        }
         for ( int i = 0; i < pathCount; i++ )
         {
-            Long startNodeId = allNodeIds.get( (int) ( random.nextDouble() * allNodeIdsCount ) );
-            Long endNodeId = -1L;
-            while ( endNodeId == -1 )
+            int rank = Arrays.binarySearch( cumulativeProbabilities, random.nextDouble() * total );
+            rank = Math.min( ( rank < 0 ) ? -rank - 1 : rank, pathCount - 1 );
+            long[] startAndEndNodeId = rankedStartAndEndNodeIds[rank];
+            pathStartAndEndNodesWriter.writePair( startAndEndNodeId[0], startAndEndNodeId[1] );
+        }
+    }
+
+    // Grouped Path Start And End Nodes: consecutive runs of pairs share a start node, each run has targetsPerSource
+    // distinct end nodes, the last one fewer if pathCount is not a multiple of targetsPerSource
+    private static void createGroupedPathStartAndEndNodes( RecordWriter pathStartAndEndNodesWriter,
+            NodeIdSet nodeIds, int pathCount, int targetsPerSource, Random random ) throws IOException
+    {
+        targetsPerSource = (int) Math.min( targetsPerSource, nodeIds.size() - 1 );
+        Set<Long> endNodeIds = new HashSet<Long>();
+        for ( int i = 0; i < pathCount; i += targetsPerSource )
+        {
+            long startNodeId = nodeIds.sample( random );
+            int groupSize = Math.min( targetsPerSource, pathCount - i );
+            endNodeIds.clear();
+            while ( endNodeIds.size() < groupSize )
             {
-                long val = allNodeIds.get( (int) ( random.nextDouble() * allNodeIdsCount ) );
-                endNodeId = ( val == startNodeId ) ? -1 : val;
+                long endNodeId = nodeIds.sample( random );
+                if ( endNodeId == startNodeId || false == endNodeIds.add( endNodeId ) ) continue;
+                pathStartAndEndNodesWriter.writePair( startNodeId, endNodeId );
             }
-            pathStartAndEndNodesWriter.writeLine( startNodeId.toString(), endNodeId.toString() );
         }
     }
 
-    // To avoid Reference Node in Neo4j, make sure no Nodes have ID==0
-    private static Long incByOne( String longString )
+    private static long[] randomStartAndEndNodeId( NodeIdSet nodeIds, Random random )
     {
-        return Long.parseLong( longString ) + 1;
+        long startNodeId = nodeIds.sample( random );
+        long endNodeId = nodeIds.sample( random );
+        while ( endNodeId == startNodeId )
+        {
+            endNodeId = nodeIds.sample( random );
+        }
+        return new long[] { startNodeId, endNodeId };
+    }
+
+    // Writes the header, if any, followed by the part files, which are deleted
+    private static void concatenate( List<File> partFiles, File file, ByteBuffer header ) throws IOException
+    {
+        FileChannel out = new FileOutputStream( file ).getChannel();
+        try
+        {
+            while ( null != header && header.hasRemaining() )
+            {
+                out.write( header );
+            }
+            for ( File partFile : partFiles )
+            {
+                FileChannel in = new FileInputStream( partFile ).getChannel();
+                try
+                {
+                    long position = 0;
+                    long size = in.size();
+                    while ( position < size )
+                    {
+                        position += in.transferTo( position, size - position, out );
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+                partFile.delete();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static <T> T await( Future<T> future ) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while creating input files", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException ) throw (IOException) e.getCause();
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+    private static double randomDouble( long stream, long key )
+    {
+        return GraphGenerator.randomDouble( SEED, stream, key );
+    }
+
+    // The CSV file, the binary file or both, null if not written
+    private static class OutputFiles
+    {
+        private final File csvFile;
+        private final File binaryFile;
+
+        OutputFiles( boolean csv, String csvPath, boolean binary, String binaryPath )
+        {
+            this.csvFile = ( csv ) ? new File( csvPath ) : null;
+            this.binaryFile = ( binary ) ? new File( binaryPath ) : null;
+        }
+
+        OutputFiles part( int chunk )
+        {
+            return suffixed( ".part-" + chunk );
+        }
+
+        OutputFiles suffixed( String suffix )
+        {
+            return new OutputFiles( null != csvFile, csvFile + suffix, null != binaryFile, binaryFile + suffix );
+        }
+
+        // Replaces the other files with these, binary last, so a current binary file stays current
+        void renameTo( OutputFiles files ) throws IOException
+        {
+            if ( null != csvFile ) rename( csvFile, files.csvFile );
+            if ( null != binaryFile ) rename( binaryFile, files.binaryFile );
+        }
+
+        private static void rename( File file, File target ) throws IOException
+        {
+            if ( target.exists() && false == target.delete() || false == file.renameTo( target ) )
+            {
+                throw new IOException( String.format( "Could not rename %s to %s", file, target ) );
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            if ( null == binaryFile ) return csvFile.getPath();
+            if ( null == csvFile ) return binaryFile.getPath();
+            return csvFile + " (" + binaryFile + ")";
+        }
+    }
+
+    // Writes each record to the CSV file, the binary file or both. Binary weights are the rounded CSV values. Pairs
+    // are written with the new node ids, if any
+    private static class RecordWriter
+    {
+        private final CsvFileWriter csvWriter;
+        private final BinaryGraphFile.Writer binaryWriter;
+        private final int[] newNodeIds;
+
+        RecordWriter( OutputFiles files, BinaryGraphFile.RecordType type, boolean binaryHeader ) throws IOException
+        {
+            this( files, type, binaryHeader, null );
+        }
+
+        RecordWriter( OutputFiles files, BinaryGraphFile.RecordType type, boolean binaryHeader, int[] newNodeIds )
+                throws IOException
+        {
+            this.csvWriter = ( null != files.csvFile ) ? new CsvFileWriter( files.csvFile ) : null;
+            this.binaryWriter = ( null != files.binaryFile ) ? new BinaryGraphFile.Writer( files.binaryFile, type,
+                    binaryHeader ) : null;
+            this.newNodeIds = newNodeIds;
+        }
+
+        void writeCsvHeader( String... columns ) throws IOException
+        {
+            if ( null != csvWriter ) csvWriter.writeLine( columns );
+        }
+
+        void writeNode( long nodeId, double weight ) throws IOException
+        {
+            if ( null != csvWriter )
+            {
+                csvWriter.writeLong( nodeId );
+                csvWriter.writeDouble( weight, WEIGHT_DECIMALS );
+                csvWriter.endLine();
+            }
+            if ( null != binaryWriter ) binaryWriter.writeNode( nodeId, (float) CsvFileWriter.round( weight,
+                    WEIGHT_DECIMALS ) );
+        }
+
+        void writeRelationship( long startNodeId, long endNodeId, double weight ) throws IOException
+        {
+            if ( null != csvWriter )
+            {
+                csvWriter.writeLong( startNodeId );
+                csvWriter.writeLong( endNodeId );
+                csvWriter.writeString( "LINK" );
+                csvWriter.writeDouble( weight, WEIGHT_DECIMALS );
+                csvWriter.endLine();
+            }
+            if ( null != binaryWriter ) binaryWriter.writeRelationship( startNodeId, endNodeId,
+                    (float) CsvFileWriter.round( weight, WEIGHT_DECIMALS ) );
+        }
+
+        void writePair( long startNodeId, long endNodeId ) throws IOException
+        {
+            if ( null != newNodeIds )
+            {
+                startNodeId = newNodeIds[(int) startNodeId];
+                endNodeId = newNodeIds[(int) endNodeId];
+            }
+            if ( null != csvWriter )
+            {
+                csvWriter.writeLong( startNodeId );
+                csvWriter.writeLong( endNodeId );
+                csvWriter.endLine();
+            }
+            if ( null != binaryWriter ) binaryWriter.writePair( startNodeId, endNodeId );
+        }
+
+        void close() throws IOException
+        {
+            try
+            {
+                if ( null != csvWriter ) csvWriter.close();
+            }
+            finally
+            {
+                if ( null != binaryWriter ) binaryWriter.close();
+            }
+        }
     }
 }
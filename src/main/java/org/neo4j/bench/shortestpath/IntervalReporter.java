@@ -0,0 +1,142 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Query run times per interval while a benchmark runs. Every {@link #INTERVAL_SECONDS} the run times recorded since
+ * the last interval are written to a HdrHistogram log (readable with HistogramLogProcessor) and their throughput,
+ * 50th and 99th percentile and maximum are printed. Intervals that start after the warmup window are added to the
+ * steady state histogram, so JIT compilation and cache fill do not end up in its percentiles. Run times may be
+ * recorded from any thread. A run that warms up with its own queries calls {@link #endWarmup()} once
+ * {@link #isWarmingUp()} turns false, so the steady state starts with the next query rather than the next interval.
+ */
+public class IntervalReporter
+{
+    static final int INTERVAL_SECONDS = 1;
+    // Fixed range, auto resizing interval histograms can not be encoded into the log by this HdrHistogram version
+    static final long MAX_RUN_TIME = TimeUnit.MINUTES.toMicros( 10 );
+
+    private final String name;
+    private final long warmupNanos;
+    private final Recorder recorder = new Recorder( MAX_RUN_TIME, 3 );
+    private final Histogram steadyStateHistogram = ConcurrentShortestPathBench.newTimeHistogram();
+    private final PrintStream logStream;
+    private final HistogramLogWriter logWriter;
+    private final ScheduledExecutorService scheduler;
+    private final long startTime;
+    private final long startTimeMillis;
+    private Histogram intervalHistogram = null;
+    private long intervalStartTime;
+    private int intervalCount = 0;
+
+    public IntervalReporter( String name, File logFile, int warmupSeconds ) throws FileNotFoundException
+    {
+        this.name = name;
+        this.warmupNanos = TimeUnit.SECONDS.toNanos( warmupSeconds );
+        if ( null != logFile.getParentFile() ) logFile.getParentFile().mkdirs();
+        this.logStream = new PrintStream( new FileOutputStream( logFile ) );
+        this.logWriter = new HistogramLogWriter( logStream );
+        this.startTime = System.nanoTime();
+        this.startTimeMillis = System.currentTimeMillis();
+        this.intervalStartTime = startTime;
+        logWriter.outputComment( String.format( "%s, run times in microseconds, warmup %s(s)", name,
+                warmupSeconds ) );
+        logWriter.outputLogFormatVersion();
+        logWriter.outputStartTime( startTimeMillis );
+        logWriter.setBaseTime( startTimeMillis );
+        logWriter.outputLegend();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "interval-reporter" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        scheduler.scheduleAtFixedRate( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                reportInterval();
+            }
+        }, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS );
+    }
+
+    public void record( long runTimeNanos )
+    {
+        recorder.recordValue( Math.min( TimeUnit.NANOSECONDS.toMicros( runTimeNanos ), MAX_RUN_TIME ) );
+    }
+
+    // True until the warmup window has elapsed
+    public boolean isWarmingUp()
+    {
+        return System.nanoTime() - startTime < warmupNanos;
+    }
+
+    // Reports the current, partial, interval, so the next one starts now. Once the warmup window has elapsed every run
+    // time recorded from here on is in the steady state
+    public void endWarmup()
+    {
+        reportInterval();
+    }
+
+    // Reports the last, partial, interval and closes the log
+    public void close() throws InterruptedException
+    {
+        scheduler.shutdown();
+        scheduler.awaitTermination( 1, TimeUnit.MINUTES );
+        reportInterval();
+        logWriter.outputComment( String.format( "%s done, %s intervals", name, intervalCount ) );
+        logStream.close();
+    }
+
+    // Run times of the intervals after the warmup window, complete once closed
+    public Histogram steadyStateHistogram()
+    {
+        return steadyStateHistogram;
+    }
+
+    @Override
+    public String toString()
+    {
+        if ( steadyStateHistogram.getTotalCount() == 0 )
+            return String.format( "\tSteady State\t\t : ERROR no query completed after the %s(s) warmup, no steady "
+                                  + "state run times\n", TimeUnit.NANOSECONDS.toSeconds( warmupNanos ) );
+        return ShortestPathBench.histogramString( steadyStateHistogram, String.format(
+                "Steady State Run Time (us), after %s(s) warmup", TimeUnit.NANOSECONDS.toSeconds( warmupNanos ) ) );
+    }
+
+    // From the scheduler and from endWarmup() or close()
+    private synchronized void reportInterval()
+    {
+        long intervalEndTime = System.nanoTime();
+        intervalHistogram = recorder.getIntervalHistogram( intervalHistogram );
+        double intervalSeconds = ( intervalEndTime - intervalStartTime ) / (double) TimeUnit.SECONDS.toNanos( 1 );
+        double logStartSeconds = ( intervalStartTime - startTime ) / (double) TimeUnit.SECONDS.toNanos( 1 );
+        // Interval max column in milliseconds
+        logWriter.outputIntervalHistogram( logStartSeconds, logStartSeconds + intervalSeconds, intervalHistogram,
+                1000.0 );
+        System.out.println( String.format( "\t[%s %.0f(s)%s] Throughput[%.1f(queries/s)] 50th[%s(us)] 99th[%s(us)] "
+                                           + "MAX[%s(us)]", name, logStartSeconds + intervalSeconds,
+                ( intervalStartTime - startTime < warmupNanos ) ? " warmup" : "",
+                intervalHistogram.getTotalCount() / intervalSeconds, intervalHistogram.getValueAtPercentile( 50 ),
+                intervalHistogram.getValueAtPercentile( 99 ), intervalHistogram.getMaxValue() ) );
+        if ( intervalStartTime - startTime >= warmupNanos ) steadyStateHistogram.add( intervalHistogram );
+        intervalStartTime = intervalEndTime;
+        intervalCount++;
+    }
+}
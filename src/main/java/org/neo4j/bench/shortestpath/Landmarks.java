@@ -0,0 +1,378 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Landmark distance tables for A* with the ALT (A*, Landmarks, Triangle inequality) heuristic. For every landmark L
+ * the weighted distance L->v and v->L to every node v is stored, then for a goal t:
+ *
+ * <pre>
+ * d(v,t) >= d(L,t) - d(L,v)   and   d(v,t) >= d(v,L) - d(t,L)
+ * </pre>
+ *
+ * The largest of these lower bounds over all landmarks is the estimate. When the search direction is BOTH the graph is
+ * undirected, so only the L->v table is computed and used for both.
+ */
+public class Landmarks implements PrimitiveEstimateEvaluator
+{
+    public static final String STRATEGY_FARTHEST = "farthest";
+    public static final String STRATEGY_DEGREE = "degree";
+    public static final int DEFAULT_LANDMARK_COUNT = 16;
+
+    private static final int FILE_MAGIC = 0x414c5432; // "ALT2"
+
+    private final Direction direction;
+    private final String strategy;
+    private final int nodeCount;
+    private final long graphChecksum;
+    private final int[] landmarks;
+    // [landmark][node]
+    private final float[][] distancesFrom;
+    private final float[][] distancesTo;
+
+    private Landmarks( Direction direction, String strategy, int nodeCount, long graphChecksum, int[] landmarks,
+            float[][] distancesFrom, float[][] distancesTo )
+    {
+        this.direction = direction;
+        this.strategy = strategy;
+        this.nodeCount = nodeCount;
+        this.graphChecksum = graphChecksum;
+        this.landmarks = landmarks;
+        this.distancesFrom = distancesFrom;
+        this.distancesTo = distancesTo;
+    }
+
+    public static void main( String[] args ) throws IOException
+    {
+        String errMsg = String.format( "Expected 3 parameters, found %s. Parameters should be <%s|%s> "
+                                       + "<landmark count> <%s|%s>\n", args.length, ShortestPathBench.DIRECTION_BOTH,
+                ShortestPathBench.DIRECTION_OUT, STRATEGY_FARTHEST, STRATEGY_DEGREE );
+
+        if ( args.length != 3 )
+        {
+            System.out.println( errMsg );
+            return;
+        }
+
+        if ( args[0].equals( ShortestPathBench.DIRECTION_BOTH ) == false
+             && args[0].equals( ShortestPathBench.DIRECTION_OUT ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", args[0], errMsg ) );
+            return;
+        }
+
+        if ( args[2].equals( STRATEGY_FARTHEST ) == false && args[2].equals( STRATEGY_DEGREE ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 2: %s\n%s", args[2], errMsg ) );
+            return;
+        }
+
+        Direction direction = ShortestPathBench.parseDirection( args[0] );
+        int landmarkCount = Integer.parseInt( args[1] );
+
+        long startTime = System.currentTimeMillis();
+        CsrGraph graph = CsrGraph.loadFromRelationshipsFile( "weight" );
+        System.out.println( String.format( "Loaded %s in %s(ms)", graph, System.currentTimeMillis() - startTime ) );
+
+        startTime = System.currentTimeMillis();
+        Landmarks landmarks = compute( graph, direction, landmarkCount, args[2] );
+        System.out.println( String.format( "Computed %s in %s(ms)", landmarks, System.currentTimeMillis()
+                                                                            - startTime ) );
+
+        File landmarksFile = file( direction );
+        landmarks.write( landmarksFile );
+        System.out.println( "Written to " + landmarksFile );
+    }
+
+    public static File file( Direction direction )
+    {
+        return new File( String.format( Config.LANDMARKS_FILE, direction.name().toLowerCase() ) );
+    }
+
+    // Uses the persisted tables when they were computed for this graph (same checksum) and direction, otherwise
+    // computes and stores
+    public static Landmarks loadOrCompute( CsrGraph graph, Direction direction ) throws IOException
+    {
+        File landmarksFile = file( direction );
+        if ( landmarksFile.exists() && hasCurrentFormat( landmarksFile ) )
+        {
+            Landmarks landmarks = read( landmarksFile );
+            if ( landmarks.direction == direction && landmarks.nodeCount == graph.nodeCount()
+                 && landmarks.graphChecksum == graph.checksum() )
+            {
+                return landmarks;
+            }
+        }
+        Landmarks landmarks = compute( graph, direction, DEFAULT_LANDMARK_COUNT, STRATEGY_FARTHEST );
+        landmarks.write( landmarksFile );
+        return landmarks;
+    }
+
+    public static Landmarks compute( CsrGraph graph, Direction direction, int landmarkCount, String strategy )
+    {
+        int nodeCount = graph.nodeCount();
+        landmarkCount = Math.min( landmarkCount, nodeCount );
+        int[] landmarks = new int[landmarkCount];
+        float[][] distancesFrom = new float[landmarkCount][];
+        float[][] distancesTo = ( direction == Direction.BOTH ) ? distancesFrom : new float[landmarkCount][];
+        IndexedMinHeap heap = new IndexedMinHeap( nodeCount, 4 );
+
+        if ( strategy.equals( STRATEGY_DEGREE ) )
+        {
+            landmarks = highestDegreeNodes( graph, landmarkCount );
+        }
+        else
+        {
+            // Start from the node farthest away from the highest degree node, then keep adding the node whose
+            // distance to its closest landmark is largest
+            float[] seedDistances = shortestDistances( graph, highestDegreeNodes( graph, 1 )[0], direction, heap );
+            float[] closestLandmarkDistances = new float[nodeCount];
+            Arrays.fill( closestLandmarkDistances, Float.POSITIVE_INFINITY );
+            int next = farthestNode( seedDistances, null );
+            for ( int i = 0; i < landmarkCount; i++ )
+            {
+                landmarks[i] = next;
+                distancesFrom[i] = shortestDistances( graph, next, direction, heap );
+                for ( int node = 0; node < nodeCount; node++ )
+                {
+                    closestLandmarkDistances[node] = Math.min( closestLandmarkDistances[node], distancesFrom[i][node] );
+                }
+                next = farthestNode( closestLandmarkDistances, landmarks );
+            }
+        }
+
+        for ( int i = 0; i < landmarkCount; i++ )
+        {
+            if ( null == distancesFrom[i] )
+            {
+                distancesFrom[i] = shortestDistances( graph, landmarks[i], direction, heap );
+            }
+            if ( direction != Direction.BOTH )
+            {
+                distancesTo[i] = shortestDistances( graph, landmarks[i], direction.reverse(), heap );
+            }
+        }
+        return new Landmarks( direction, strategy, nodeCount, graph.checksum(), landmarks, distancesFrom,
+                distancesTo );
+    }
+
+    // Files written before the graph checksum was stored have another magic number
+    private static boolean hasCurrentFormat( File file ) throws IOException
+    {
+        DataInputStream in = new DataInputStream( new FileInputStream( file ) );
+        try
+        {
+            return file.length() >= 4 && in.readInt() == FILE_MAGIC;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public static Landmarks read( File file ) throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 1 << 16 ) );
+        try
+        {
+            if ( in.readInt() != FILE_MAGIC ) throw new IOException( "Not a landmarks file: " + file );
+            Direction direction = Direction.valueOf( in.readUTF() );
+            String strategy = in.readUTF();
+            int nodeCount = in.readInt();
+            long graphChecksum = in.readLong();
+            int[] landmarks = new int[in.readInt()];
+            for ( int i = 0; i < landmarks.length; i++ )
+            {
+                landmarks[i] = in.readInt();
+            }
+            float[][] distancesFrom = readTable( in, landmarks.length, nodeCount );
+            float[][] distancesTo = ( direction == Direction.BOTH ) ? distancesFrom : readTable( in, landmarks.length,
+                    nodeCount );
+            return new Landmarks( direction, strategy, nodeCount, graphChecksum, landmarks, distancesFrom,
+                    distancesTo );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public void write( File file ) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream( new FileOutputStream( file ), 1 << 16 ) );
+        try
+        {
+            out.writeInt( FILE_MAGIC );
+            out.writeUTF( direction.name() );
+            out.writeUTF( strategy );
+            out.writeInt( nodeCount );
+            out.writeLong( graphChecksum );
+            out.writeInt( landmarks.length );
+            for ( int landmark : landmarks )
+            {
+                out.writeInt( landmark );
+            }
+            writeTable( out, distancesFrom );
+            if ( direction != Direction.BOTH ) writeTable( out, distancesTo );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    @Override
+    public double getCost( int node, int goal )
+    {
+        if ( node >= nodeCount || goal >= nodeCount ) return 0;
+        double estimate = 0;
+        for ( int i = 0; i < landmarks.length; i++ )
+        {
+            float[] from = distancesFrom[i];
+            float[] to = distancesTo[i];
+            // Unreachable (infinite) entries give no usable bound
+            if ( from[goal] != Float.POSITIVE_INFINITY && from[node] != Float.POSITIVE_INFINITY )
+            {
+                estimate = Math.max( estimate, from[goal] - from[node] );
+            }
+            if ( to[node] != Float.POSITIVE_INFINITY && to[goal] != Float.POSITIVE_INFINITY )
+            {
+                estimate = Math.max( estimate, to[node] - to[goal] );
+            }
+        }
+        return estimate;
+    }
+
+    public Direction direction()
+    {
+        return direction;
+    }
+
+    public int[] landmarks()
+    {
+        return landmarks;
+    }
+
+    public long memoryBytes()
+    {
+        long tableCount = ( direction == Direction.BOTH ) ? 1 : 2;
+        return tableCount * landmarks.length * (long) nodeCount * 4;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "Landmarks[count=%s, strategy=%s, direction=%s, memory=%s(KB)]", landmarks.length,
+                strategy, direction, memoryBytes() / 1024 );
+    }
+
+    private static float[] shortestDistances( CsrGraph graph, int source, Direction direction, IndexedMinHeap heap )
+    {
+        float[] distances = new float[graph.nodeCount()];
+        Arrays.fill( distances, Float.POSITIVE_INFINITY );
+        boolean[] settled = new boolean[graph.nodeCount()];
+        distances[source] = 0;
+        heap.insertOrDecrease( source, 0 );
+        while ( false == heap.isEmpty() )
+        {
+            int node = heap.poll();
+            settled[node] = true;
+            for ( int pass = 0; pass < 2; pass++ )
+            {
+                Direction adjacency = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+                if ( direction != Direction.BOTH && direction != adjacency ) continue;
+                int[] offsets = graph.offsets( adjacency );
+                int[] targets = graph.targets( adjacency );
+                float[] weights = graph.weights( adjacency );
+                for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+                {
+                    int target = targets[r];
+                    if ( settled[target] ) continue;
+                    float distance = distances[node] + weights[r];
+                    if ( distance < distances[target] )
+                    {
+                        distances[target] = distance;
+                        heap.insertOrDecrease( target, distance );
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+
+    private static int[] highestDegreeNodes( CsrGraph graph, int count )
+    {
+        // Degree in the high bits, node in the low bits, so a plain sort orders by degree
+        long[] degreesAndNodes = new long[graph.nodeCount()];
+        for ( int node = 0; node < graph.nodeCount(); node++ )
+        {
+            degreesAndNodes[node] = ( (long) graph.degree( node, Direction.BOTH ) << 32 ) | node;
+        }
+        Arrays.sort( degreesAndNodes );
+        int[] nodes = new int[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            nodes[i] = (int) degreesAndNodes[degreesAndNodes.length - 1 - i];
+        }
+        return nodes;
+    }
+
+    // Farthest reachable node that is not already a landmark
+    private static int farthestNode( float[] distances, int[] exclude )
+    {
+        int farthest = 0;
+        float farthestDistance = -1;
+        for ( int node = 0; node < distances.length; node++ )
+        {
+            if ( distances[node] == Float.POSITIVE_INFINITY || distances[node] <= farthestDistance ) continue;
+            if ( null != exclude && contains( exclude, node ) ) continue;
+            farthest = node;
+            farthestDistance = distances[node];
+        }
+        return farthest;
+    }
+
+    private static boolean contains( int[] values, int value )
+    {
+        for ( int v : values )
+        {
+            if ( v == value ) return true;
+        }
+        return false;
+    }
+
+    private static float[][] readTable( DataInputStream in, int landmarkCount, int nodeCount ) throws IOException
+    {
+        float[][] table = new float[landmarkCount][nodeCount];
+        for ( float[] row : table )
+        {
+            for ( int node = 0; node < nodeCount; node++ )
+            {
+                row[node] = in.readFloat();
+            }
+        }
+        return table;
+    }
+
+    private static void writeTable( DataOutputStream out, float[][] table ) throws IOException
+    {
+        for ( float[] row : table )
+        {
+            for ( float distance : row )
+            {
+                out.writeFloat( distance );
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Evicts the least frequently used entry, the least recently used one among equally frequent entries. Frequencies
+ * only count hits while the entry is cached, they are forgotten on eviction.
+ */
+public class LfuPathCache<K> extends PathCache<K>
+{
+    private final Map<K, Entry<K>> entries = new HashMap<K, Entry<K>>();
+    // First entry is the next to be evicted
+    private final TreeSet<Entry<K>> evictionOrder = new TreeSet<Entry<K>>( new Comparator<Entry<K>>()
+    {
+        @Override
+        public int compare( Entry<K> entry1, Entry<K> entry2 )
+        {
+            if ( entry1.frequency != entry2.frequency ) return ( entry1.frequency < entry2.frequency ) ? -1 : 1;
+            return ( entry1.lastAccess < entry2.lastAccess ) ? -1 : ( entry1.lastAccess == entry2.lastAccess ) ? 0 : 1;
+        }
+    } );
+    private long clock = 0;
+
+    public LfuPathCache( int capacity )
+    {
+        super( capacity );
+    }
+
+    @Override
+    protected long[][] lookup( K key )
+    {
+        Entry<K> entry = entries.get( key );
+        if ( null == entry ) return null;
+        // Re-insert, the ordering fields must not change while the entry is in the set
+        evictionOrder.remove( entry );
+        entry.frequency++;
+        entry.lastAccess = ++clock;
+        evictionOrder.add( entry );
+        return entry.value;
+    }
+
+    @Override
+    protected void insert( K key, long[][] value )
+    {
+        Entry<K> entry = entries.get( key );
+        if ( null != entry )
+        {
+            removed( entry.value, false );
+            entry.value = value;
+            added( value );
+            return;
+        }
+        if ( entries.size() >= capacity )
+        {
+            Entry<K> victim = evictionOrder.pollFirst();
+            entries.remove( victim.key );
+            removed( victim.value, true );
+        }
+        entry = new Entry<K>( key, value, ++clock );
+        entries.put( key, entry );
+        evictionOrder.add( entry );
+        added( value );
+    }
+
+    @Override
+    protected int entryCount()
+    {
+        return entries.size();
+    }
+
+    private static class Entry<K>
+    {
+        private final K key;
+        private long[][] value;
+        private long frequency = 1;
+        private long lastAccess;
+
+        Entry( K key, long[][] value, long lastAccess )
+        {
+            this.key = key;
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
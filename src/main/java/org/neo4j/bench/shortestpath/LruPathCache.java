@@ -0,0 +1,46 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Evicts the least recently used entry.
+ */
+public class LruPathCache<K> extends PathCache<K>
+{
+    // Access ordered, eldest entry is the least recently used
+    private final LinkedHashMap<K, long[][]> entries;
+
+    public LruPathCache( int capacity )
+    {
+        super( capacity );
+        this.entries = new LinkedHashMap<K, long[][]>( 16, 0.75f, true );
+    }
+
+    @Override
+    protected long[][] lookup( K key )
+    {
+        return entries.get( key );
+    }
+
+    @Override
+    protected void insert( K key, long[][] value )
+    {
+        long[][] previous = entries.put( key, value );
+        if ( null != previous ) removed( previous, false );
+        added( value );
+        if ( entries.size() > capacity )
+        {
+            Iterator<Map.Entry<K, long[][]>> eldest = entries.entrySet().iterator();
+            removed( eldest.next().getValue(), true );
+            eldest.remove();
+        }
+    }
+
+    @Override
+    protected int entryCount()
+    {
+        return entries.size();
+    }
+}
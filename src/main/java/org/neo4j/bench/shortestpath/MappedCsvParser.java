@@ -0,0 +1,337 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses a CSV file with a single byte column separator straight from a memory-mapped file, without quoting. The file
+ * is mapped in windows of {@link #WINDOW_SIZE} bytes, a window always starts at a line start and is moved on once
+ * less than {@link #MAX_LINE_LENGTH} bytes are left in it, so lines must be shorter than that.
+ * <p/>
+ * {@link #parseLine(CsvColumnHandler)} reports columns as longs, doubles or raw bytes and allocates nothing, numbers
+ * that are too long for exact parsing here (over 18 digits, or decimal exponents over 22) fall back to
+ * {@link Long#parseLong(String)} and {@link Double#parseDouble(String)}. {@link #nextStrings()} returns the columns of
+ * a line as Strings instead.
+ */
+public class MappedCsvParser implements Closeable
+{
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int MAX_EXACT_DIGITS = 18;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[] { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final Charset CHARSET = Charset.forName( "UTF-8" );
+
+    private final File file;
+    private final byte separator;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+    private final List<String> columns = new ArrayList<String>();
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position;
+    private byte[] textBytes = new byte[256];
+
+    public MappedCsvParser( File file, char separator ) throws IOException
+    {
+        this( file, separator, 0, Long.MAX_VALUE );
+    }
+
+    // Parses the lines in bytes [start, end) of the file, start must be a line start, see lineStarts
+    public MappedCsvParser( File file, char separator, long start, long end ) throws IOException
+    {
+        if ( separator > 127 || separator == '\n' || separator == '\r' )
+            throw new IllegalArgumentException( String.format( "Separator must be a single byte character, not [%s]",
+                    separator ) );
+        this.file = file;
+        this.separator = (byte) separator;
+        this.randomAccessFile = new RandomAccessFile( file, "r" );
+        this.channel = randomAccessFile.getChannel();
+        this.start = start;
+        this.end = Math.min( end, channel.size() );
+        map( start );
+    }
+
+    public long size()
+    {
+        return end - start;
+    }
+
+    // File offset of the next line
+    public long offset()
+    {
+        return windowStart + position;
+    }
+
+    /**
+     * Splits a file into chunkCount byte ranges of about equal size that start at line starts, returns the start
+     * offsets followed by the file size. Ranges may be empty when lines are longer than a range.
+     */
+    public static long[] lineStarts( File file, int chunkCount ) throws IOException
+    {
+        long[] lineStarts = new long[chunkCount + 1];
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+        try
+        {
+            long fileSize = randomAccessFile.length();
+            lineStarts[chunkCount] = fileSize;
+            byte[] bytes = new byte[4096];
+            for ( int chunk = 1; chunk < chunkCount; chunk++ )
+            {
+                // The line start at or after the nominal chunk start, found from the byte before it
+                long offset = Math.max( lineStarts[chunk - 1], fileSize / chunkCount * chunk - 1 );
+                lineStarts[chunk] = fileSize;
+                randomAccessFile.seek( offset );
+                int read;
+                search:
+                while ( offset < fileSize && ( read = randomAccessFile.read( bytes ) ) > 0 )
+                {
+                    for ( int i = 0; i < read; i++ )
+                    {
+                        if ( bytes[i] == '\n' )
+                        {
+                            lineStarts[chunk] = offset + i + 1;
+                            break search;
+                        }
+                    }
+                    offset += read;
+                }
+            }
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+        return lineStarts;
+    }
+
+    // Returns false, without calling the handler, once there are no more lines
+    public boolean parseLine( CsvColumnHandler handler ) throws IOException
+    {
+        if ( false == startLine() ) return false;
+        int limit = window.limit();
+        int column = 0;
+        while ( true )
+        {
+            position = parseColumn( handler, column++, limit );
+            if ( position >= limit )
+            {
+                checkEndOfFile( limit );
+                break;
+            }
+            if ( endColumn( limit ) ) break;
+        }
+        handler.onLineEnd( column );
+        return true;
+    }
+
+    // Parses all remaining lines, returns the number of lines parsed
+    public long parse( CsvColumnHandler handler ) throws IOException
+    {
+        long lineCount = 0;
+        while ( parseLine( handler ) )
+        {
+            lineCount++;
+        }
+        return lineCount;
+    }
+
+    // Columns of the next line, null once there are no more lines
+    public String[] nextStrings() throws IOException
+    {
+        if ( false == startLine() ) return null;
+        int limit = window.limit();
+        columns.clear();
+        while ( true )
+        {
+            int end = position;
+            while ( end < limit && false == isTerminator( window.get( end ) ) )
+            {
+                end++;
+            }
+            columns.add( text( position, end ) );
+            position = end;
+            if ( position >= limit )
+            {
+                checkEndOfFile( limit );
+                break;
+            }
+            if ( endColumn( limit ) ) break;
+        }
+        return columns.toArray( new String[columns.size()] );
+    }
+
+    // Mapped windows are only unmapped once garbage collected
+    @Override
+    public void close() throws IOException
+    {
+        window = null;
+        channel.close();
+        randomAccessFile.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "MappedCsvParser[file=%s, offset=%s, start=%s, end=%s]", file, offset(), start, end );
+    }
+
+    private void map( long offset ) throws IOException
+    {
+        windowStart = offset;
+        window = channel.map( FileChannel.MapMode.READ_ONLY, offset, Math.min( WINDOW_SIZE, end - offset ) );
+        position = 0;
+    }
+
+    private boolean startLine() throws IOException
+    {
+        if ( windowStart + position >= end ) return false;
+        if ( window.limit() - position < MAX_LINE_LENGTH && windowStart + window.limit() < end )
+            map( windowStart + position );
+        return true;
+    }
+
+    // Consumes the terminator at position, returns true if it ended the line
+    private boolean endColumn( int limit )
+    {
+        byte b = window.get( position++ );
+        if ( b == separator ) return false;
+        if ( b == '\r' && position < limit && window.get( position ) == '\n' ) position++;
+        return true;
+    }
+
+    private void checkEndOfFile( int limit ) throws IOException
+    {
+        if ( windowStart + limit < end )
+            throw new IOException( String.format( "Line longer than %s bytes at offset %s in [%s]", MAX_LINE_LENGTH,
+                    windowStart + limit, file ) );
+    }
+
+    private boolean isTerminator( byte b )
+    {
+        return b == separator || b == '\n' || b == '\r';
+    }
+
+    // Reports the column starting at position, returns the position of its terminator (or limit)
+    private int parseColumn( CsvColumnHandler handler, int column, int limit )
+    {
+        int start = position;
+        int i = start;
+        boolean negative = ( i < limit && window.get( i ) == '-' );
+        if ( negative ) i++;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        int exponent = 0;
+        boolean decimal = false;
+        boolean numeric = true;
+        for ( ; i < limit; i++ )
+        {
+            byte b = window.get( i );
+            if ( b >= '0' && b <= '9' )
+            {
+                mantissa = mantissa * 10 + ( b - '0' );
+                digits++;
+                if ( decimal ) scale++;
+            }
+            else if ( b == '.' && false == decimal )
+            {
+                decimal = true;
+            }
+            else
+            {
+                break;
+            }
+        }
+        if ( i < limit && digits > 0 && ( window.get( i ) == 'e' || window.get( i ) == 'E' ) )
+        {
+            decimal = true;
+            i++;
+            boolean negativeExponent = ( i < limit && window.get( i ) == '-' );
+            if ( i < limit && ( negativeExponent || window.get( i ) == '+' ) ) i++;
+            int exponentDigits = 0;
+            for ( ; i < limit && window.get( i ) >= '0' && window.get( i ) <= '9'; i++ )
+            {
+                exponent = Math.min( exponent * 10 + ( window.get( i ) - '0' ), 1000 );
+                exponentDigits++;
+            }
+            if ( negativeExponent ) exponent = -exponent;
+            numeric = ( exponentDigits > 0 );
+        }
+        if ( i < limit && false == isTerminator( window.get( i ) ) )
+        {
+            numeric = false;
+            while ( i < limit && false == isTerminator( window.get( i ) ) )
+            {
+                i++;
+            }
+        }
+
+        if ( false == numeric || digits == 0 )
+        {
+            handler.onText( column, window, start, i );
+        }
+        else if ( digits > MAX_EXACT_DIGITS )
+        {
+            parseSlowly( handler, column, text( start, i ), decimal );
+        }
+        else if ( false == decimal )
+        {
+            handler.onLong( column, ( negative ) ? -mantissa : mantissa );
+        }
+        else
+        {
+            int powerOfTen = exponent - scale;
+            if ( mantissa < MAX_EXACT_MANTISSA && Math.abs( powerOfTen ) < POWERS_OF_TEN.length )
+            {
+                // Both operands exact, so the result is correctly rounded, same as Double.parseDouble
+                double value = ( powerOfTen < 0 ) ? mantissa / POWERS_OF_TEN[-powerOfTen]
+                        : mantissa * POWERS_OF_TEN[powerOfTen];
+                handler.onDouble( column, ( negative ) ? -value : value );
+            }
+            else
+            {
+                handler.onDouble( column, Double.parseDouble( text( start, i ) ) );
+            }
+        }
+        return i;
+    }
+
+    private static void parseSlowly( CsvColumnHandler handler, int column, String value, boolean decimal )
+    {
+        if ( false == decimal )
+        {
+            try
+            {
+                handler.onLong( column, Long.parseLong( value ) );
+                return;
+            }
+            catch ( NumberFormatException e )
+            {
+                // Out of long range, reported as a double
+            }
+        }
+        handler.onDouble( column, Double.parseDouble( value ) );
+    }
+
+    private String text( int start, int end )
+    {
+        int length = end - start;
+        if ( length > textBytes.length ) textBytes = new byte[Math.max( length, textBytes.length * 2 )];
+        for ( int i = 0; i < length; i++ )
+        {
+            textBytes[i] = window.get( start + i );
+        }
+        return new String( textBytes, 0, length, CHARSET );
+    }
+}
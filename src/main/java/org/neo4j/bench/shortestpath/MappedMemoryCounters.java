@@ -0,0 +1,88 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.nioneo.store.NeoStore;
+import org.neo4j.kernel.impl.nioneo.store.WindowPoolStats;
+import org.neo4j.kernel.impl.nioneo.xa.NeoStoreXaDataSource;
+import org.neo4j.kernel.impl.transaction.XaDataSourceManager;
+
+/**
+ * Window pool hits and misses of the node, relationship and property stores over a run, from the stores' own
+ * counters. A miss is a record read from a part of the store file that is not in mapped memory, so with a store
+ * larger than all_stores_total_mapped_memory_size they count the page faults of a node id ordering. Reads answered by
+ * the object cache do not reach the stores, run with cache_type=none to count every hop.
+ */
+public class MappedMemoryCounters
+{
+    private final GraphDatabaseService db;
+    private final Map<String, int[]> startCounts;
+
+    // Starts the run, the counts cover everything from here to toString()
+    public MappedMemoryCounters( GraphDatabaseService db )
+    {
+        this.db = db;
+        this.startCounts = counts( db );
+    }
+
+    public long hits()
+    {
+        return total( 0 );
+    }
+
+    public long misses()
+    {
+        return total( 1 );
+    }
+
+    @Override
+    public String toString()
+    {
+        Map<String, int[]> counts = counts( db );
+        StringBuilder sb = new StringBuilder();
+        for ( Map.Entry<String, int[]> store : counts.entrySet() )
+        {
+            int[] startCount = startCounts.get( store.getKey() );
+            long hits = store.getValue()[0] - startCount[0];
+            long misses = store.getValue()[1] - startCount[1];
+            if ( hits + misses == 0 ) continue;
+            sb.append( String.format( "\tMapped Memory\t\t : %s Hits[%s] Misses[%s] Hit Ratio[%.1f%%]\n",
+                    store.getKey(), hits, misses, hits * 100.0 / ( hits + misses ) ) );
+        }
+        return sb.toString();
+    }
+
+    private long total( int count )
+    {
+        long total = 0;
+        for ( Map.Entry<String, int[]> store : counts( db ).entrySet() )
+        {
+            total += store.getValue()[count] - startCounts.get( store.getKey() )[count];
+        }
+        return total;
+    }
+
+    // Hits and misses by store file name
+    private static Map<String, int[]> counts( GraphDatabaseService db )
+    {
+        XaDataSourceManager dataSourceManager = ( (GraphDatabaseAPI) db ).getDependencyResolver().resolveDependency(
+                XaDataSourceManager.class );
+        NeoStore neoStore = ( (NeoStoreXaDataSource) dataSourceManager.getXaDataSource(
+                NeoStoreXaDataSource.DEFAULT_DATA_SOURCE_NAME ) ).getNeoStore();
+        Map<String, int[]> counts = new LinkedHashMap<String, int[]>();
+        for ( WindowPoolStats stats : neoStore.getAllWindowPoolStats() )
+        {
+            String name = stats.getName();
+            name = name.substring( Math.max( name.lastIndexOf( '/' ), name.lastIndexOf( '\\' ) ) + 1 );
+            if ( name.startsWith( "neostore.nodestore" ) || name.startsWith( "neostore.relationshipstore" )
+                 || name.startsWith( "neostore.propertystore" ) )
+            {
+                counts.put( name, new int[] { stats.getHitCount(), stats.getMissCount() } );
+            }
+        }
+        return counts;
+    }
+}
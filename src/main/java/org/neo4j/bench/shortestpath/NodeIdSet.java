@@ -0,0 +1,262 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Set of non negative node ids without boxing. Ids are kept in a bitmap while that is the smaller representation,
+ * which it is for the dense ids of SNAP style edge lists, and in an open addressing hash table (linear probing, load
+ * factor at most 1/2) otherwise. The representation follows memory use as ids are added, it never changes what
+ * {@link #next(long)} and {@link #sample(Random)} return, those only depend on the ids in the set. Not thread safe
+ * while ids are added.
+ */
+public class NodeIdSet
+{
+    // Bitmaps up to this size are kept however sparse they are
+    static final long MIN_BITMAP_BYTES = 64 * 1024 * 1024;
+    // Below this density random ids are drawn from a sorted copy, above it by rejection from the id range
+    static final double MIN_SAMPLING_DENSITY = 1 / 1024.0;
+    private static final long EMPTY = -1;
+    private static final int MIN_TABLE_CAPACITY = 1024;
+
+    private long[] bits = new long[1024];
+    private long[] table = null;
+    private long[] sorted = null;
+    private long size = 0;
+    private long maxId = -1;
+
+    public boolean add( long id )
+    {
+        if ( id < 0 )
+            throw new IllegalArgumentException( String.format( "Node ids must be non negative, not %s", id ) );
+        if ( null != bits && ( id >> 6 ) >= bits.length )
+        {
+            if ( bitmapBytes( id ) > Math.max( MIN_BITMAP_BYTES, tableBytes( tableCapacity( size + 1 ) ) ) )
+                toTable( tableCapacity( size + 1 ) );
+            else
+                bits = Arrays.copyOf( bits, (int) Math.max( ( id >> 6 ) + 1, Math.min( 2L * bits.length,
+                        Integer.MAX_VALUE ) ) );
+        }
+        boolean added = ( null != bits ) ? addToBitmap( id ) : addToTable( id );
+        if ( added )
+        {
+            size++;
+            maxId = Math.max( maxId, id );
+            sorted = null;
+        }
+        return added;
+    }
+
+    public boolean contains( long id )
+    {
+        if ( id < 0 || id > maxId ) return false;
+        if ( null != bits ) return ( bits[(int) ( id >> 6 )] & ( 1L << id ) ) != 0;
+        int mask = table.length - 1;
+        for ( int slot = slot( id, mask ); table[slot] != EMPTY; slot = ( slot + 1 ) & mask )
+        {
+            if ( table[slot] == id ) return true;
+        }
+        return false;
+    }
+
+    public void addAll( NodeIdSet other )
+    {
+        for ( long id = other.next( 0 ); id >= 0; id = other.next( id + 1 ) )
+        {
+            add( id );
+        }
+    }
+
+    public long size()
+    {
+        return size;
+    }
+
+    public long maxId()
+    {
+        return maxId;
+    }
+
+    // Smallest id in the set that is at least from, -1 if there is none
+    public long next( long from )
+    {
+        if ( from > maxId ) return -1;
+        if ( null != bits )
+        {
+            int word = (int) ( from >> 6 );
+            long remaining = bits[word] & ( -1L << from );
+            while ( remaining == 0 )
+            {
+                if ( ++word == bits.length ) return -1;
+                remaining = bits[word];
+            }
+            return ( (long) word << 6 ) + Long.numberOfTrailingZeros( remaining );
+        }
+        long[] sortedIds = sorted();
+        int index = Arrays.binarySearch( sortedIds, from );
+        index = ( index < 0 ) ? -index - 1 : index;
+        return ( index < sortedIds.length ) ? sortedIds[index] : -1;
+    }
+
+    // Uniformly random id from the set, the same ids and random give the same id whatever the representation
+    public long sample( Random random )
+    {
+        if ( size == 0 ) throw new IllegalStateException( "Can not sample from an empty set" );
+        if ( size / ( maxId + 1.0 ) >= MIN_SAMPLING_DENSITY )
+        {
+            while ( true )
+            {
+                long id = (long) ( random.nextDouble() * ( maxId + 1 ) );
+                if ( contains( id ) ) return id;
+            }
+        }
+        long[] sortedIds = sorted();
+        return sortedIds[(int) ( random.nextDouble() * sortedIds.length )];
+    }
+
+    public long memoryBytes()
+    {
+        return ( ( null != bits ) ? bits.length : table.length ) * 8L + ( ( null != sorted ) ? sorted.length * 8L : 0 );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "NodeIdSet[size=%s, maxId=%s, representation=%s, memory=%s(MB)]", size, maxId,
+                ( null != bits ) ? "bitmap" : "hash table", memoryBytes() / ( 1024 * 1024 ) );
+    }
+
+    private boolean addToBitmap( long id )
+    {
+        int word = (int) ( id >> 6 );
+        long bit = 1L << id;
+        if ( ( bits[word] & bit ) != 0 ) return false;
+        bits[word] |= bit;
+        return true;
+    }
+
+    private boolean addToTable( long id )
+    {
+        if ( ( size + 1 ) * 2 > table.length )
+        {
+            int capacity = tableCapacity( size + 1 );
+            // Switch back once the bitmap is the smaller one again
+            if ( bitmapBytes( Math.max( id, maxId ) ) <= tableBytes( capacity ) )
+            {
+                toBitmap( Math.max( id, maxId ) );
+                return addToBitmap( id );
+            }
+            rehash( capacity );
+        }
+        int mask = table.length - 1;
+        int slot = slot( id, mask );
+        while ( table[slot] != EMPTY )
+        {
+            if ( table[slot] == id ) return false;
+            slot = ( slot + 1 ) & mask;
+        }
+        table[slot] = id;
+        return true;
+    }
+
+    private void toTable( int capacity )
+    {
+        long[] oldBits = bits;
+        table = new long[capacity];
+        Arrays.fill( table, EMPTY );
+        for ( int word = 0; word < oldBits.length; word++ )
+        {
+            for ( long remaining = oldBits[word]; remaining != 0; remaining &= remaining - 1 )
+            {
+                insert( ( (long) word << 6 ) + Long.numberOfTrailingZeros( remaining ) );
+            }
+        }
+        bits = null;
+    }
+
+    private void toBitmap( long highestId )
+    {
+        long[] oldTable = table;
+        bits = new long[(int) ( ( highestId >> 6 ) + 1 )];
+        for ( long id : oldTable )
+        {
+            if ( id != EMPTY ) addToBitmap( id );
+        }
+        table = null;
+    }
+
+    private void rehash( int capacity )
+    {
+        long[] oldTable = table;
+        table = new long[capacity];
+        Arrays.fill( table, EMPTY );
+        for ( long id : oldTable )
+        {
+            if ( id != EMPTY ) insert( id );
+        }
+    }
+
+    // Table must have room, id must not be in it yet
+    private void insert( long id )
+    {
+        int mask = table.length - 1;
+        int slot = slot( id, mask );
+        while ( table[slot] != EMPTY )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+        table[slot] = id;
+    }
+
+    // Synchronized as ids may be read from several threads once added
+    private synchronized long[] sorted()
+    {
+        if ( null != sorted ) return sorted;
+        long[] sortedIds = new long[(int) size];
+        int count = 0;
+        if ( null != bits )
+        {
+            for ( long id = next( 0 ); id >= 0; id = next( id + 1 ) )
+            {
+                sortedIds[count++] = id;
+            }
+        }
+        else
+        {
+            for ( long id : table )
+            {
+                if ( id != EMPTY ) sortedIds[count++] = id;
+            }
+            Arrays.sort( sortedIds );
+        }
+        sorted = sortedIds;
+        return sorted;
+    }
+
+    private static int slot( long id, int mask )
+    {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) ( hash ^ ( hash >>> 32 ) ) & mask;
+    }
+
+    private static int tableCapacity( long size )
+    {
+        long capacity = MIN_TABLE_CAPACITY;
+        while ( capacity < size * 2 )
+        {
+            capacity *= 2;
+        }
+        if ( capacity > 1 << 30 ) throw new IllegalStateException( "Too many node ids: " + size );
+        return (int) capacity;
+    }
+
+    private static long bitmapBytes( long highestId )
+    {
+        return ( ( highestId >> 6 ) + 1 ) * 8;
+    }
+
+    private static long tableBytes( int capacity )
+    {
+        return capacity * 8L;
+    }
+}
@@ -0,0 +1,298 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Node id orderings that place neighbors close together in the id space, and so in the node and relationship stores,
+ * where Neo4j lays records out by id. The graph is treated as undirected:
+ * <ul>
+ * <li>original : the ids as generated, raw id + 1</li>
+ * <li>source : the original ids, only the relationships are grouped by start node</li>
+ * <li>bfs : breadth first order, each component from its highest degree node</li>
+ * <li>rcm : Reverse Cuthill-McKee, breadth first from a low degree node of each component, neighbors in increasing
+ * degree order, the whole order reversed</li>
+ * <li>degree : decreasing degree, the hubs most paths pass through share the first pages</li>
+ * <li>community : label propagation communities, larger communities first, decreasing degree within a community</li>
+ * </ul>
+ * Ties are broken by the original id, so orderings only depend on the graph.
+ */
+public class NodeOrdering
+{
+    static String ORIGINAL = "original";
+    static String SOURCE = "source";
+    static String BFS = "bfs";
+    static String RCM = "rcm";
+    static String DEGREE = "degree";
+    static String COMMUNITY = "community";
+    static List<String> ORDERINGS = Arrays.asList( ORIGINAL, SOURCE, BFS, RCM, DEGREE, COMMUNITY );
+    static int LABEL_PROPAGATION_ROUNDS = 20;
+
+    /**
+     * New node ids by original node id, numbered from 1 in the given ordering, 0 for ids not in the node id set. The
+     * original and source orderings keep the original ids.
+     */
+    public static int[] newNodeIds( String ordering, CsrGraph graph, NodeIdSet nodeIds, long seed )
+    {
+        int[] order;
+        if ( ordering.equals( BFS ) )
+            order = breadthFirstOrder( graph, nodeIds, false );
+        else if ( ordering.equals( RCM ) )
+            order = reverse( breadthFirstOrder( graph, nodeIds, true ) );
+        else if ( ordering.equals( DEGREE ) )
+            order = degreeOrder( graph, nodeIds );
+        else if ( ordering.equals( COMMUNITY ) )
+            order = communityOrder( graph, nodeIds, seed );
+        else if ( ordering.equals( ORIGINAL ) || ordering.equals( SOURCE ) )
+            order = idOrder( graph, nodeIds );
+        else
+            throw new IllegalArgumentException( "Unexpected ordering: " + ordering );
+
+        int[] newNodeIds = new int[graph.nodeCount()];
+        for ( int i = 0; i < order.length; i++ )
+        {
+            newNodeIds[order[i]] = ( ordering.equals( ORIGINAL ) || ordering.equals( SOURCE ) ) ? order[i] : i + 1;
+        }
+        return newNodeIds;
+    }
+
+    /**
+     * Mean id distance between the endpoints of a relationship, over all relationships: the smaller, the more often a
+     * hop stays on the same store page.
+     */
+    public static double meanIdDistance( CsrGraph graph, int[] newNodeIds )
+    {
+        int[] offsets = graph.offsets( Direction.OUTGOING );
+        int[] targets = graph.targets( Direction.OUTGOING );
+        double total = 0;
+        for ( int node = 0; node < graph.nodeCount(); node++ )
+        {
+            for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+            {
+                total += Math.abs( newNodeIds[node] - newNodeIds[targets[r]] );
+            }
+        }
+        return ( graph.relationshipCount() > 0 ) ? total / graph.relationshipCount() : 0;
+    }
+
+    private static int[] idOrder( CsrGraph graph, NodeIdSet nodeIds )
+    {
+        int[] order = new int[(int) nodeIds.size()];
+        int size = 0;
+        for ( long nodeId = nodeIds.next( 0 ); nodeId >= 0 && nodeId < graph.nodeCount(); nodeId = nodeIds.next(
+                nodeId + 1 ) )
+        {
+            order[size++] = (int) nodeId;
+        }
+        return Arrays.copyOf( order, size );
+    }
+
+    // Components are started in decreasing degree order for bfs, in increasing degree order for rcm
+    private static int[] breadthFirstOrder( CsrGraph graph, NodeIdSet nodeIds, boolean cuthillMcKee )
+    {
+        final int[] degrees = degrees( graph );
+        Integer[] starts = boxed( idOrder( graph, nodeIds ) );
+        Arrays.sort( starts, ( cuthillMcKee ) ? increasingDegree( degrees ) : decreasingDegree( degrees ) );
+        Comparator<Integer> neighborOrder = increasingDegree( degrees );
+
+        int[] order = new int[starts.length];
+        boolean[] visited = new boolean[graph.nodeCount()];
+        int head = 0;
+        int tail = 0;
+        Integer[] neighbors = new Integer[0];
+        for ( int start : starts )
+        {
+            if ( visited[start] ) continue;
+            visited[start] = true;
+            order[tail++] = start;
+            while ( head < tail )
+            {
+                int node = order[head++];
+                int neighborCount = 0;
+                for ( int pass = 0; pass < 2; pass++ )
+                {
+                    Direction direction = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+                    int[] offsets = graph.offsets( direction );
+                    int[] targets = graph.targets( direction );
+                    for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+                    {
+                        if ( visited[targets[r]] ) continue;
+                        visited[targets[r]] = true;
+                        if ( neighborCount == neighbors.length )
+                            neighbors = Arrays.copyOf( neighbors, Math.max( 16, neighborCount * 2 ) );
+                        neighbors[neighborCount++] = targets[r];
+                    }
+                }
+                if ( cuthillMcKee ) Arrays.sort( neighbors, 0, neighborCount, neighborOrder );
+                for ( int i = 0; i < neighborCount; i++ )
+                {
+                    order[tail++] = neighbors[i];
+                }
+            }
+        }
+        return order;
+    }
+
+    private static int[] degreeOrder( CsrGraph graph, NodeIdSet nodeIds )
+    {
+        Integer[] order = boxed( idOrder( graph, nodeIds ) );
+        Arrays.sort( order, decreasingDegree( degrees( graph ) ) );
+        return unboxed( order );
+    }
+
+    // Every node takes the most frequent label among its neighbors, ties go to the smallest label, until no label
+    // changes or the rounds run out. Nodes are visited in a shuffled order, drawn from the seed
+    private static int[] communityOrder( CsrGraph graph, NodeIdSet nodeIds, long seed )
+    {
+        int[] nodes = idOrder( graph, nodeIds );
+        final int[] labels = new int[graph.nodeCount()];
+        for ( int node : nodes )
+        {
+            labels[node] = node;
+        }
+        int[] visitOrder = Arrays.copyOf( nodes, nodes.length );
+        Random random = new Random( seed );
+        for ( int i = visitOrder.length - 1; i > 0; i-- )
+        {
+            int j = random.nextInt( i + 1 );
+            int swap = visitOrder[i];
+            visitOrder[i] = visitOrder[j];
+            visitOrder[j] = swap;
+        }
+
+        int[] labelCounts = new int[graph.nodeCount()];
+        int[] seenLabels = new int[16];
+        for ( int round = 0; round < LABEL_PROPAGATION_ROUNDS; round++ )
+        {
+            boolean changed = false;
+            for ( int node : visitOrder )
+            {
+                int seenCount = 0;
+                for ( int pass = 0; pass < 2; pass++ )
+                {
+                    Direction direction = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+                    int[] offsets = graph.offsets( direction );
+                    int[] targets = graph.targets( direction );
+                    for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+                    {
+                        int label = labels[targets[r]];
+                        if ( labelCounts[label]++ > 0 ) continue;
+                        if ( seenCount == seenLabels.length ) seenLabels = Arrays.copyOf( seenLabels, seenCount * 2 );
+                        seenLabels[seenCount++] = label;
+                    }
+                }
+                int bestLabel = labels[node];
+                int bestCount = 0;
+                for ( int i = 0; i < seenCount; i++ )
+                {
+                    int label = seenLabels[i];
+                    if ( labelCounts[label] > bestCount || labelCounts[label] == bestCount && label < bestLabel )
+                    {
+                        bestLabel = label;
+                        bestCount = labelCounts[label];
+                    }
+                    labelCounts[label] = 0;
+                }
+                if ( bestCount > 0 && bestLabel != labels[node] )
+                {
+                    labels[node] = bestLabel;
+                    changed = true;
+                }
+            }
+            if ( false == changed ) break;
+        }
+
+        final int[] communitySizes = new int[graph.nodeCount()];
+        for ( int node : nodes )
+        {
+            communitySizes[labels[node]]++;
+        }
+        final Comparator<Integer> degreeOrder = decreasingDegree( degrees( graph ) );
+        Integer[] order = boxed( nodes );
+        Arrays.sort( order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer first, Integer second )
+            {
+                int firstSize = communitySizes[labels[first]];
+                int secondSize = communitySizes[labels[second]];
+                if ( firstSize != secondSize ) return ( firstSize > secondSize ) ? -1 : 1;
+                if ( labels[first] != labels[second] ) return ( labels[first] < labels[second] ) ? -1 : 1;
+                return degreeOrder.compare( first, second );
+            }
+        } );
+        return unboxed( order );
+    }
+
+    // Relationships in either direction
+    private static int[] degrees( CsrGraph graph )
+    {
+        int[] degrees = new int[graph.nodeCount()];
+        for ( int node = 0; node < graph.nodeCount(); node++ )
+        {
+            degrees[node] = graph.degree( node, Direction.BOTH );
+        }
+        return degrees;
+    }
+
+    private static Comparator<Integer> increasingDegree( final int[] degrees )
+    {
+        return new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer first, Integer second )
+            {
+                if ( degrees[first] != degrees[second] ) return ( degrees[first] < degrees[second] ) ? -1 : 1;
+                return first.compareTo( second );
+            }
+        };
+    }
+
+    private static Comparator<Integer> decreasingDegree( final int[] degrees )
+    {
+        return new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer first, Integer second )
+            {
+                if ( degrees[first] != degrees[second] ) return ( degrees[first] > degrees[second] ) ? -1 : 1;
+                return first.compareTo( second );
+            }
+        };
+    }
+
+    private static int[] reverse( int[] order )
+    {
+        for ( int i = 0, j = order.length - 1; i < j; i++, j-- )
+        {
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    private static Integer[] boxed( int[] values )
+    {
+        Integer[] boxed = new Integer[values.length];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    private static int[] unboxed( Integer[] values )
+    {
+        int[] unboxed = new int[values.length];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            unboxed[i] = values[i];
+        }
+        return unboxed;
+    }
+}
@@ -0,0 +1,337 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.neo4j.bench.shortestpath.ShortestPathBench.Pair;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
+/**
+ * Open-loop driver: queries are scheduled at a fixed arrival rate, independent of how long earlier queries take.
+ * Response time is measured from the intended start time of each query, so time spent queueing behind a slow query
+ * is not omitted from the results. Arrival rates are swept in ascending order until the p99 response time breaks
+ * the SLO, the highest rate that met it is reported as the sustainable throughput.
+ */
+public class OpenLoopShortestPathBench
+{
+    public static void main( String[] args ) throws IOException, InterruptedException
+    {
+        String errMsg = String.format( "Expected 5 or 6 parameters, found %s. Parameters should be <%s|%s> <%s|%s> "
+                                       + "<arrival rates (queries/s), e.g. 10,20,50> <p99 SLO (ms)> <worker threads> "
+                                       + "[algorithms]\nAlgorithms is a comma separated subset of %s, default is %s\n",
+                args.length, ShortestPathBench.PATHS_SINGLE, ShortestPathBench.PATHS_ALL,
+                ShortestPathBench.DIRECTION_BOTH, ShortestPathBench.DIRECTION_OUT, ShortestPathBench.ALGORITHMS,
+                ShortestPathBench.DEFAULT_ALGORITHMS );
+
+        if ( args.length != 5 && args.length != 6 )
+        {
+            System.out.println( errMsg );
+            return;
+        }
+
+        if ( args[0].equals( ShortestPathBench.PATHS_ALL ) == false
+             && args[0].equals( ShortestPathBench.PATHS_SINGLE ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", args[0], errMsg ) );
+            return;
+        }
+
+        if ( args[1].equals( ShortestPathBench.DIRECTION_BOTH ) == false
+             && args[1].equals( ShortestPathBench.DIRECTION_OUT ) == false )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 1: %s\n%s", args[1], errMsg ) );
+            return;
+        }
+
+        List<Double> arrivalRates = new ArrayList<Double>();
+        try
+        {
+            for ( String arrivalRate : args[2].split( "," ) )
+            {
+                arrivalRates.add( Double.parseDouble( arrivalRate.trim() ) );
+            }
+        }
+        catch ( NumberFormatException e )
+        {
+            // Rejected below, as any rate that is not positive
+            arrivalRates.add( 0.0 );
+        }
+        for ( double arrivalRate : arrivalRates )
+        {
+            if ( false == ( arrivalRate > 0 ) || Double.isInfinite( arrivalRate ) )
+            {
+                System.out.println( String.format( "Unexpected value for parameter 2: %s\n%s", args[2], errMsg ) );
+                return;
+            }
+        }
+        Collections.sort( arrivalRates );
+
+        long sloMillis;
+        try
+        {
+            sloMillis = Long.parseLong( args[3] );
+        }
+        catch ( NumberFormatException e )
+        {
+            // Rejected below, as any negative SLO
+            sloMillis = -1;
+        }
+        if ( sloMillis < 0 )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 3: %s\n%s", args[3], errMsg ) );
+            return;
+        }
+
+        int threadCount;
+        try
+        {
+            threadCount = Integer.parseInt( args[4] );
+        }
+        catch ( NumberFormatException e )
+        {
+            // Rejected below, as any thread count under 1
+            threadCount = 0;
+        }
+        if ( threadCount < 1 )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 4: %s\n%s", args[4], errMsg ) );
+            return;
+        }
+
+        List<String> algorithms;
+        try
+        {
+            algorithms = ShortestPathBench.parseAlgorithms( ( args.length == 6 ) ? args[5]
+                    : ShortestPathBench.DEFAULT_ALGORITHMS );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 5: %s\n%s", args[5], errMsg ) );
+            return;
+        }
+
+        GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( Config.DB_DIR ).setConfig(
+                Config.NEO4J_CONFIG ).newGraphDatabase();
+
+        int runCount = 1000;
+        List<Pair<Node>> startAndEndNodes = ShortestPathBench.loadStartAndEndNodes( db, runCount );
+        Direction direction = ShortestPathBench.parseDirection( args[1] );
+        boolean singlePath = args[0].equals( ShortestPathBench.PATHS_SINGLE );
+        System.out.println( "Paths =\t\t" + args[0] );
+        System.out.println( "Direction =\t" + direction );
+        System.out.println( "Rates =\t\t" + arrivalRates );
+        System.out.println( "p99 SLO =\t" + sloMillis + "(ms)" );
+        System.out.println( "Threads =\t" + threadCount );
+
+        Map<String, PathFinder<? extends Path>> pathFinders = ShortestPathBench.createPathFinders( db,
+                direction, algorithms );
+
+        for ( Map.Entry<String, PathFinder<? extends Path>> pathFinder : pathFinders.entrySet() )
+        {
+            System.out.println( "- " + pathFinder.getKey() + " -\n" );
+            double sustainableRate = 0;
+            for ( double arrivalRate : arrivalRates )
+            {
+                RateResult result = runAtFixedRate( pathFinder.getValue(), startAndEndNodes, arrivalRate,
+                        threadCount, singlePath );
+                System.out.println( result );
+                boolean sloMet = result.responseTimeHistogram.getValueAtPercentile( 99 ) <= TimeUnit.MILLISECONDS
+                        .toMicros( sloMillis );
+                if ( false == sloMet ) break;
+                sustainableRate = arrivalRate;
+            }
+            System.out.println( String.format( "\tSustainable Rate\t : %s(queries/s) at p99 <= %s(ms)\n",
+                    sustainableRate, sloMillis ) );
+        }
+
+        db.shutdown();
+    }
+
+    public static RateResult runAtFixedRate( PathFinder<? extends Path> pathFinder,
+            List<Pair<Node>> startAndEndNodes, double arrivalRate, int threadCount, boolean singlePath )
+            throws InterruptedException
+    {
+        if ( false == ( arrivalRate > 0 ) || Double.isInfinite( arrivalRate ) )
+        {
+            throw new IllegalArgumentException( "Expected a positive arrival rate, found " + arrivalRate );
+        }
+        if ( threadCount < 1 )
+        {
+            throw new IllegalArgumentException( "Expected at least 1 worker thread, found " + threadCount );
+        }
+        long expectedIntervalNanos = (long) ( TimeUnit.SECONDS.toNanos( 1 ) / arrivalRate );
+        if ( expectedIntervalNanos > Long.MAX_VALUE / ( startAndEndNodes.size() + 1L ) / threadCount )
+        {
+            throw new IllegalArgumentException( "Arrival rate too low to schedule, found " + arrivalRate );
+        }
+        AtomicInteger nextSlot = new AtomicInteger( 0 );
+        CountDownLatch endGate = new CountDownLatch( threadCount );
+        // Leave the workers time to start before the first query is due
+        long scheduleStartTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( 100 );
+        List<ScheduledWorker> workers = new ArrayList<ScheduledWorker>();
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            ScheduledWorker worker = new ScheduledWorker( pathFinder, startAndEndNodes, nextSlot, endGate,
+                    singlePath, scheduleStartTime, expectedIntervalNanos, threadCount );
+            workers.add( worker );
+            Thread thread = new Thread( worker, "scheduled-worker-" + i );
+            thread.setDaemon( true );
+            thread.start();
+        }
+        endGate.await();
+        long wallTime = System.nanoTime() - scheduleStartTime;
+
+        RateResult result = new RateResult( arrivalRate );
+        for ( ScheduledWorker worker : workers )
+        {
+            if ( null != worker.failure )
+            {
+                throw new RuntimeException( "Scheduled worker failed", worker.failure );
+            }
+            result.responseTimeHistogram.add( worker.responseTimeHistogram );
+            result.serviceTimeHistogram.add( worker.serviceTimeHistogram );
+            result.notFoundCount += worker.notFoundCount;
+        }
+        long queryCount = result.responseTimeHistogram.getTotalCount() + result.notFoundCount;
+        result.achievedRate = queryCount / ( wallTime / (double) TimeUnit.SECONDS.toNanos( 1 ) );
+        return result;
+    }
+
+    public static class RateResult
+    {
+        private final double targetRate;
+        private double achievedRate;
+        private long notFoundCount = 0;
+        // From intended start to completion, includes queueing delay
+        private final Histogram responseTimeHistogram = ConcurrentShortestPathBench.newTimeHistogram();
+        // From actual start to completion, corrected for coordinated omission by HdrHistogram
+        private final Histogram serviceTimeHistogram = ConcurrentShortestPathBench.newTimeHistogram();
+
+        RateResult( double targetRate )
+        {
+            this.targetRate = targetRate;
+        }
+
+        public double getTargetRate()
+        {
+            return targetRate;
+        }
+
+        public double getAchievedRate()
+        {
+            return achievedRate;
+        }
+
+        public Histogram getResponseTimeHistogram()
+        {
+            return responseTimeHistogram;
+        }
+
+        public Histogram getServiceTimeHistogram()
+        {
+            return serviceTimeHistogram;
+        }
+
+        @Override
+        public String toString()
+        {
+            String rateString = String.format(
+                    "\tTarget Rate[%.2f(queries/s)] Achieved Rate[%.2f(queries/s)] Not Found[%s]\n", targetRate,
+                    achievedRate, notFoundCount );
+            return rateString
+                   + ShortestPathBench.histogramString( responseTimeHistogram, "Response Time (us)" )
+                   + ShortestPathBench.histogramString( serviceTimeHistogram,
+                           "Service Time, Corrected For Coordinated Omission (us)" );
+        }
+    }
+
+    private static class ScheduledWorker implements Runnable
+    {
+        private final PathFinder<? extends Path> pathFinder;
+        private final List<Pair<Node>> startAndEndNodes;
+        private final AtomicInteger nextSlot;
+        private final CountDownLatch endGate;
+        private final boolean singlePath;
+        private final long scheduleStartTime;
+        private final long expectedIntervalNanos;
+        private final int threadCount;
+
+        private final Histogram responseTimeHistogram = ConcurrentShortestPathBench.newTimeHistogram();
+        private final Histogram serviceTimeHistogram = ConcurrentShortestPathBench.newTimeHistogram();
+        private long notFoundCount = 0;
+        private volatile Throwable failure = null;
+
+        ScheduledWorker( PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes,
+                AtomicInteger nextSlot, CountDownLatch endGate, boolean singlePath, long scheduleStartTime,
+                long expectedIntervalNanos, int threadCount )
+        {
+            this.pathFinder = pathFinder;
+            this.startAndEndNodes = startAndEndNodes;
+            this.nextSlot = nextSlot;
+            this.endGate = endGate;
+            this.singlePath = singlePath;
+            this.scheduleStartTime = scheduleStartTime;
+            this.expectedIntervalNanos = expectedIntervalNanos;
+            this.threadCount = threadCount;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                // Slots are shared by all workers, so each worker expects a query every threadCount slots
+                long workerIntervalMicros = TimeUnit.NANOSECONDS.toMicros( expectedIntervalNanos * threadCount );
+                int slot;
+                while ( ( slot = nextSlot.getAndIncrement() ) < startAndEndNodes.size() )
+                {
+                    long intendedStartTime = scheduleStartTime + slot * expectedIntervalNanos;
+                    long now;
+                    while ( ( now = System.nanoTime() ) < intendedStartTime )
+                    {
+                        LockSupport.parkNanos( intendedStartTime - now );
+                    }
+                    int pathLength = ConcurrentShortestPathBench.runQuery( pathFinder, startAndEndNodes.get( slot ),
+                            singlePath );
+                    long endTime = System.nanoTime();
+                    if ( pathLength < 0 )
+                    {
+                        notFoundCount++;
+                        continue;
+                    }
+                    responseTimeHistogram.recordValue( clamp( responseTimeHistogram,
+                            TimeUnit.NANOSECONDS.toMicros( endTime - intendedStartTime ) ) );
+                    serviceTimeHistogram.recordValueWithExpectedInterval(
+                            clamp( serviceTimeHistogram, TimeUnit.NANOSECONDS.toMicros( endTime - now ) ),
+                            workerIntervalMicros );
+                }
+            }
+            catch ( Throwable e )
+            {
+                failure = e;
+            }
+            finally
+            {
+                endGate.countDown();
+            }
+        }
+
+        private static long clamp( Histogram histogram, long value )
+        {
+            return Math.min( value, histogram.getHighestTrackableValue() );
+        }
+    }
+}
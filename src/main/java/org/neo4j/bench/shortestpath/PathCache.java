@@ -0,0 +1,120 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded cache of path query results. Values are the paths of one query, each encoded as a primitive id array (see
+ * {@link CachingPathFinder}), so a cached result costs a few arrays instead of a graph of Path, Node and Relationship
+ * objects. Capacity is in entries, the eviction policy is up to the subclass. All public methods are synchronized.
+ */
+public abstract class PathCache<K>
+{
+    public static final String POLICY_LRU = "lru";
+    public static final String POLICY_LFU = "lfu";
+    public static final String POLICY_W_TINY_LFU = "w-tinylfu";
+    public static final List<String> POLICIES = Arrays.asList( POLICY_LRU, POLICY_LFU, POLICY_W_TINY_LFU );
+
+    // Rough cost of key, map entry and policy bookkeeping per entry, on top of the value arrays
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    protected final int capacity;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+    private long valueBytes = 0;
+
+    protected PathCache( int capacity )
+    {
+        if ( capacity < 1 ) throw new IllegalArgumentException( "Capacity must be positive: " + capacity );
+        this.capacity = capacity;
+    }
+
+    public static <K> PathCache<K> create( String policy, int capacity )
+    {
+        if ( policy.equals( POLICY_LRU ) ) return new LruPathCache<K>( capacity );
+        if ( policy.equals( POLICY_LFU ) ) return new LfuPathCache<K>( capacity );
+        if ( policy.equals( POLICY_W_TINY_LFU ) ) return new WTinyLfuPathCache<K>( capacity );
+        throw new IllegalArgumentException( "Unknown eviction policy: " + policy );
+    }
+
+    // Returns null on a miss. An empty array is a cached "no path" result
+    public synchronized long[][] get( K key )
+    {
+        long[][] value = lookup( key );
+        if ( null == value )
+            missCount++;
+        else
+            hitCount++;
+        return value;
+    }
+
+    public synchronized void put( K key, long[][] value )
+    {
+        insert( key, value );
+    }
+
+    public synchronized int size()
+    {
+        return entryCount();
+    }
+
+    public synchronized long hitCount()
+    {
+        return hitCount;
+    }
+
+    public synchronized long missCount()
+    {
+        return missCount;
+    }
+
+    public synchronized double hitRate()
+    {
+        long requestCount = hitCount + missCount;
+        return ( requestCount == 0 ) ? 0 : hitCount / (double) requestCount;
+    }
+
+    // Estimate, value arrays are counted exactly, keys and map entries with a fixed overhead
+    public synchronized long memoryBytes()
+    {
+        return entryCount() * ENTRY_OVERHEAD_BYTES + valueBytes;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format( "%s[capacity=%s, entries=%s, hitRate=%.2f%%, evictions=%s, memory=%s(KB)]",
+                getClass().getSimpleName(), capacity, entryCount(), hitRate() * 100, evictionCount,
+                memoryBytes() / 1024 );
+    }
+
+    protected abstract long[][] lookup( K key );
+
+    protected abstract void insert( K key, long[][] value );
+
+    protected abstract int entryCount();
+
+    // Subclasses report every value they start and stop holding, for the memory estimate
+    protected void added( long[][] value )
+    {
+        valueBytes += valueBytes( value );
+    }
+
+    protected void removed( long[][] value, boolean evicted )
+    {
+        valueBytes -= valueBytes( value );
+        if ( evicted ) evictionCount++;
+    }
+
+    private static long valueBytes( long[][] value )
+    {
+        long bytes = ARRAY_HEADER_BYTES + 8L * value.length;
+        for ( long[] path : value )
+        {
+            bytes += ARRAY_HEADER_BYTES + 8L * path.length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,9 @@
+package org.neo4j.bench.shortestpath;
+
+/**
+ * Relationship cost keyed by relationship id, the primitive counterpart of {@code CostEvaluator<Double>}.
+ */
+public interface PrimitiveCostEvaluator
+{
+    double getCost( long relationshipId );
+}
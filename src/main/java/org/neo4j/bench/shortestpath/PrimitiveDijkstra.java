@@ -0,0 +1,402 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.WeightedPathImpl;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
+
+/**
+ * Dijkstra over a {@link CsrGraph} without boxing: costs come from a {@link PrimitiveCostEvaluator}, the queue is an
+ * {@link IndexedMinHeap} keyed by node index and distances/predecessors live in primitive arrays that are reused
+ * between queries. With a {@link ConstantCostEvaluator} every path of minimal length is also of minimal cost, so the
+ * search is delegated to {@link CsrShortestPath} instead. Given a consistent {@link PrimitiveEstimateEvaluator} the
+ * queue is ordered by distance plus estimate, which turns the search into A*. Batches of pairs sharing a start (or
+ * end) node are answered from one Dijkstra tree that grows until all targets are settled, without estimates since
+ * there is no single goal.
+ */
+public class PrimitiveDijkstra implements PathFinder<WeightedPath>, BatchPathFinder<WeightedPath>
+{
+    private static final int HEAP_ARITY = 4;
+    private static final double EPSILON = 1e-9;
+
+    private final GraphDatabaseService db;
+    private final CsrGraph graph;
+    private final Direction direction;
+    private final PrimitiveCostEvaluator costEvaluator;
+    private final PrimitiveEstimateEvaluator estimateEvaluator;
+    private final CsrShortestPath breadthFirst;
+    private final ThreadLocal<SearchState> searchStates = new ThreadLocal<SearchState>()
+    {
+        @Override
+        protected SearchState initialValue()
+        {
+            return new SearchState( graph.nodeCount() );
+        }
+    };
+
+    public PrimitiveDijkstra( GraphDatabaseService db, CsrGraph graph, Direction direction,
+            PrimitiveCostEvaluator costEvaluator )
+    {
+        this( db, graph, direction, costEvaluator, null );
+    }
+
+    public PrimitiveDijkstra( GraphDatabaseService db, CsrGraph graph, Direction direction,
+            PrimitiveCostEvaluator costEvaluator, PrimitiveEstimateEvaluator estimateEvaluator )
+    {
+        this.db = db;
+        this.graph = graph;
+        this.direction = direction;
+        this.costEvaluator = costEvaluator;
+        this.estimateEvaluator = estimateEvaluator;
+        this.breadthFirst = ( costEvaluator instanceof ConstantCostEvaluator ) ? new CsrShortestPath( db, graph,
+                direction ) : null;
+    }
+
+    @Override
+    public WeightedPath findSinglePath( Node start, Node end )
+    {
+        if ( null != breadthFirst )
+        {
+            Path path = breadthFirst.findSinglePath( start, end );
+            return ( null == path ) ? null : toWeightedPath( path );
+        }
+        int startNode = (int) start.getId();
+        int endNode = (int) end.getId();
+        if ( false == contains( startNode ) || false == contains( endNode ) ) return null;
+        SearchState state = searchStates.get();
+        state.reset();
+        try
+        {
+            if ( false == search( state, startNode, endNode, false ) ) return null;
+            long[] path = state.pathRelationshipIds;
+            int length = 0;
+            for ( int node = endNode; node != startNode; node = state.parents[node] )
+            {
+                path[length++] = state.parentRelationshipIds[node];
+            }
+            reverse( path, length );
+            state.pathsReturned = 1;
+            return new WeightedPathImpl( state.distances[endNode], GraphUtils.buildPath( db, startNode, path,
+                    length ) );
+        }
+        finally
+        {
+            state.heap.clear();
+        }
+    }
+
+    @Override
+    public Iterable<WeightedPath> findAllPaths( Node start, Node end )
+    {
+        if ( null != breadthFirst )
+        {
+            List<WeightedPath> paths = new ArrayList<WeightedPath>();
+            for ( Path path : breadthFirst.findAllPaths( start, end ) )
+            {
+                paths.add( toWeightedPath( path ) );
+            }
+            return paths;
+        }
+        int startNode = (int) start.getId();
+        int endNode = (int) end.getId();
+        if ( false == contains( startNode ) || false == contains( endNode ) ) return Collections.emptyList();
+        SearchState state = searchStates.get();
+        state.reset();
+        try
+        {
+            if ( false == search( state, startNode, endNode, true ) ) return Collections.emptyList();
+            List<WeightedPath> paths = new ArrayList<WeightedPath>();
+            collectPaths( state, startNode, endNode, 0, state.distances[endNode], paths );
+            return paths;
+        }
+        finally
+        {
+            state.heap.clear();
+        }
+    }
+
+    @Override
+    public List<WeightedPath> findSinglePathsFrom( Node start, List<Node> ends )
+    {
+        if ( null != breadthFirst ) return toWeightedPaths( breadthFirst.findSinglePathsFrom( start, ends ) );
+        return findSinglePaths( start, ends, false );
+    }
+
+    @Override
+    public List<WeightedPath> findSinglePathsTo( List<Node> starts, Node end )
+    {
+        if ( null != breadthFirst ) return toWeightedPaths( breadthFirst.findSinglePathsTo( starts, end ) );
+        return findSinglePaths( end, starts, true );
+    }
+
+    @Override
+    public TraversalMetadata metadata()
+    {
+        if ( null != breadthFirst ) return breadthFirst.metadata();
+        final SearchState state = searchStates.get();
+        return new TraversalMetadata()
+        {
+            @Override
+            public int getNumberOfPathsReturned()
+            {
+                return state.pathsReturned;
+            }
+
+            @Override
+            public int getNumberOfRelationshipsTraversed()
+            {
+                return (int) Math.min( Integer.MAX_VALUE, state.relationshipsTraversed );
+            }
+        };
+    }
+
+    private boolean contains( int node )
+    {
+        return node >= 0 && node < graph.nodeCount();
+    }
+
+    private WeightedPath toWeightedPath( Path path )
+    {
+        return new WeightedPathImpl( ( (ConstantCostEvaluator) costEvaluator ).cost() * path.length(), path );
+    }
+
+    private List<WeightedPath> toWeightedPaths( List<Path> paths )
+    {
+        List<WeightedPath> weightedPaths = new ArrayList<WeightedPath>( paths.size() );
+        for ( Path path : paths )
+        {
+            weightedPaths.add( ( null == path ) ? null : toWeightedPath( path ) );
+        }
+        return weightedPaths;
+    }
+
+    // One Dijkstra from the source, in reverse when the source is the end node of all pairs
+    private List<WeightedPath> findSinglePaths( Node source, List<Node> targets, boolean reverse )
+    {
+        List<WeightedPath> paths = new ArrayList<WeightedPath>( targets.size() );
+        int sourceNode = (int) source.getId();
+        if ( false == contains( sourceNode ) )
+        {
+            for ( int i = 0; i < targets.size(); i++ )
+            {
+                paths.add( null );
+            }
+            return paths;
+        }
+        SearchState state = searchStates.get();
+        state.reset();
+        try
+        {
+            int stamp = state.stamp;
+            int remainingTargets = 0;
+            for ( Node target : targets )
+            {
+                int targetNode = (int) target.getId();
+                if ( contains( targetNode ) && state.targetStamps[targetNode] != stamp )
+                {
+                    state.targetStamps[targetNode] = stamp;
+                    remainingTargets++;
+                }
+            }
+            Direction searchDirection = ( reverse ) ? direction.reverse() : direction;
+            state.reach( sourceNode, 0, -1, -1 );
+            state.heap.insertOrDecrease( sourceNode, 0 );
+            while ( remainingTargets > 0 && false == state.heap.isEmpty() )
+            {
+                int node = state.heap.poll();
+                state.settledStamps[node] = stamp;
+                if ( state.targetStamps[node] == stamp ) remainingTargets--;
+                expand( state, node, searchDirection, -1 );
+            }
+
+            for ( Node target : targets )
+            {
+                int targetNode = (int) target.getId();
+                if ( false == contains( targetNode ) || state.settledStamps[targetNode] != stamp )
+                {
+                    paths.add( null );
+                    continue;
+                }
+                // Walking the tree from a target gives the relationships from end to start, reversed if the tree
+                // was grown backwards from the end node
+                long[] path = state.pathRelationshipIds;
+                int length = 0;
+                for ( int node = targetNode; node != sourceNode; node = state.parents[node] )
+                {
+                    path[length++] = state.parentRelationshipIds[node];
+                }
+                if ( false == reverse ) reverse( path, length );
+                long startNode = ( reverse ) ? targetNode : sourceNode;
+                paths.add( new WeightedPathImpl( state.distances[targetNode], GraphUtils.buildPath( db, startNode,
+                        path, length ) ) );
+                state.pathsReturned++;
+            }
+            return paths;
+        }
+        finally
+        {
+            state.heap.clear();
+        }
+    }
+
+    // Settles nodes until the end node is settled, or (for all paths) until no cheaper node remains queued
+    private boolean search( SearchState state, int startNode, int endNode, boolean allPaths )
+    {
+        int stamp = state.stamp;
+        IndexedMinHeap heap = state.heap;
+        state.reach( startNode, 0, -1, -1 );
+        heap.insertOrDecrease( startNode, estimate( startNode, endNode ) );
+        boolean found = false;
+        while ( false == heap.isEmpty() )
+        {
+            if ( found && heap.minKey() > state.distances[endNode] + EPSILON ) break;
+            int node = heap.poll();
+            state.settledStamps[node] = stamp;
+            if ( node == endNode )
+            {
+                found = true;
+                if ( false == allPaths ) break;
+                continue;
+            }
+            expand( state, node, direction, endNode );
+        }
+        return found;
+    }
+
+    // Relaxes the relationships of a settled node, estimates towards the end node unless it is -1
+    private void expand( SearchState state, int node, Direction searchDirection, int endNode )
+    {
+        int stamp = state.stamp;
+        double distance = state.distances[node];
+        for ( int pass = 0; pass < 2; pass++ )
+        {
+            Direction adjacency = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+            if ( searchDirection != Direction.BOTH && searchDirection != adjacency ) continue;
+            int[] offsets = graph.offsets( adjacency );
+            int[] targets = graph.targets( adjacency );
+            long[] relationshipIds = graph.relationshipIds( adjacency );
+            for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+            {
+                state.relationshipsTraversed++;
+                int target = targets[r];
+                if ( state.settledStamps[target] == stamp ) continue;
+                double targetDistance = distance + costEvaluator.getCost( relationshipIds[r] );
+                if ( state.stamps[target] == stamp && targetDistance >= state.distances[target] ) continue;
+                state.reach( target, targetDistance, node, relationshipIds[r] );
+                state.heap.insertOrDecrease( target, targetDistance + estimate( target, endNode ) );
+            }
+        }
+    }
+
+    private double estimate( int node, int endNode )
+    {
+        return ( null == estimateEvaluator || endNode < 0 ) ? 0 : estimateEvaluator.getCost( node, endNode );
+    }
+
+    private static void reverse( long[] values, int length )
+    {
+        for ( int i = 0; i < length / 2; i++ )
+        {
+            long value = values[i];
+            values[i] = values[length - 1 - i];
+            values[length - 1 - i] = value;
+        }
+    }
+
+    // Walks back from the end node over every settled relationship that lies on a minimal cost path
+    private void collectPaths( SearchState state, int startNode, int node, int depth, double cost,
+            List<WeightedPath> paths )
+    {
+        if ( node == startNode )
+        {
+            long[] path = new long[depth];
+            for ( int i = 0; i < depth; i++ )
+            {
+                path[i] = state.pathRelationshipIds[depth - 1 - i];
+            }
+            paths.add( new WeightedPathImpl( cost, GraphUtils.buildPath( db, startNode, path, depth ) ) );
+            state.pathsReturned++;
+            return;
+        }
+        // Zero cost relationships could otherwise lead the walk around in a cycle
+        state.onPath[node] = true;
+        Direction reverse = direction.reverse();
+        for ( int pass = 0; pass < 2; pass++ )
+        {
+            Direction adjacency = ( pass == 0 ) ? Direction.OUTGOING : Direction.INCOMING;
+            if ( reverse != Direction.BOTH && reverse != adjacency ) continue;
+            int[] offsets = graph.offsets( adjacency );
+            int[] targets = graph.targets( adjacency );
+            long[] relationshipIds = graph.relationshipIds( adjacency );
+            for ( int r = offsets[node]; r < offsets[node + 1]; r++ )
+            {
+                int previous = targets[r];
+                if ( state.settledStamps[previous] != state.stamp || state.onPath[previous] ) continue;
+                double viaPrevious = state.distances[previous] + costEvaluator.getCost( relationshipIds[r] );
+                if ( Math.abs( viaPrevious - state.distances[node] ) > EPSILON ) continue;
+                state.pathRelationshipIds[depth] = relationshipIds[r];
+                collectPaths( state, startNode, previous, depth + 1, cost, paths );
+            }
+        }
+        state.onPath[node] = false;
+    }
+
+    private static class SearchState
+    {
+        private final int[] stamps;
+        private final int[] settledStamps;
+        private final double[] distances;
+        private final int[] parents;
+        private final long[] parentRelationshipIds;
+        private final long[] pathRelationshipIds;
+        private final boolean[] onPath;
+        private final int[] targetStamps;
+        private final IndexedMinHeap heap;
+        private int stamp = 0;
+        private int pathsReturned;
+        private long relationshipsTraversed;
+
+        SearchState( int nodeCount )
+        {
+            stamps = new int[nodeCount];
+            settledStamps = new int[nodeCount];
+            distances = new double[nodeCount];
+            parents = new int[nodeCount];
+            parentRelationshipIds = new long[nodeCount];
+            pathRelationshipIds = new long[nodeCount];
+            onPath = new boolean[nodeCount];
+            targetStamps = new int[nodeCount];
+            heap = new IndexedMinHeap( nodeCount, HEAP_ARITY );
+        }
+
+        void reset()
+        {
+            if ( ++stamp == Integer.MAX_VALUE )
+            {
+                Arrays.fill( stamps, 0 );
+                Arrays.fill( settledStamps, 0 );
+                Arrays.fill( targetStamps, 0 );
+                stamp = 1;
+            }
+            pathsReturned = 0;
+            relationshipsTraversed = 0;
+        }
+
+        void reach( int node, double distance, int parent, long parentRelationshipId )
+        {
+            stamps[node] = stamp;
+            distances[node] = distance;
+            parents[node] = parent;
+            parentRelationshipIds[node] = parentRelationshipId;
+        }
+    }
+}
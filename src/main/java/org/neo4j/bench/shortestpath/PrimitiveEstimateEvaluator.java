@@ -0,0 +1,9 @@
+package org.neo4j.bench.shortestpath;
+
+/**
+ * Lower bound on the cost from a node to the goal, the primitive counterpart of {@code EstimateEvaluator<Double>}.
+ */
+public interface PrimitiveEstimateEvaluator
+{
+    double getCost( int node, int goal );
+}
@@ -0,0 +1,177 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.BranchState;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
+
+/**
+ * Per query time and work budget for the GraphAlgoFactory path finders, enforced from inside the expander they are
+ * created with: every expansion checks the deadline and the expansion count, and throws {@link ExceededException}
+ * once either is exceeded, which stops the traversal itself. Paths longer than the max depth are not expanded
+ * further. The deadline starts when the finder returned by {@link #pathFinder(PathFinder)} is called, for
+ * findAllPaths it covers iterating the paths too. Limits of 0 are unbounded. Not thread safe.
+ */
+public class QueryBudget
+{
+    static String ANY_ALGORITHM = "*";
+
+    private final long timeoutNanos;
+    private final long maxExpansions;
+    private final int maxDepth;
+    private long deadline = Long.MAX_VALUE;
+    private long expansions = 0;
+
+    public QueryBudget( long timeoutMillis, long maxExpansions, int maxDepth )
+    {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos( timeoutMillis );
+        this.maxExpansions = ( maxExpansions <= 0 ) ? Long.MAX_VALUE : maxExpansions;
+        this.maxDepth = ( maxDepth <= 0 ) ? Integer.MAX_VALUE : maxDepth;
+    }
+
+    /**
+     * Parses comma separated budgets per algorithm, algorithm=timeout(ms)[:max expansions[:max depth]], where
+     * algorithm {@link #ANY_ALGORITHM} is the budget of algorithms without one of their own.
+     */
+    public static Map<String, QueryBudget> parse( String budgets )
+    {
+        Map<String, QueryBudget> parsedBudgets = new HashMap<String, QueryBudget>();
+        for ( String budget : budgets.split( "," ) )
+        {
+            String[] algorithmAndLimits = budget.trim().split( "=" );
+            boolean knownAlgorithm = algorithmAndLimits[0].equals( ANY_ALGORITHM )
+                                     || ShortestPathBench.BUDGETED_ALGORITHMS.contains( algorithmAndLimits[0] );
+            if ( algorithmAndLimits.length != 2 || false == knownAlgorithm )
+            {
+                throw new IllegalArgumentException( "Unexpected budget: " + budget );
+            }
+            String[] limits = algorithmAndLimits[1].split( ":" );
+            if ( limits.length > 3 ) throw new IllegalArgumentException( "Unexpected budget: " + budget );
+            try
+            {
+                parsedBudgets.put( algorithmAndLimits[0], new QueryBudget( Long.parseLong( limits[0] ),
+                        ( limits.length > 1 ) ? Long.parseLong( limits[1] ) : 0,
+                        ( limits.length > 2 ) ? Integer.parseInt( limits[2] ) : 0 ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                throw new IllegalArgumentException( "Unexpected budget: " + budget );
+            }
+        }
+        return parsedBudgets;
+    }
+
+    // The algorithm's own budget, else the one for any algorithm, else null
+    public static QueryBudget forAlgorithm( Map<String, QueryBudget> budgets, String algorithm )
+    {
+        if ( null == budgets ) return null;
+        return ( budgets.containsKey( algorithm ) ) ? budgets.get( algorithm ) : budgets.get( ANY_ALGORITHM );
+    }
+
+    public int maxDepth()
+    {
+        return maxDepth;
+    }
+
+    // Starts the budget of the next query
+    public void start()
+    {
+        deadline = ( timeoutNanos > 0 ) ? System.nanoTime() + timeoutNanos : Long.MAX_VALUE;
+        expansions = 0;
+    }
+
+    public <STATE> PathExpander<STATE> expander( PathExpander<STATE> expander )
+    {
+        return new BudgetedExpander<STATE>( expander );
+    }
+
+    public <P extends Path> PathFinder<P> pathFinder( final PathFinder<P> pathFinder )
+    {
+        return new PathFinder<P>()
+        {
+            @Override
+            public P findSinglePath( Node start, Node end )
+            {
+                start();
+                return pathFinder.findSinglePath( start, end );
+            }
+
+            @Override
+            public Iterable<P> findAllPaths( Node start, Node end )
+            {
+                start();
+                return pathFinder.findAllPaths( start, end );
+            }
+
+            @Override
+            public TraversalMetadata metadata()
+            {
+                return pathFinder.metadata();
+            }
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "Timeout[%s] Max Expansions[%s] Max Depth[%s]",
+                ( timeoutNanos > 0 ) ? TimeUnit.NANOSECONDS.toMillis( timeoutNanos ) + "(ms)" : "none",
+                ( maxExpansions == Long.MAX_VALUE ) ? "none" : maxExpansions,
+                ( maxDepth == Integer.MAX_VALUE ) ? "none" : maxDepth );
+    }
+
+    private class BudgetedExpander<STATE> implements PathExpander<STATE>
+    {
+        private final PathExpander<STATE> expander;
+
+        private BudgetedExpander( PathExpander<STATE> expander )
+        {
+            this.expander = expander;
+        }
+
+        @Override
+        public Iterable<Relationship> expand( Path path, BranchState<STATE> state )
+        {
+            if ( ++expansions > maxExpansions ) throw new ExceededException( false );
+            if ( System.nanoTime() > deadline ) throw new ExceededException( true );
+            if ( path.length() >= maxDepth ) return Collections.<Relationship>emptyList();
+            return expander.expand( path, state );
+        }
+
+        // Bidirectional finders expand from the end node with the reversed expander, both sides share the budget
+        @Override
+        public PathExpander<STATE> reverse()
+        {
+            return new BudgetedExpander<STATE>( expander.reverse() );
+        }
+    }
+
+    /**
+     * Thrown out of the path finder when a query exceeds its deadline or max expansions.
+     */
+    public static class ExceededException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean timedOut;
+
+        private ExceededException( boolean timedOut )
+        {
+            super( ( timedOut ) ? "Query deadline exceeded" : "Query max expansions exceeded" );
+            this.timedOut = timedOut;
+        }
+
+        public boolean timedOut()
+        {
+            return timedOut;
+        }
+    }
+}
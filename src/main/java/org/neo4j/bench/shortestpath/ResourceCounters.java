@@ -0,0 +1,141 @@
+package org.neo4j.bench.shortestpath;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Bytes allocated by the querying thread and garbage collections per query, and in total over a run of one path
+ * finder. Queries during which any collection ended are flagged as overlapping GC, their run times are reported
+ * separately so collector pauses are not mistaken for algorithm cost. Collection times are those the
+ * GarbageCollectorMXBeans report: for the concurrent CMS collector they include its concurrent phases, not only the
+ * pauses. Allocation is only measured on JVMs that support thread allocation counting. Not thread safe, queries must
+ * run on the thread that calls {@link #startQuery()} and {@link #endQuery(long)}.
+ */
+public class ResourceCounters
+{
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+    private static final List<GarbageCollectorMXBean> GC_BEANS = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final boolean allocationSupported;
+    private final long startTime;
+    private final long phaseStartGcCount;
+    private final long phaseStartGcTime;
+    private final Histogram allocatedBytes = new Histogram( 3 );
+    private final Histogram overlappedGcTime = new Histogram( 3 );
+    private final Histogram overlappedRunTime = new Histogram( 3 );
+    private long queryStartAllocatedBytes = 0;
+    private long queryStartGcCount = 0;
+    private long queryStartGcTime = 0;
+    private long queryAllocatedBytes = -1;
+    private long queryGcCount = 0;
+    private long queryGcTime = 0;
+    private long totalAllocatedBytes = 0;
+    private long queryCount = 0;
+
+    // Starts the phase, the totals cover everything from here to toString()
+    public ResourceCounters()
+    {
+        this.allocationSupported = enableAllocationCounting();
+        this.startTime = System.nanoTime();
+        this.phaseStartGcCount = gcCount();
+        this.phaseStartGcTime = gcTime();
+    }
+
+    public void startQuery()
+    {
+        queryStartGcCount = gcCount();
+        queryStartGcTime = gcTime();
+        queryStartAllocatedBytes = allocatedBytes();
+    }
+
+    public void endQuery( long runTimeNanos )
+    {
+        queryAllocatedBytes = allocatedBytes() - queryStartAllocatedBytes;
+        queryGcCount = gcCount() - queryStartGcCount;
+        queryGcTime = gcTime() - queryStartGcTime;
+        queryCount++;
+        if ( allocationSupported )
+        {
+            allocatedBytes.recordValue( queryAllocatedBytes );
+            totalAllocatedBytes += queryAllocatedBytes;
+        }
+        if ( queryGcCount > 0 )
+        {
+            overlappedGcTime.recordValue( queryGcTime );
+            overlappedRunTime.recordValue( TimeUnit.NANOSECONDS.toMicros( runTimeNanos ) );
+        }
+    }
+
+    // Figures of the last query, for the Longest Run line
+    public String queryString()
+    {
+        return String.format( "%s GCs[%s] GC Time[%s(ms)]",
+                ( allocationSupported ) ? String.format( " Allocated[%s(KB)]", queryAllocatedBytes / 1024 ) : "",
+                queryGcCount, queryGcTime );
+    }
+
+    @Override
+    public String toString()
+    {
+        long runTime = System.nanoTime() - startTime;
+        StringBuilder sb = new StringBuilder();
+        if ( allocationSupported )
+        {
+            sb.append( ShortestPathBench.histogramString( allocatedBytes, "Allocated Bytes" ) );
+            sb.append( String.format( "\tAllocated\t\t : Total[%s(MB)] Rate[%s(MB/s)]\n",
+                    totalAllocatedBytes / ( 1024 * 1024 ),
+                    TraversalCounters.perSecond( totalAllocatedBytes, runTime ) / ( 1024 * 1024 ) ) );
+        }
+        if ( overlappedRunTime.getTotalCount() > 0 )
+        {
+            sb.append( ShortestPathBench.histogramString( overlappedRunTime, "Run Time, Overlapping GC (us)" ) );
+            sb.append( ShortestPathBench.histogramString( overlappedGcTime, "GC Time, Overlapping GC (ms)" ) );
+        }
+        sb.append( String.format( "\tGarbage Collection\t : Count[%s] Time[%s(ms)] Queries Overlapping GC[%s/%s]\n",
+                gcCount() - phaseStartGcCount, gcTime() - phaseStartGcTime, overlappedRunTime.getTotalCount(),
+                queryCount ) );
+        return sb.toString();
+    }
+
+    private boolean enableAllocationCounting()
+    {
+        if ( false == THREAD_BEAN instanceof com.sun.management.ThreadMXBean ) return false;
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+        if ( false == threadBean.isThreadAllocatedMemorySupported() ) return false;
+        if ( false == threadBean.isThreadAllocatedMemoryEnabled() ) threadBean.setThreadAllocatedMemoryEnabled( true );
+        return true;
+    }
+
+    private long allocatedBytes()
+    {
+        if ( false == allocationSupported ) return 0;
+        return ( (com.sun.management.ThreadMXBean) THREAD_BEAN ).getThreadAllocatedBytes(
+                Thread.currentThread().getId() );
+    }
+
+    // Collectors report -1 when undefined
+    static long gcCount()
+    {
+        long count = 0;
+        for ( GarbageCollectorMXBean gcBean : GC_BEANS )
+        {
+            count += Math.max( 0, gcBean.getCollectionCount() );
+        }
+        return count;
+    }
+
+    static long gcTime()
+    {
+        long time = 0;
+        for ( GarbageCollectorMXBean gcBean : GC_BEANS )
+        {
+            time += Math.max( 0, gcBean.getCollectionTime() );
+        }
+        return time;
+    }
+}
@@ -3,7 +3,11 @@ package org.neo4j.bench.shortestpath;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.HdrHistogram.Histogram;
@@ -12,29 +16,56 @@ import org.neo4j.graphalgo.CostEvaluator;
 import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphdb.Direction;
-import org.neo4j.graphdb.Expander;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
-import org.neo4j.helpers.collection.IteratorUtil;
 import org.neo4j.kernel.Traversal;
 
 public class ShortestPathBench
 {
-    private static String PATHS_SINGLE = "single";
-    private static String PATHS_ALL = "all";
-    private static String DIRECTION_BOTH = "both";
-    private static String DIRECTION_OUT = "out";
+    static String PATHS_SINGLE = "single";
+    static String PATHS_ALL = "all";
+    static String DIRECTION_BOTH = "both";
+    static String DIRECTION_OUT = "out";
 
-    public static void main( String[] args ) throws IOException
+    static String ALGORITHM_SHORTEST_PATH = "shortest-path";
+    static String ALGORITHM_UNWEIGHTED_DIJKSTRA = "unweighted-dijkstra";
+    static String ALGORITHM_WEIGHTED_DIJKSTRA = "weighted-dijkstra";
+    static String ALGORITHM_CSR_BFS = "csr-bfs";
+    static String ALGORITHM_PRIMITIVE_UNWEIGHTED_DIJKSTRA = "primitive-unweighted-dijkstra";
+    static String ALGORITHM_PRIMITIVE_WEIGHTED_DIJKSTRA = "primitive-weighted-dijkstra";
+    static String ALGORITHM_ALT_ASTAR = "alt-astar";
+    static String ALGORITHM_CONTRACTION_HIERARCHIES = "contraction-hierarchies";
+    static String ALGORITHM_HOP_DISTANCE_ORACLE = "hop-distance-oracle";
+    static List<String> ALGORITHMS = Arrays.asList( ALGORITHM_SHORTEST_PATH, ALGORITHM_UNWEIGHTED_DIJKSTRA,
+            ALGORITHM_WEIGHTED_DIJKSTRA, ALGORITHM_CSR_BFS, ALGORITHM_PRIMITIVE_UNWEIGHTED_DIJKSTRA,
+            ALGORITHM_PRIMITIVE_WEIGHTED_DIJKSTRA, ALGORITHM_ALT_ASTAR, ALGORITHM_CONTRACTION_HIERARCHIES,
+            ALGORITHM_HOP_DISTANCE_ORACLE );
+    // Those that expand through a PathExpander, so can be given a QueryBudget
+    static List<String> BUDGETED_ALGORITHMS = Arrays.asList( ALGORITHM_SHORTEST_PATH, ALGORITHM_UNWEIGHTED_DIJKSTRA,
+            ALGORITHM_WEIGHTED_DIJKSTRA );
+    static String DEFAULT_ALGORITHMS = ALGORITHM_SHORTEST_PATH + "," + ALGORITHM_UNWEIGHTED_DIJKSTRA + ","
+                                       + ALGORITHM_WEIGHTED_DIJKSTRA;
+    static int DEFAULT_WARMUP_SECONDS = 10;
+
+    public static void main( String[] args ) throws IOException, InterruptedException
     {
-        String errMsg = String.format( "Expected 2 parameters, found %s. Parameters should be <%s|%s> <%s|%s>\n",
-                args.length, PATHS_SINGLE, PATHS_ALL, DIRECTION_BOTH, DIRECTION_OUT );
+        String errMsg = String.format(
+                "Expected 2 to 6 parameters, found %s. Parameters should be <%s|%s> <%s|%s> [algorithms] [max paths] "
+                        + "[warmup seconds] [budgets]\n"
+                        + "Algorithms is a comma separated subset of %s, default is %s\n"
+                        + "Max paths caps the paths consumed per query in '%s' mode, default (or 0) is no cap\n"
+                        + "Warmup seconds repeat queries over the pairs before the measured run, default is %s\n"
+                        + "Budgets limit every query, as comma separated algorithm=timeout(ms)[:max expansions[:max "
+                        + "depth]] (0 is no limit) for any of %s, or %s for all of them, default is none\n",
+                args.length, PATHS_SINGLE, PATHS_ALL, DIRECTION_BOTH, DIRECTION_OUT, ALGORITHMS, DEFAULT_ALGORITHMS,
+                PATHS_ALL, DEFAULT_WARMUP_SECONDS, BUDGETED_ALGORITHMS, QueryBudget.ANY_ALGORITHM );
 
-        if ( args.length != 2 )
+        if ( args.length < 2 || args.length > 6 )
         {
             System.out.println( errMsg );
             return;
@@ -52,25 +83,166 @@ public class ShortestPathBench
             return;
         }
 
+        List<String> algorithms;
+        try
+        {
+            algorithms = parseAlgorithms( ( args.length >= 3 ) ? args[2] : DEFAULT_ALGORITHMS );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 2: %s\n%s", args[2], errMsg ) );
+            return;
+        }
+
+        int maxPaths = Integer.MAX_VALUE;
+        if ( args.length >= 4 )
+        {
+            try
+            {
+                maxPaths = Integer.parseInt( args[3] );
+                maxPaths = ( maxPaths <= 0 ) ? Integer.MAX_VALUE : maxPaths;
+            }
+            catch ( NumberFormatException e )
+            {
+                System.out.println( String.format( "Unexpected value for parameter 3: %s\n%s", args[3], errMsg ) );
+                return;
+            }
+        }
+
+        int warmupSeconds = DEFAULT_WARMUP_SECONDS;
+        if ( args.length >= 5 )
+        {
+            try
+            {
+                warmupSeconds = Integer.parseInt( args[4] );
+            }
+            catch ( NumberFormatException e )
+            {
+                warmupSeconds = -1;
+            }
+            if ( warmupSeconds < 0 )
+            {
+                System.out.println( String.format( "Unexpected value for parameter 4: %s\n%s", args[4], errMsg ) );
+                return;
+            }
+        }
+
+        Map<String, QueryBudget> budgets = null;
+        if ( args.length == 6 )
+        {
+            try
+            {
+                budgets = QueryBudget.parse( args[5] );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                System.out.println( String.format( "Unexpected value for parameter 5: %s\n%s", args[5], errMsg ) );
+                return;
+            }
+        }
+
         GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( Config.DB_DIR ).setConfig(
                 Config.NEO4J_CONFIG ).newGraphDatabase();
 
-        System.out.println( "Node Count = " + GraphUtils.nodeCount( db, 1000 ) );
-        System.out.println( "Node Property Count = " + GraphUtils.nodePropertyCount( db, 1000 ) );
-        System.out.println( "Relationship Count = " + GraphUtils.relationshipCount( db, 1000 ) );
-        System.out.println( "Relationship Property Count = " + GraphUtils.relationshipPropertyCount( db, 1000 ) );
+        long scanStartTime = System.currentTimeMillis();
+        StoreStatistics storeStatistics = GraphUtils.scanStore( db, Runtime.getRuntime().availableProcessors() );
+        System.out.print( storeStatistics );
+        System.out.println( String.format( "Scanned store in %s(ms)", System.currentTimeMillis() - scanStartTime ) );
 
         int runCount = 1000;
         List<Pair<Node>> startAndEndNodes = loadStartAndEndNodes( db, runCount );
-        Direction direction = ( args[1].equals( DIRECTION_BOTH ) ) ? Direction.BOTH : Direction.OUTGOING;
+        Direction direction = parseDirection( args[1] );
         System.out.println( "Paths =\t\t" + args[0] );
         System.out.println( "Direction =\t" + direction );
+        if ( maxPaths != Integer.MAX_VALUE ) System.out.println( "Max Paths =\t" + maxPaths );
+        for ( String algorithm : algorithms )
+        {
+            QueryBudget budget = QueryBudget.forAlgorithm( budgets, algorithm );
+            if ( null != budget ) System.out.println( "Budget =\t" + algorithm + " " + budget );
+        }
+
+        TraversalCounters counters = new TraversalCounters();
+        Map<String, PathFinder<? extends Path>> pathFinders = createPathFinders( db, direction, algorithms, counters,
+                budgets );
+
+        // With the oracle, the path lengths of the other algorithms are checked against it
+        HopDistanceOracle oracle = null;
+        for ( PathFinder<? extends Path> pathFinder : pathFinders.values() )
+        {
+            if ( pathFinder instanceof HopDistanceOracleShortestPath )
+            {
+                oracle = ( (HopDistanceOracleShortestPath) pathFinder ).oracle();
+            }
+        }
+
+        for ( Map.Entry<String, PathFinder<? extends Path>> pathFinder : pathFinders.entrySet() )
+        {
+            String name = pathFinder.getKey().toLowerCase().replace( ' ', '-' );
+            File logFile = new File( String.format( Config.HISTOGRAM_LOG_FILE, name, args[0], args[1] ) );
+            IntervalReporter reporter = new IntervalReporter( name, logFile, warmupSeconds );
+            PathFinder<? extends Path> runPathFinder = pathFinder.getValue();
+            HopDistanceOracle.CrossCheck<? extends Path> crossCheck = null;
+            if ( null != oracle && false == runPathFinder instanceof HopDistanceOracleShortestPath )
+            {
+                crossCheck = oracle.crossCheck( runPathFinder );
+                runPathFinder = crossCheck;
+            }
+            warmUp( pathFinder.getValue(), startAndEndNodes, args[0].equals( PATHS_SINGLE ), maxPaths, reporter );
+            MappedMemoryCounters mappedMemory = new MappedMemoryCounters( db );
+            String runString;
+            if ( args[0].equals( PATHS_SINGLE ) )
+            {
+                runString = runFindSinglePath( runPathFinder, startAndEndNodes, counters, reporter );
+            }
+            else
+            {
+                runString = runFindAllPaths( runPathFinder, startAndEndNodes, maxPaths, counters, reporter );
+            }
+            reporter.close();
+            System.out.println( "- " + pathFinder.getKey() + " -\n" + runString + reporter + mappedMemory
+                                + ( ( null == crossCheck ) ? "" : crossCheck )
+                                + String.format( "\tInterval Log\t\t : %s\n", logFile ) );
+        }
+
+        db.shutdown();
+    }
+
+    public static List<String> parseAlgorithms( String algorithms )
+    {
+        List<String> parsedAlgorithms = new ArrayList<String>();
+        for ( String algorithm : algorithms.split( "," ) )
+        {
+            algorithm = algorithm.trim();
+            if ( false == ALGORITHMS.contains( algorithm ) )
+            {
+                throw new IllegalArgumentException( "Unknown algorithm: " + algorithm );
+            }
+            parsedAlgorithms.add( algorithm );
+        }
+        return parsedAlgorithms;
+    }
+
+    public static Map<String, PathFinder<? extends Path>> createPathFinders( GraphDatabaseService db,
+            Direction direction, List<String> algorithms ) throws IOException
+    {
+        return createPathFinders( db, direction, algorithms, null );
+    }
+
+    public static Map<String, PathFinder<? extends Path>> createPathFinders( GraphDatabaseService db,
+            Direction direction, List<String> algorithms, TraversalCounters counters ) throws IOException
+    {
+        return createPathFinders( db, direction, algorithms, counters, null );
+    }
 
-        Expander expander = Traversal.expanderForAllTypes( direction );
+    // With counters the GraphAlgoFactory finders expand and evaluate costs through them, see TraversalCounters. With
+    // budgets, see QueryBudget, those that have one throw QueryBudget.ExceededException once a query exceeds it
+    public static Map<String, PathFinder<? extends Path>> createPathFinders( GraphDatabaseService db,
+            Direction direction, List<String> algorithms, TraversalCounters counters,
+            Map<String, QueryBudget> budgets ) throws IOException
+    {
+        PathExpander<Object> countedExpander = Traversal.pathExpanderForAllTypes( direction );
 
         CostEvaluator<Double> evaluator = CommonEvaluators.doubleCostEvaluator( "weight" );
-        int maxDepth = Integer.MAX_VALUE;
-        PathFinder<?> shortestPath = GraphAlgoFactory.shortestPath( expander, maxDepth );
 
         CostEvaluator<Double> constantEvaluator = new CostEvaluator<Double>()
         {
@@ -80,89 +252,340 @@ public class ShortestPathBench
                 return 1D;
             }
         };
-        PathFinder<? extends Path> unweightedDijkstra = GraphAlgoFactory.dijkstra( expander, constantEvaluator );
-
-        PathFinder<? extends Path> weightedDijkstra = GraphAlgoFactory.dijkstra( expander, evaluator );
 
-        if ( args[0].equals( "single" ) )
+        if ( null != counters )
         {
-            System.out.println( "- Shortest Path -\n" + runFindSinglePath( shortestPath, startAndEndNodes ) );
-            System.out.println( "- Unweighted Dijkstra -\n" + runFindSinglePath( unweightedDijkstra, startAndEndNodes ) );
-            System.out.println( "- Weighted Dijkstra -\n" + runFindSinglePath( weightedDijkstra, startAndEndNodes ) );
+            countedExpander = counters.expander( countedExpander );
+            evaluator = counters.costEvaluator( evaluator );
+            constantEvaluator = counters.costEvaluator( constantEvaluator );
         }
-        else
+
+        CsrGraph csrGraph = null;
+        Map<String, PathFinder<? extends Path>> pathFinders = new LinkedHashMap<String, PathFinder<? extends Path>>();
+        for ( String algorithm : algorithms )
         {
-            System.out.println( "- Shortest Path -\n" + runFindAllPaths( shortestPath, startAndEndNodes ) );
-            System.out.println( "- Unweighted Dijkstra -\n" + runFindAllPaths( unweightedDijkstra, startAndEndNodes ) );
-            System.out.println( "- Weighted Dijkstra -\n" + runFindAllPaths( weightedDijkstra, startAndEndNodes ) );
+            QueryBudget budget = ( BUDGETED_ALGORITHMS.contains( algorithm ) ) ? QueryBudget.forAlgorithm( budgets,
+                    algorithm ) : null;
+            PathExpander<Object> expander = ( null == budget ) ? countedExpander : budget.expander( countedExpander );
+            int maxDepth = ( null == budget ) ? Integer.MAX_VALUE : budget.maxDepth();
+            if ( algorithm.equals( ALGORITHM_SHORTEST_PATH ) )
+            {
+                pathFinders.put( "Shortest Path", budgeted( budget, GraphAlgoFactory.shortestPath( expander,
+                        maxDepth ) ) );
+            }
+            else if ( algorithm.equals( ALGORITHM_UNWEIGHTED_DIJKSTRA ) )
+            {
+                pathFinders.put( "Unweighted Dijkstra", budgeted( budget, GraphAlgoFactory.dijkstra( expander,
+                        constantEvaluator ) ) );
+            }
+            else if ( algorithm.equals( ALGORITHM_WEIGHTED_DIJKSTRA ) )
+            {
+                pathFinders.put( "Weighted Dijkstra", budgeted( budget, GraphAlgoFactory.dijkstra( expander,
+                        evaluator ) ) );
+            }
+            else if ( algorithm.equals( ALGORITHM_CSR_BFS ) )
+            {
+                csrGraph = ( null == csrGraph ) ? loadCsrGraph( db ) : csrGraph;
+                pathFinders.put( "CSR Bidirectional BFS", new CsrShortestPath( db, csrGraph, direction ) );
+            }
+            else if ( algorithm.equals( ALGORITHM_PRIMITIVE_UNWEIGHTED_DIJKSTRA ) )
+            {
+                csrGraph = ( null == csrGraph ) ? loadCsrGraph( db ) : csrGraph;
+                pathFinders.put( "Primitive Unweighted Dijkstra", new PrimitiveDijkstra( db, csrGraph, direction,
+                        new ConstantCostEvaluator( 1D ) ) );
+            }
+            else if ( algorithm.equals( ALGORITHM_PRIMITIVE_WEIGHTED_DIJKSTRA ) )
+            {
+                csrGraph = ( null == csrGraph ) ? loadCsrGraph( db ) : csrGraph;
+                pathFinders.put( "Primitive Weighted Dijkstra", new PrimitiveDijkstra( db, csrGraph, direction,
+                        new WeightCostEvaluator( csrGraph ) ) );
+            }
+            else if ( algorithm.equals( ALGORITHM_ALT_ASTAR ) )
+            {
+                csrGraph = ( null == csrGraph ) ? loadCsrGraph( db ) : csrGraph;
+                Landmarks landmarks = loadLandmarks( csrGraph, direction );
+                pathFinders.put( "ALT A*", new PrimitiveDijkstra( db, csrGraph, direction,
+                        new WeightCostEvaluator( csrGraph ), landmarks ) );
+            }
+            else if ( algorithm.equals( ALGORITHM_CONTRACTION_HIERARCHIES ) )
+            {
+                csrGraph = ( null == csrGraph ) ? loadCsrGraph( db ) : csrGraph;
+                ContractionHierarchy hierarchy = loadContractionHierarchy( csrGraph, direction );
+                pathFinders.put( "Contraction Hierarchies", new ContractionHierarchyShortestPath( db, hierarchy ) );
+            }
+            else if ( algorithm.equals( ALGORITHM_HOP_DISTANCE_ORACLE ) )
+            {
+                csrGraph = ( null == csrGraph ) ? loadCsrGraph( db ) : csrGraph;
+                HopDistanceOracle oracle = loadHopDistanceOracle( csrGraph, direction );
+                pathFinders.put( "Hop Distance Oracle", new HopDistanceOracleShortestPath( db, oracle, csrGraph ) );
+            }
         }
+        return pathFinders;
+    }
 
-        db.shutdown();
+    private static <P extends Path> PathFinder<P> budgeted( QueryBudget budget, PathFinder<P> pathFinder )
+    {
+        return ( null == budget ) ? pathFinder : budget.pathFinder( pathFinder );
+    }
+
+    private static Landmarks loadLandmarks( CsrGraph csrGraph, Direction direction ) throws IOException
+    {
+        long startTime = System.currentTimeMillis();
+        Landmarks landmarks = Landmarks.loadOrCompute( csrGraph, direction );
+        System.out.println( String.format( "Loaded %s in %s(ms)", landmarks, System.currentTimeMillis() - startTime ) );
+        return landmarks;
+    }
+
+    private static ContractionHierarchy loadContractionHierarchy( CsrGraph csrGraph, Direction direction )
+            throws IOException
+    {
+        long startTime = System.currentTimeMillis();
+        ContractionHierarchy hierarchy = ContractionHierarchy.loadOrCompute( csrGraph, direction );
+        System.out.println( String.format( "Loaded %s in %s(ms)", hierarchy, System.currentTimeMillis() - startTime ) );
+        return hierarchy;
+    }
+
+    private static HopDistanceOracle loadHopDistanceOracle( CsrGraph csrGraph, Direction direction )
+            throws IOException
+    {
+        long startTime = System.currentTimeMillis();
+        HopDistanceOracle oracle = HopDistanceOracle.loadOrCompute( csrGraph, direction );
+        System.out.println( String.format( "Loaded %s in %s(ms)", oracle, System.currentTimeMillis() - startTime ) );
+        return oracle;
+    }
+
+    private static CsrGraph loadCsrGraph( GraphDatabaseService db )
+    {
+        long startTime = System.currentTimeMillis();
+        CsrGraph csrGraph = CsrGraph.loadFromDatabase( db, "weight" );
+        System.out.println( String.format( "Loaded %s in %s(ms)", csrGraph, System.currentTimeMillis() - startTime ) );
+        return csrGraph;
+    }
+
+    // Repeats queries over the pairs until the reporter's warmup window has elapsed, so the measured run that follows
+    // is all steady state however fast the path finder is. Warmup run times only go to the reporter's interval log
+    static void warmUp( PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes, boolean singlePath,
+            int maxPaths, IntervalReporter reporter )
+    {
+        if ( startAndEndNodes.isEmpty() || false == reporter.isWarmingUp() ) return;
+        for ( int i = 0; reporter.isWarmingUp(); i = ( i + 1 ) % startAndEndNodes.size() )
+        {
+            Pair<Node> startAndEndNode = startAndEndNodes.get( i );
+            long startTime = System.nanoTime();
+            try
+            {
+                if ( singlePath )
+                {
+                    pathFinder.findSinglePath( startAndEndNode.getFirst(), startAndEndNode.getSecond() );
+                }
+                else
+                {
+                    Iterator<? extends Path> paths = pathFinder.findAllPaths( startAndEndNode.getFirst(),
+                            startAndEndNode.getSecond() ).iterator();
+                    for ( int pathCount = 0; pathCount < maxPaths && paths.hasNext(); pathCount++ )
+                    {
+                        paths.next();
+                    }
+                }
+            }
+            catch ( QueryBudget.ExceededException e )
+            {
+                // Over budget queries are recorded like the measured run does
+            }
+            reporter.record( System.nanoTime() - startTime );
+        }
+        reporter.endWarmup();
     }
 
     public static String runFindSinglePath( PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes )
     {
+        return runFindSinglePath( pathFinder, startAndEndNodes, null, null );
+    }
+
+    // Counters, if any, are those the path finder was created with, their figures are reported per query. Run times
+    // are also recorded into the reporter, if any
+    public static String runFindSinglePath( PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes,
+            TraversalCounters counters, IntervalReporter reporter )
+    {
+        TraversalCounters.Histograms counterHistograms = new TraversalCounters.Histograms();
+        ResourceCounters resources = new ResourceCounters();
         Histogram timeHistogram = new Histogram( TimeUnit.MILLISECONDS.convert( 10, TimeUnit.MINUTES ), 5 );
         Histogram pathLengthHistogram = new Histogram( 10000, 5 );
+        Histogram overBudgetTimeHistogram = new Histogram( TimeUnit.MILLISECONDS.convert( 10, TimeUnit.MINUTES ), 5 );
         long longestRuntime = Long.MIN_VALUE;
         long longestRunTimeStartNodeId = -1;
         long longestRunTimeEndNodeId = -1;
         long longestRunTimePathLength = -1;
+        String longestRunTimeCounters = "";
+        int noPathCount = 0;
+        int timedOutCount = 0;
 
         for ( Pair<Node> startAndEndNode : startAndEndNodes )
         {
-            long startTime = System.currentTimeMillis();
-            Path path = pathFinder.findSinglePath( startAndEndNode.getFirst(), startAndEndNode.getSecond() );
-            long runTime = System.currentTimeMillis() - startTime;
-            if ( path == null ) continue;
+            if ( null != counters ) counters.reset();
+            resources.startQuery();
+            long startTime = System.nanoTime();
+            Path path;
+            try
+            {
+                path = pathFinder.findSinglePath( startAndEndNode.getFirst(), startAndEndNode.getSecond() );
+            }
+            catch ( QueryBudget.ExceededException e )
+            {
+                long overBudgetNanos = System.nanoTime() - startTime;
+                if ( e.timedOut() ) timedOutCount++;
+                overBudgetTimeHistogram.recordValue( TimeUnit.NANOSECONDS.toMillis( overBudgetNanos ) );
+                if ( null != reporter ) reporter.record( overBudgetNanos );
+                continue;
+            }
+            long runTimeNanos = System.nanoTime() - startTime;
+            long runTime = TimeUnit.NANOSECONDS.toMillis( runTimeNanos );
+            if ( path == null )
+            {
+                noPathCount++;
+                continue;
+            }
+            resources.endQuery( runTimeNanos );
+            if ( null != reporter ) reporter.record( runTimeNanos );
             timeHistogram.recordValue( runTime );
             pathLengthHistogram.recordValue( path.length() );
+            if ( null != counters ) counterHistograms.record( counters, runTimeNanos );
             if ( runTime > longestRuntime )
             {
                 longestRuntime = runTime;
                 longestRunTimeStartNodeId = startAndEndNode.getFirst().getId();
                 longestRunTimeEndNodeId = startAndEndNode.getSecond().getId();
                 longestRunTimePathLength = path.length();
+                longestRunTimeCounters = countersString( counters, runTimeNanos ) + resources.queryString();
             }
         }
-        String longestRunTimeString = String.format( "\tLongest Run\t\t : Time[%s(ms)] Start[%s] End[%s] Length[%s]\n",
-                longestRuntime, longestRunTimeStartNodeId, longestRunTimeEndNodeId, longestRunTimePathLength );
+        String longestRunTimeString = String.format(
+                "\tLongest Run\t\t : Time[%s(ms)] Start[%s] End[%s] Length[%s]%s\n",
+                longestRuntime, longestRunTimeStartNodeId, longestRunTimeEndNodeId, longestRunTimePathLength,
+                longestRunTimeCounters );
         return histogramString( timeHistogram, "Run Time (ms)" ) + histogramString( pathLengthHistogram, "Path Length" )
-               + longestRunTimeString;
+               + counterHistograms + resources + outcomesString( timeHistogram.getTotalCount(), noPathCount,
+                timedOutCount, overBudgetTimeHistogram, "ms" ) + longestRunTimeString;
     }
 
-    public static String runFindAllPaths( PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes )
+    // Consumes at most maxPaths paths per query, in a single pass over the returned iterable
+    public static String runFindAllPaths( PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes,
+            int maxPaths )
     {
-        Histogram timeHistogram = new Histogram( TimeUnit.MILLISECONDS.convert( 10, TimeUnit.MINUTES ), 5 );
+        return runFindAllPaths( pathFinder, startAndEndNodes, maxPaths, null, null );
+    }
+
+    public static String runFindAllPaths( PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes,
+            int maxPaths, TraversalCounters counters, IntervalReporter reporter )
+    {
+        TraversalCounters.Histograms counterHistograms = new TraversalCounters.Histograms();
+        ResourceCounters resources = new ResourceCounters();
+        Histogram firstPathTimeHistogram = ConcurrentShortestPathBench.newTimeHistogram();
+        Histogram allPathsTimeHistogram = ConcurrentShortestPathBench.newTimeHistogram();
+        Histogram interArrivalTimeHistogram = ConcurrentShortestPathBench.newTimeHistogram();
         Histogram pathLengthHistogram = new Histogram( 10000, 5 );
         Histogram pathCountHistogram = new Histogram( 10000, 5 );
+        Histogram overBudgetTimeHistogram = ConcurrentShortestPathBench.newTimeHistogram();
         long longestRuntime = Long.MIN_VALUE;
         long longestRunTimeStartNodeId = -1;
         long longestRunTimeEndNodeId = -1;
         long longestRunTimePathLength = -1;
+        String longestRunTimeCounters = "";
+        int noPathCount = 0;
+        int timedOutCount = 0;
 
         for ( Pair<Node> startAndEndNode : startAndEndNodes )
         {
-            long startTime = System.currentTimeMillis();
-            Iterable<? extends Path> paths = pathFinder.findAllPaths( startAndEndNode.getFirst(),
-                    startAndEndNode.getSecond() );
-            Path path = paths.iterator().next();
-            pathLengthHistogram.recordValue( path.length() );
-            long runTime = System.currentTimeMillis() - startTime;
-            pathCountHistogram.recordValue( IteratorUtil.count( paths ) );
-            timeHistogram.recordValue( runTime );
+            if ( null != counters ) counters.reset();
+            resources.startQuery();
+            long startTime = System.nanoTime();
+            Path firstPath = null;
+            long firstPathTime = 0;
+            long previousPathTime = startTime;
+            int pathCount = 0;
+            try
+            {
+                Iterator<? extends Path> paths = pathFinder.findAllPaths( startAndEndNode.getFirst(),
+                        startAndEndNode.getSecond() ).iterator();
+                while ( pathCount < maxPaths && paths.hasNext() )
+                {
+                    Path path = paths.next();
+                    long pathTime = System.nanoTime();
+                    if ( null == firstPath )
+                    {
+                        firstPath = path;
+                        firstPathTime = pathTime - startTime;
+                    }
+                    else
+                    {
+                        long interArrivalTime = pathTime - previousPathTime;
+                        interArrivalTimeHistogram.recordValue( TimeUnit.NANOSECONDS.toMicros( interArrivalTime ) );
+                    }
+                    previousPathTime = pathTime;
+                    pathCount++;
+                }
+            }
+            catch ( QueryBudget.ExceededException e )
+            {
+                long overBudgetNanos = System.nanoTime() - startTime;
+                if ( e.timedOut() ) timedOutCount++;
+                overBudgetTimeHistogram.recordValue( TimeUnit.NANOSECONDS.toMicros( overBudgetNanos ) );
+                if ( null != reporter ) reporter.record( overBudgetNanos );
+                continue;
+            }
+            long runTimeNanos = System.nanoTime() - startTime;
+            long runTime = TimeUnit.NANOSECONDS.toMicros( runTimeNanos );
+            if ( null == firstPath )
+            {
+                noPathCount++;
+                continue;
+            }
+            resources.endQuery( runTimeNanos );
+            if ( null != reporter ) reporter.record( runTimeNanos );
+            if ( null != counters ) counterHistograms.record( counters, runTimeNanos );
+            firstPathTimeHistogram.recordValue( TimeUnit.NANOSECONDS.toMicros( firstPathTime ) );
+            allPathsTimeHistogram.recordValue( runTime );
+            pathLengthHistogram.recordValue( firstPath.length() );
+            pathCountHistogram.recordValue( pathCount );
             if ( runTime > longestRuntime )
             {
                 longestRuntime = runTime;
                 longestRunTimeStartNodeId = startAndEndNode.getFirst().getId();
                 longestRunTimeEndNodeId = startAndEndNode.getSecond().getId();
-                longestRunTimePathLength = path.length();
+                longestRunTimePathLength = firstPath.length();
+                longestRunTimeCounters = countersString( counters, runTimeNanos ) + resources.queryString();
             }
         }
-        String longestRunTimeString = String.format( "\tLongest Run\t\t : Time[%s(ms)] Start[%s] End[%s] Length[%s]\n",
-                longestRuntime, longestRunTimeStartNodeId, longestRunTimeEndNodeId, longestRunTimePathLength );
-        return histogramString( timeHistogram, "Run Time (ms)" ) + histogramString( pathLengthHistogram, "Path Length" )
-               + histogramString( pathCountHistogram, "Discovered Path Count" ) + longestRunTimeString;
+        String longestRunTimeString = String.format(
+                "\tLongest Run\t\t : Time[%s(us)] Start[%s] End[%s] Length[%s]%s\n",
+                longestRuntime, longestRunTimeStartNodeId, longestRunTimeEndNodeId, longestRunTimePathLength,
+                longestRunTimeCounters );
+        return histogramString( firstPathTimeHistogram, "Time To First Path (us)" )
+               + histogramString( allPathsTimeHistogram, "Time To All Paths (us)" )
+               + histogramString( interArrivalTimeHistogram, "Path Inter-Arrival Time (us)" )
+               + histogramString( pathLengthHistogram, "Path Length" )
+               + histogramString( pathCountHistogram, "Discovered Path Count" ) + counterHistograms + resources
+               + outcomesString( allPathsTimeHistogram.getTotalCount(), noPathCount, timedOutCount,
+                overBudgetTimeHistogram, "us" ) + longestRunTimeString;
+    }
+
+    // Queries over budget are left out of the other figures, their run times (up to cancellation) are reported here
+    // and recorded into the reporter, as they occupy the querying thread all the same
+    private static String outcomesString( long completedCount, int noPathCount, int timedOutCount,
+            Histogram overBudgetTimeHistogram, String unit )
+    {
+        long overBudgetCount = overBudgetTimeHistogram.getTotalCount();
+        String overBudgetString = ( overBudgetCount == 0 ) ? "" : histogramString( overBudgetTimeHistogram,
+                "Run Time Over Budget (" + unit + ")" );
+        return overBudgetString + String.format(
+                "\tQueries\t\t\t : Completed[%s] No Path[%s] Timed Out[%s] Max Expansions Exceeded[%s]\n",
+                completedCount, noPathCount, timedOutCount, overBudgetCount - timedOutCount );
+    }
+
+    // Empty for finders that did not expand through the counters
+    private static String countersString( TraversalCounters counters, long runTimeNanos )
+    {
+        return ( null == counters || counters.expandedNodes() == 0 ) ? "" : " " + counters.toString( runTimeNanos );
     }
 
     public static String histogramString( Histogram histogram, String name )
@@ -191,7 +614,29 @@ public class ShortestPathBench
         Transaction tx = db.beginTx();
         try
         {
-            CsvFileReader reader = new CsvFileReader( new File( Config.PATH_START_END_ID_FILE ), "," );
+            File binaryFile = new File( Config.PATH_START_END_BINARY_FILE );
+            if ( BinaryGraphFile.isCurrent( binaryFile, new File( Config.PATH_START_END_ID_FILE ) ) )
+            {
+                BinaryGraphFile.Reader reader = new BinaryGraphFile.Reader( binaryFile );
+                try
+                {
+                    while ( count < maxCount && reader.next() )
+                    {
+                        Node startNode = db.getNodeById( reader.firstId() );
+                        Node endNode = db.getNodeById( reader.secondId() );
+                        startAndEndNodes.add( new Pair<Node>( startNode, endNode ) );
+                        count++;
+                    }
+                }
+                finally
+                {
+                    reader.close();
+                }
+                tx.success();
+                return startAndEndNodes;
+            }
+
+            CsvFileReader reader = new CsvFileReader( new File( Config.PATH_START_END_ID_FILE ), ',' );
             // Skip Files Headers
             if ( reader.hasNext() )
             {
@@ -205,7 +650,7 @@ public class ShortestPathBench
                 long endNodeId = Long.parseLong( startAndEndNode[1] );
                 Node startNode = db.getNodeById( startNodeId );
                 Node endNode = db.getNodeById( endNodeId );
-                startAndEndNodes.add( new Pair( startNode, endNode ) );
+                startAndEndNodes.add( new Pair<Node>( startNode, endNode ) );
                 count++;
                 if ( count >= maxCount ) break;
             }
@@ -224,6 +669,11 @@ public class ShortestPathBench
         return startAndEndNodes;
     }
 
+    public static Direction parseDirection( String direction )
+    {
+        return ( direction.equals( DIRECTION_BOTH ) ) ? Direction.BOTH : Direction.OUTGOING;
+    }
+
     static class Pair<T>
     {
         private final T first;
@@ -0,0 +1,223 @@
+package org.neo4j.bench.shortestpath;
+
+import java.lang.reflect.Array;
+
+import org.HdrHistogram.Histogram;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * Counts, degree distribution and property sizes of a store, gathered by {@link GraphUtils#scanStore}. Store sizes
+ * are estimated from Neo4j 1.9 record sizes, as a guide for the *.mapped_memory settings: short strings and arrays
+ * that Neo4j inlines into property records are still counted as dynamic records, so those estimates are upper bounds.
+ */
+public class StoreStatistics
+{
+    static final int NODE_RECORD_SIZE = 9;
+    static final int RELATIONSHIP_RECORD_SIZE = 33;
+    static final int PROPERTY_RECORD_SIZE = 41;
+    static final int PROPERTY_BLOCKS_PER_RECORD = 4;
+    static final int DYNAMIC_RECORD_SIZE = 133;
+    static final int DYNAMIC_RECORD_DATA_SIZE = 120;
+    // Payload bits left in a property block after key and type, longs wider than this take a second block
+    private static final int INLINE_LONG_BITS = 35;
+
+    private long highestNodeId = -1;
+    private long highestRelationshipId = -1;
+    private long nodeCount = 0;
+    private long relationshipCount = 0;
+    private long nodePropertyCount = 0;
+    private long relationshipPropertyCount = 0;
+    private long propertyRecordCount = 0;
+    private long stringRecordCount = 0;
+    private long arrayRecordCount = 0;
+    private final Histogram degreeHistogram = new Histogram( 3 );
+    private final Histogram nodePropertySizeHistogram = new Histogram( 3 );
+    private final Histogram relationshipPropertySizeHistogram = new Histogram( 3 );
+
+    void addNode( Node node )
+    {
+        nodeCount++;
+        nodePropertyCount += addProperties( node, nodePropertySizeHistogram );
+    }
+
+    void addRelationship( Relationship relationship )
+    {
+        relationshipCount++;
+        relationshipPropertyCount += addProperties( relationship, relationshipPropertySizeHistogram );
+    }
+
+    // Relationships to self add two to the degree of their node
+    void addDegree( long degree )
+    {
+        degreeHistogram.recordValue( degree );
+    }
+
+    void add( StoreStatistics other )
+    {
+        nodeCount += other.nodeCount;
+        relationshipCount += other.relationshipCount;
+        nodePropertyCount += other.nodePropertyCount;
+        relationshipPropertyCount += other.relationshipPropertyCount;
+        propertyRecordCount += other.propertyRecordCount;
+        stringRecordCount += other.stringRecordCount;
+        arrayRecordCount += other.arrayRecordCount;
+        degreeHistogram.add( other.degreeHistogram );
+        nodePropertySizeHistogram.add( other.nodePropertySizeHistogram );
+        relationshipPropertySizeHistogram.add( other.relationshipPropertySizeHistogram );
+    }
+
+    void setHighestIds( long highestNodeId, long highestRelationshipId )
+    {
+        this.highestNodeId = highestNodeId;
+        this.highestRelationshipId = highestRelationshipId;
+    }
+
+    private long addProperties( PropertyContainer entity, Histogram sizeHistogram )
+    {
+        long propertyCount = 0;
+        int blockCount = 0;
+        for ( String key : entity.getPropertyKeys() )
+        {
+            Object value = entity.getProperty( key );
+            propertyCount++;
+            sizeHistogram.recordValue( valueSize( value ) );
+            if ( value instanceof String )
+            {
+                blockCount++;
+                stringRecordCount += dynamicRecordCount( valueSize( value ) );
+            }
+            else if ( value.getClass().isArray() )
+            {
+                blockCount++;
+                arrayRecordCount += dynamicRecordCount( valueSize( value ) );
+            }
+            else
+            {
+                blockCount += blockCount( value );
+            }
+        }
+        propertyRecordCount += ( blockCount + PROPERTY_BLOCKS_PER_RECORD - 1 ) / PROPERTY_BLOCKS_PER_RECORD;
+        return propertyCount;
+    }
+
+    // Size of a property value in bytes, strings are assumed to be mostly single byte characters
+    static long valueSize( Object value )
+    {
+        if ( value instanceof String ) return ( (String) value ).length();
+        if ( value instanceof Boolean || value instanceof Byte ) return 1;
+        if ( value instanceof Short || value instanceof Character ) return 2;
+        if ( value instanceof Integer || value instanceof Float ) return 4;
+        if ( value instanceof Long || value instanceof Double ) return 8;
+        if ( value instanceof String[] )
+        {
+            long size = 0;
+            for ( String element : (String[]) value )
+            {
+                size += element.length();
+            }
+            return size;
+        }
+        int length = Array.getLength( value );
+        return ( length == 0 ) ? 0 : length * valueSize( Array.get( value, 0 ) );
+    }
+
+    private static int blockCount( Object value )
+    {
+        if ( value instanceof Double ) return 2;
+        if ( value instanceof Long )
+        {
+            long longValue = (Long) value;
+            return ( longValue >> INLINE_LONG_BITS == 0 || longValue >> INLINE_LONG_BITS == -1 ) ? 1 : 2;
+        }
+        return 1;
+    }
+
+    private static long dynamicRecordCount( long size )
+    {
+        return ( size + DYNAMIC_RECORD_DATA_SIZE - 1 ) / DYNAMIC_RECORD_DATA_SIZE;
+    }
+
+    public long nodeCount()
+    {
+        return nodeCount;
+    }
+
+    public long relationshipCount()
+    {
+        return relationshipCount;
+    }
+
+    public long nodePropertyCount()
+    {
+        return nodePropertyCount;
+    }
+
+    public long relationshipPropertyCount()
+    {
+        return relationshipPropertyCount;
+    }
+
+    public Histogram degreeHistogram()
+    {
+        return degreeHistogram;
+    }
+
+    public Histogram nodePropertySizeHistogram()
+    {
+        return nodePropertySizeHistogram;
+    }
+
+    public Histogram relationshipPropertySizeHistogram()
+    {
+        return relationshipPropertySizeHistogram;
+    }
+
+    // Store files are sized by highest id in use, not by live record count
+    public long nodeStoreBytes()
+    {
+        return ( highestNodeId + 1 ) * NODE_RECORD_SIZE;
+    }
+
+    public long relationshipStoreBytes()
+    {
+        return ( highestRelationshipId + 1 ) * RELATIONSHIP_RECORD_SIZE;
+    }
+
+    public long propertyStoreBytes()
+    {
+        return propertyRecordCount * PROPERTY_RECORD_SIZE;
+    }
+
+    public long stringStoreBytes()
+    {
+        return stringRecordCount * DYNAMIC_RECORD_SIZE;
+    }
+
+    public long arrayStoreBytes()
+    {
+        return arrayRecordCount * DYNAMIC_RECORD_SIZE;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "Node Count = %s\nNode Property Count = %s\nRelationship Count = %s\n"
+                              + "Relationship Property Count = %s\n", nodeCount, nodePropertyCount,
+                relationshipCount, relationshipPropertyCount )
+               + ShortestPathBench.histogramString( degreeHistogram, "Degree" )
+               + ShortestPathBench.histogramString( nodePropertySizeHistogram, "Node Property Size (bytes)" )
+               + ShortestPathBench.histogramString( relationshipPropertySizeHistogram,
+                       "Relationship Property Size (bytes)" )
+               + String.format( "\tEstimated Store Sizes (MB)\n\t\tnodestore\t : %s\n\t\trelationshipstore : %s\n"
+                                + "\t\tpropertystore\t : %s\n\t\tstrings\t\t : %s\n\t\tarrays\t\t : %s\n",
+                       toMb( nodeStoreBytes() ), toMb( relationshipStoreBytes() ), toMb( propertyStoreBytes() ),
+                       toMb( stringStoreBytes() ), toMb( arrayStoreBytes() ) );
+    }
+
+    private static String toMb( long bytes )
+    {
+        return String.format( "%.1f", bytes / ( 1024.0 * 1024.0 ) );
+    }
+}
@@ -0,0 +1,155 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.neo4j.bench.shortestpath.ShortestPathBench.Pair;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
+/**
+ * One cell of a {@link SweepRunner} sweep, run in its own JVM: starts the database with the cell's settings on top of
+ * neo4j_config.properties, runs the start and end node pairs once cold, warms up with store scans and passes over the
+ * pairs, and runs them once more warm. Writes a CSV file with a row per phase and an interval log per phase, all named
+ * after the output prefix. The usual benchmark text goes to standard out.
+ */
+public class SweepCell
+{
+    static String PHASE_COLD = "cold";
+    static String PHASE_WARM = "warm";
+    static List<String> COLUMNS = Arrays.asList( "cell", "settings", "algorithm", "direction", "paths", "phase",
+            "queries", "duration_ms", "throughput", "min_us", "mean_us", "p50_us", "p90_us", "p99_us", "p999_us",
+            "max_us", "gc_count", "gc_time_ms", "mapped_hits", "mapped_misses", "log" );
+
+    public static void main( String[] args ) throws IOException, InterruptedException
+    {
+        String errMsg = String.format( "Expected at least 8 parameters, found %s. Parameters should be <output prefix> "
+                                       + "<%s|%s> <%s|%s> <algorithm> <warmup scans> <warmup passes> <max paths> "
+                                       + "<pair count> [setting=value ...]\n", args.length,
+                ShortestPathBench.PATHS_SINGLE, ShortestPathBench.PATHS_ALL, ShortestPathBench.DIRECTION_BOTH,
+                ShortestPathBench.DIRECTION_OUT );
+
+        if ( args.length < 8 )
+        {
+            System.out.println( errMsg );
+            System.exit( 1 );
+        }
+
+        File outputPrefix = new File( args[0] );
+        boolean singlePath = args[1].equals( ShortestPathBench.PATHS_SINGLE );
+        String algorithm = args[3];
+        int warmupScans = Integer.parseInt( args[4] );
+        int warmupPasses = Integer.parseInt( args[5] );
+        int maxPaths = Integer.parseInt( args[6] );
+        maxPaths = ( maxPaths <= 0 ) ? Integer.MAX_VALUE : maxPaths;
+        int pairCount = Integer.parseInt( args[7] );
+        Map<String, String> config = new HashMap<String, String>( Config.NEO4J_CONFIG );
+        StringBuilder settings = new StringBuilder();
+        for ( int i = 8; i < args.length; i++ )
+        {
+            int separator = args[i].indexOf( '=' );
+            if ( separator <= 0 )
+            {
+                System.out.println( String.format( "Unexpected value for parameter %s: %s\n%s", i, args[i], errMsg ) );
+                System.exit( 1 );
+            }
+            config.put( args[i].substring( 0, separator ), args[i].substring( separator + 1 ) );
+            settings.append( ( settings.length() > 0 ) ? ";" : "" ).append( args[i] );
+        }
+
+        GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( Config.DB_DIR ).setConfig(
+                config ).newGraphDatabase();
+        List<Pair<Node>> startAndEndNodes = ShortestPathBench.loadStartAndEndNodes( db, pairCount );
+        PathFinder<? extends Path> pathFinder = ShortestPathBench.createPathFinders( db,
+                ShortestPathBench.parseDirection( args[2] ), ShortestPathBench.parseAlgorithms( algorithm ) ).values()
+                .iterator().next();
+
+        String[] cold = runPhase( db, outputPrefix, PHASE_COLD, pathFinder, startAndEndNodes, singlePath, maxPaths );
+
+        long warmupStartTime = System.currentTimeMillis();
+        for ( int scan = 0; scan < warmupScans; scan++ )
+        {
+            GraphUtils.scanStore( db, Runtime.getRuntime().availableProcessors() );
+        }
+        for ( int pass = 0; pass < warmupPasses; pass++ )
+        {
+            run( pathFinder, startAndEndNodes, singlePath, maxPaths, null );
+        }
+        System.out.println( String.format( "Warmed up with %s scans and %s passes in %s(ms)", warmupScans,
+                warmupPasses, System.currentTimeMillis() - warmupStartTime ) );
+
+        String[] warm = runPhase( db, outputPrefix, PHASE_WARM, pathFinder, startAndEndNodes, singlePath, maxPaths );
+        db.shutdown();
+
+        CsvFileWriter writer = new CsvFileWriter( new File( outputPrefix.getPath() + ".csv" ) );
+        writer.writeLine( COLUMNS.toArray( new String[COLUMNS.size()] ) );
+        for ( String[] phase : new String[][] { cold, warm } )
+        {
+            phase[COLUMNS.indexOf( "cell" )] = outputPrefix.getName();
+            phase[COLUMNS.indexOf( "settings" )] = settings.toString();
+            phase[COLUMNS.indexOf( "algorithm" )] = algorithm;
+            phase[COLUMNS.indexOf( "direction" )] = args[2];
+            phase[COLUMNS.indexOf( "paths" )] = args[1];
+            writer.writeLine( phase );
+        }
+        writer.close();
+    }
+
+    // Returns the phase's row, without the cell columns
+    private static String[] runPhase( GraphDatabaseService db, File outputPrefix, String phase,
+            PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes, boolean singlePath, int maxPaths )
+            throws IOException, InterruptedException
+    {
+        File logFile = new File( outputPrefix.getPath() + "-" + phase + ".hlog" );
+        IntervalReporter reporter = new IntervalReporter( outputPrefix.getName() + "-" + phase, logFile, 0 );
+        long gcCount = ResourceCounters.gcCount();
+        long gcTime = ResourceCounters.gcTime();
+        MappedMemoryCounters mappedMemory = new MappedMemoryCounters( db );
+        long startTime = System.nanoTime();
+        String runString = run( pathFinder, startAndEndNodes, singlePath, maxPaths, reporter );
+        long duration = System.nanoTime() - startTime;
+        gcCount = ResourceCounters.gcCount() - gcCount;
+        gcTime = ResourceCounters.gcTime() - gcTime;
+        reporter.close();
+        System.out.println( "- " + phase + " -\n" + runString + reporter + mappedMemory );
+
+        Histogram histogram = reporter.steadyStateHistogram();
+        String[] row = new String[COLUMNS.size()];
+        row[COLUMNS.indexOf( "phase" )] = phase;
+        row[COLUMNS.indexOf( "queries" )] = Long.toString( histogram.getTotalCount() );
+        row[COLUMNS.indexOf( "duration_ms" )] = Long.toString( TimeUnit.NANOSECONDS.toMillis( duration ) );
+        row[COLUMNS.indexOf( "throughput" )] = Long.toString( TraversalCounters.perSecond(
+                histogram.getTotalCount(), duration ) );
+        boolean empty = ( histogram.getTotalCount() == 0 );
+        row[COLUMNS.indexOf( "min_us" )] = Long.toString( empty ? 0 : histogram.getMinValue() );
+        row[COLUMNS.indexOf( "mean_us" )] = Long.toString( Math.round( histogram.getMean() ) );
+        row[COLUMNS.indexOf( "p50_us" )] = Long.toString( histogram.getValueAtPercentile( 50 ) );
+        row[COLUMNS.indexOf( "p90_us" )] = Long.toString( histogram.getValueAtPercentile( 90 ) );
+        row[COLUMNS.indexOf( "p99_us" )] = Long.toString( histogram.getValueAtPercentile( 99 ) );
+        row[COLUMNS.indexOf( "p999_us" )] = Long.toString( histogram.getValueAtPercentile( 99.9 ) );
+        row[COLUMNS.indexOf( "max_us" )] = Long.toString( histogram.getMaxValue() );
+        row[COLUMNS.indexOf( "gc_count" )] = Long.toString( gcCount );
+        row[COLUMNS.indexOf( "gc_time_ms" )] = Long.toString( gcTime );
+        row[COLUMNS.indexOf( "mapped_hits" )] = Long.toString( mappedMemory.hits() );
+        row[COLUMNS.indexOf( "mapped_misses" )] = Long.toString( mappedMemory.misses() );
+        row[COLUMNS.indexOf( "log" )] = logFile.getName();
+        return row;
+    }
+
+    private static String run( PathFinder<? extends Path> pathFinder, List<Pair<Node>> startAndEndNodes,
+            boolean singlePath, int maxPaths, IntervalReporter reporter )
+    {
+        return ( singlePath ) ? ShortestPathBench.runFindSinglePath( pathFinder, startAndEndNodes, null, reporter )
+                              : ShortestPathBench.runFindAllPaths( pathFinder, startAndEndNodes, maxPaths, null,
+                                      reporter );
+    }
+}
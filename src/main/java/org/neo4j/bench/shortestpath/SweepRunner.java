@@ -0,0 +1,320 @@
+package org.neo4j.bench.shortestpath;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Runs every combination of Neo4j settings, algorithm, direction and single/all paths given in a sweep file, each in
+ * a {@link SweepCell} in a freshly forked JVM, so caches and JIT state do not carry over between cells. Collects the
+ * cold and warm rows of all cells into sweep.csv and sweep.json in the output directory, next to every cell's
+ * interval logs and output. Sweep files are properties files:
+ * <ul>
+ * <li>setting.&lt;name&gt; : comma separated values of a Neo4j setting, all other settings are those of
+ * neo4j_config.properties</li>
+ * <li>algorithms, directions, paths : comma separated, as the parameters of {@link ShortestPathBench}</li>
+ * <li>warmup.scans, warmup.passes : store scans and passes over the pairs between the cold and warm phase</li>
+ * <li>max.paths, pairs : paths consumed per query in 'all' mode (0 is no cap), and pairs per phase</li>
+ * <li>jvm.args : space separated arguments of the forked JVMs</li>
+ * </ul>
+ */
+public class SweepRunner
+{
+    static String SETTING_PREFIX = "setting.";
+    static String DEFAULT_DIRECTIONS = ShortestPathBench.DIRECTION_OUT + "," + ShortestPathBench.DIRECTION_BOTH;
+    static String DEFAULT_WARMUP_SCANS = "1";
+    static String DEFAULT_WARMUP_PASSES = "1";
+    static String DEFAULT_PAIRS = "1000";
+    static String DEFAULT_JVM_ARGS = "-server -Xmx512m";
+    private static final Pattern NUMBER = Pattern.compile( "-?[0-9]+" );
+
+    public static void main( String[] args ) throws IOException, InterruptedException
+    {
+        String errMsg = String.format( "Expected 1 or 2 parameters, found %s. Parameters should be <sweep file> "
+                                       + "[output directory]\nOutput directory defaults to results/sweep-<date>\n",
+                args.length );
+
+        if ( args.length < 1 || args.length > 2 )
+        {
+            System.out.println( errMsg );
+            return;
+        }
+
+        File sweepFile = new File( args[0] );
+        if ( false == sweepFile.isFile() )
+        {
+            System.out.println( String.format( "Unexpected value for parameter 0: %s\n%s", args[0], errMsg ) );
+            return;
+        }
+        Properties sweep = new Properties();
+        FileInputStream sweepInput = new FileInputStream( sweepFile );
+        try
+        {
+            sweep.load( sweepInput );
+        }
+        finally
+        {
+            sweepInput.close();
+        }
+
+        List<String> algorithms;
+        List<String> directions = split( sweep.getProperty( "directions", DEFAULT_DIRECTIONS ) );
+        List<String> paths = split( sweep.getProperty( "paths", ShortestPathBench.PATHS_SINGLE ) );
+        String[] counts = new String[] { sweep.getProperty( "warmup.scans", DEFAULT_WARMUP_SCANS ),
+                sweep.getProperty( "warmup.passes", DEFAULT_WARMUP_PASSES ), sweep.getProperty( "max.paths", "0" ),
+                sweep.getProperty( "pairs", DEFAULT_PAIRS ) };
+        try
+        {
+            algorithms = ShortestPathBench.parseAlgorithms( sweep.getProperty( "algorithms",
+                    ShortestPathBench.DEFAULT_ALGORITHMS ) );
+            for ( String direction : directions )
+            {
+                if ( false == Arrays.asList( ShortestPathBench.DIRECTION_OUT, ShortestPathBench.DIRECTION_BOTH )
+                        .contains( direction ) )
+                    throw new IllegalArgumentException( "Unknown direction: " + direction );
+            }
+            for ( String path : paths )
+            {
+                if ( false == Arrays.asList( ShortestPathBench.PATHS_SINGLE, ShortestPathBench.PATHS_ALL ).contains(
+                        path ) ) throw new IllegalArgumentException( "Unknown paths: " + path );
+            }
+            for ( String count : counts )
+            {
+                if ( Integer.parseInt( count.trim() ) < 0 ) throw new IllegalArgumentException( "Negative: " + count );
+            }
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.out.println( String.format( "Unexpected sweep file content: %s\n%s", e.getMessage(), errMsg ) );
+            return;
+        }
+
+        // Every combination of the swept settings, in setting name order
+        List<List<String>> settingCombinations = new ArrayList<List<String>>();
+        settingCombinations.add( new ArrayList<String>() );
+        for ( Map.Entry<String, String> setting : settings( sweep ).entrySet() )
+        {
+            List<List<String>> combinations = new ArrayList<List<String>>();
+            for ( List<String> combination : settingCombinations )
+            {
+                for ( String value : split( setting.getValue() ) )
+                {
+                    List<String> extended = new ArrayList<String>( combination );
+                    extended.add( setting.getKey() + "=" + value );
+                    combinations.add( extended );
+                }
+            }
+            settingCombinations = combinations;
+        }
+
+        File outputDirectory = new File( ( args.length == 2 ) ? args[1] : "results/sweep-" + new SimpleDateFormat(
+                "yyyyMMdd-HHmmss" ).format( new Date() ) ).getAbsoluteFile();
+        outputDirectory.mkdirs();
+        int cellCount = settingCombinations.size() * algorithms.size() * directions.size() * paths.size();
+        System.out.println( String.format( "Sweep =\t\t%s\nCells =\t\t%s\nOutput =\t%s", sweepFile, cellCount,
+                outputDirectory ) );
+
+        List<String> jvmCommand = new ArrayList<String>();
+        jvmCommand.add( new File( new File( System.getProperty( "java.home" ), "bin" ), "java" ).getPath() );
+        for ( String jvmArg : sweep.getProperty( "jvm.args", DEFAULT_JVM_ARGS ).trim().split( "\\s+" ) )
+        {
+            if ( false == jvmArg.isEmpty() ) jvmCommand.add( jvmArg );
+        }
+        jvmCommand.add( "-cp" );
+        jvmCommand.add( classPath() );
+        jvmCommand.add( SweepCell.class.getName() );
+
+        int cell = 0;
+        int failedCount = 0;
+        List<File> cellFiles = new ArrayList<File>();
+        for ( List<String> settings : settingCombinations )
+        {
+            for ( String algorithm : algorithms )
+            {
+                for ( String direction : directions )
+                {
+                    for ( String path : paths )
+                    {
+                        cell++;
+                        File outputPrefix = new File( outputDirectory, String.format( "cell-%03d", cell ) );
+                        List<String> command = new ArrayList<String>( jvmCommand );
+                        command.addAll( Arrays.asList( outputPrefix.getPath(), path, direction, algorithm ) );
+                        for ( String count : counts )
+                        {
+                            command.add( count.trim() );
+                        }
+                        command.addAll( settings );
+                        System.out.print( String.format( "Cell %s/%s : %s %s %s %s", cell, cellCount, settings,
+                                algorithm, direction, path ) );
+
+                        long startTime = System.currentTimeMillis();
+                        File logFile = new File( outputPrefix.getPath() + ".log" );
+                        int exitCode = fork( command, logFile );
+                        File cellFile = new File( outputPrefix.getPath() + ".csv" );
+                        if ( exitCode != 0 || false == cellFile.isFile() )
+                        {
+                            failedCount++;
+                            System.out.println( String.format( " : FAILED with exit code %s, see %s", exitCode,
+                                    logFile ) );
+                            continue;
+                        }
+                        cellFiles.add( cellFile );
+                        System.out.println( String.format( " : %s(s)", ( System.currentTimeMillis() - startTime )
+                                                                        / 1000 ) );
+                    }
+                }
+            }
+        }
+
+        writeResults( cellFiles, new File( outputDirectory, "sweep.csv" ), new File( outputDirectory, "sweep.json" ) );
+        System.out.println( String.format( "Wrote %s cells to %s, %s failed", cellFiles.size(), outputDirectory,
+                failedCount ) );
+        if ( failedCount > 0 ) System.exit( 1 );
+    }
+
+    // Swept settings by name
+    private static Map<String, String> settings( Properties sweep )
+    {
+        Map<String, String> settings = new TreeMap<String, String>();
+        for ( String key : sweep.stringPropertyNames() )
+        {
+            if ( key.startsWith( SETTING_PREFIX ) ) settings.put( key.substring( SETTING_PREFIX.length() ),
+                    sweep.getProperty( key ) );
+        }
+        return settings;
+    }
+
+    private static List<String> split( String values )
+    {
+        List<String> split = new ArrayList<String>();
+        for ( String value : values.split( "," ) )
+        {
+            if ( false == value.trim().isEmpty() ) split.add( value.trim() );
+        }
+        return split;
+    }
+
+    // Output of the forked JVM goes to the log file
+    private static int fork( List<String> command, File logFile ) throws IOException, InterruptedException
+    {
+        Process process = new ProcessBuilder( command ).redirectErrorStream( true ).start();
+        InputStream output = process.getInputStream();
+        FileOutputStream log = new FileOutputStream( logFile );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            for ( int read = output.read( buffer ); read >= 0; read = output.read( buffer ) )
+            {
+                log.write( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            log.close();
+            output.close();
+        }
+        return process.waitFor();
+    }
+
+    // Under mvn exec:java the project classes are loaded by a URLClassLoader, not from java.class.path
+    private static String classPath()
+    {
+        Set<String> entries = new LinkedHashSet<String>();
+        for ( ClassLoader loader = SweepRunner.class.getClassLoader(); null != loader; loader = loader.getParent() )
+        {
+            if ( false == loader instanceof URLClassLoader ) continue;
+            for ( URL url : ( (URLClassLoader) loader ).getURLs() )
+            {
+                if ( false == url.getProtocol().equals( "file" ) ) continue;
+                try
+                {
+                    entries.add( new File( url.toURI() ).getPath() );
+                }
+                catch ( URISyntaxException e )
+                {
+                    entries.add( url.getPath() );
+                }
+            }
+        }
+        entries.addAll( Arrays.asList( System.getProperty( "java.class.path" ).split( File.pathSeparator ) ) );
+        StringBuilder classPath = new StringBuilder();
+        for ( String entry : entries )
+        {
+            classPath.append( ( classPath.length() > 0 ) ? File.pathSeparator : "" ).append( entry );
+        }
+        return classPath.toString();
+    }
+
+    // All rows of all cells, as CSV and as a JSON array with the settings as an object
+    private static void writeResults( List<File> cellFiles, File csvFile, File jsonFile ) throws IOException
+    {
+        CsvFileWriter csvWriter = new CsvFileWriter( csvFile );
+        PrintWriter jsonWriter = new PrintWriter( new OutputStreamWriter( new FileOutputStream( jsonFile ),
+                "UTF-8" ) );
+        csvWriter.writeLine( SweepCell.COLUMNS.toArray( new String[SweepCell.COLUMNS.size()] ) );
+        jsonWriter.print( "[" );
+        boolean firstRow = true;
+        for ( File cellFile : cellFiles )
+        {
+            CsvFileReader reader = new CsvFileReader( cellFile, ',' );
+            // Skip Files Headers
+            if ( reader.hasNext() ) reader.next();
+            while ( reader.hasNext() )
+            {
+                String[] row = reader.next();
+                csvWriter.writeLine( row );
+                jsonWriter.print( ( firstRow ? "" : "," ) + "\n  {" );
+                for ( int column = 0; column < SweepCell.COLUMNS.size(); column++ )
+                {
+                    String value = ( column < row.length ) ? row[column] : "";
+                    jsonWriter.print( String.format( "%s\"%s\": %s", ( column > 0 ) ? ", " : "",
+                            SweepCell.COLUMNS.get( column ), jsonValue( SweepCell.COLUMNS.get( column ), value ) ) );
+                }
+                jsonWriter.print( "}" );
+                firstRow = false;
+            }
+        }
+        jsonWriter.println( "\n]" );
+        jsonWriter.close();
+        csvWriter.close();
+    }
+
+    private static String jsonValue( String column, String value )
+    {
+        if ( NUMBER.matcher( value ).matches() ) return value;
+        if ( false == column.equals( "settings" ) ) return jsonString( value );
+        StringBuilder settings = new StringBuilder( "{" );
+        for ( String setting : value.split( ";" ) )
+        {
+            int separator = setting.indexOf( '=' );
+            if ( separator <= 0 ) continue;
+            settings.append( ( settings.length() > 1 ) ? ", " : "" ).append(
+                    jsonString( setting.substring( 0, separator ) ) ).append( ": " ).append(
+                    jsonString( setting.substring( separator + 1 ) ) );
+        }
+        return settings.append( "}" ).toString();
+    }
+
+    private static String jsonString( String value )
+    {
+        return "\"" + value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ) + "\"";
+    }
+}
@@ -0,0 +1,207 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.BranchState;
+
+/**
+ * Counts the work the GraphAlgoFactory path finders do per query, through the expander and cost evaluator they are
+ * created with: nodes expanded, relationships loaded by those expansions and cost evaluations. Dijkstra expands a
+ * node once per branch that reaches it, so nodes can be counted more than once. The frontier is not visible from
+ * outside the finders, it is tracked as the nodes reached by a loaded relationship but not expanded yet, from either
+ * end for bidirectional finders, and its peak size is reported. Nodes a finder prunes without expanding stay in it, so
+ * it is an upper bound of the finders' own queues. Call {@link #reset()} before every query, not thread safe.
+ */
+public class TraversalCounters
+{
+    private long expandedNodes = 0;
+    private long loadedRelationships = 0;
+    private long costEvaluations = 0;
+    private long peakFrontier = 0;
+    private long frontier = 0;
+    private final Set<Long> reachedNodeIds = new HashSet<Long>();
+    private final Set<Long> expandedNodeIds = new HashSet<Long>();
+
+    public void reset()
+    {
+        expandedNodes = 0;
+        loadedRelationships = 0;
+        costEvaluations = 0;
+        peakFrontier = 0;
+        frontier = 0;
+        reachedNodeIds.clear();
+        expandedNodeIds.clear();
+    }
+
+    public long expandedNodes()
+    {
+        return expandedNodes;
+    }
+
+    public long loadedRelationships()
+    {
+        return loadedRelationships;
+    }
+
+    public long costEvaluations()
+    {
+        return costEvaluations;
+    }
+
+    public long peakFrontier()
+    {
+        return peakFrontier;
+    }
+
+    public <STATE> PathExpander<STATE> expander( PathExpander<STATE> expander )
+    {
+        return new CountingExpander<STATE>( expander );
+    }
+
+    public <T> CostEvaluator<T> costEvaluator( final CostEvaluator<T> evaluator )
+    {
+        return new CostEvaluator<T>()
+        {
+            @Override
+            public T getCost( Relationship relationship, Direction direction )
+            {
+                costEvaluations++;
+                return evaluator.getCost( relationship, direction );
+            }
+        };
+    }
+
+    public String toString( long runTimeNanos )
+    {
+        return String.format( "Expanded[%s] Relationships[%s] Evaluations[%s] Peak Frontier[%s] Relationships/s[%s]",
+                expandedNodes, loadedRelationships, costEvaluations, peakFrontier,
+                perSecond( loadedRelationships, runTimeNanos ) );
+    }
+
+    static long perSecond( long count, long nanos )
+    {
+        return ( nanos > 0 ) ? (long) ( count * (double) TimeUnit.SECONDS.toNanos( 1 ) / nanos ) : 0;
+    }
+
+    private class CountingExpander<STATE> implements PathExpander<STATE>
+    {
+        private final PathExpander<STATE> expander;
+
+        private CountingExpander( PathExpander<STATE> expander )
+        {
+            this.expander = expander;
+        }
+
+        @Override
+        public Iterable<Relationship> expand( Path path, BranchState<STATE> state )
+        {
+            expandedNodes++;
+            final Node node = path.endNode();
+            final Iterable<Relationship> relationships = expander.expand( path, state );
+            return new Iterable<Relationship>()
+            {
+                @Override
+                public Iterator<Relationship> iterator()
+                {
+                    final Iterator<Relationship> iterator = relationships.iterator();
+                    return new Iterator<Relationship>()
+                    {
+                        private boolean started = false;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            // Traversals expand a branch once it is created and read it later, the node leaves the
+                            // frontier when its relationships are first read. Start nodes are read without being
+                            // reached first, they never join it
+                            if ( false == started )
+                            {
+                                started = true;
+                                long nodeId = node.getId();
+                                if ( expandedNodeIds.add( nodeId ) && false == reachedNodeIds.add( nodeId ) )
+                                    frontier--;
+                            }
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Relationship next()
+                        {
+                            Relationship relationship = iterator.next();
+                            loadedRelationships++;
+                            if ( reachedNodeIds.add( relationship.getOtherNode( node ).getId() ) )
+                            {
+                                frontier++;
+                                peakFrontier = Math.max( peakFrontier, frontier );
+                            }
+                            return relationship;
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            iterator.remove();
+                        }
+                    };
+                }
+            };
+        }
+
+        // Bidirectional finders expand from the end node with the reversed expander, counted the same
+        @Override
+        public PathExpander<STATE> reverse()
+        {
+            return new CountingExpander<STATE>( expander.reverse() );
+        }
+    }
+
+    /**
+     * Distributions of the counters over all queries of a run, and of relationships loaded per second of query time.
+     * Histograms stay empty for path finders that do not expand through the counted expander.
+     */
+    public static class Histograms
+    {
+        private final Histogram expandedNodes = new Histogram( 3 );
+        private final Histogram loadedRelationships = new Histogram( 3 );
+        private final Histogram costEvaluations = new Histogram( 3 );
+        private final Histogram peakFrontier = new Histogram( 3 );
+        private final Histogram relationshipsPerSecond = new Histogram( 3 );
+        private long totalRelationships = 0;
+        private long totalRunTimeNanos = 0;
+
+        public void record( TraversalCounters counters, long runTimeNanos )
+        {
+            if ( counters.expandedNodes == 0 ) return;
+            expandedNodes.recordValue( counters.expandedNodes );
+            loadedRelationships.recordValue( counters.loadedRelationships );
+            costEvaluations.recordValue( counters.costEvaluations );
+            peakFrontier.recordValue( counters.peakFrontier );
+            relationshipsPerSecond.recordValue( perSecond( counters.loadedRelationships, runTimeNanos ) );
+            totalRelationships += counters.loadedRelationships;
+            totalRunTimeNanos += runTimeNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            if ( expandedNodes.getTotalCount() == 0 ) return "";
+            return ShortestPathBench.histogramString( expandedNodes, "Expanded Nodes" )
+                   + ShortestPathBench.histogramString( loadedRelationships, "Loaded Relationships" )
+                   + ShortestPathBench.histogramString( costEvaluations, "Cost Evaluations" )
+                   + ShortestPathBench.histogramString( peakFrontier, "Peak Frontier (nodes)" )
+                   + ShortestPathBench.histogramString( relationshipsPerSecond, "Relationships Per Second" )
+                   + String.format( "\tRelationships Per Second (all queries) : %s\n",
+                           perSecond( totalRelationships, totalRunTimeNanos ) );
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.neo4j.bench.shortestpath;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Window TinyLFU: new entries go to a small LRU window (1% of capacity, at least 1 entry). Entries evicted from the
+ * window only enter the main cache, which holds the rest of the capacity, if a frequency sketch says they are
+ * requested more often than the main cache's victim. The main cache is a segmented LRU, entries hit while on probation
+ * move to the protected segment (80% of the main cache). At capacity 1 there is no main cache, only the window. The
+ * sketch counts requests for cached and uncached keys alike and halves all counts periodically, so old popularity
+ * fades.
+ */
+public class WTinyLfuPathCache<K> extends PathCache<K>
+{
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final int mainCapacity;
+    // All access ordered, eldest entry is the least recently used
+    private final LinkedHashMap<K, long[][]> window = new LinkedHashMap<K, long[][]>( 16, 0.75f, true );
+    private final LinkedHashMap<K, long[][]> probation = new LinkedHashMap<K, long[][]>( 16, 0.75f, true );
+    private final LinkedHashMap<K, long[][]> protectedSegment = new LinkedHashMap<K, long[][]>( 16, 0.75f, true );
+    private final FrequencySketch sketch;
+
+    public WTinyLfuPathCache( int capacity )
+    {
+        super( capacity );
+        this.windowCapacity = Math.max( 1, capacity / 100 );
+        this.mainCapacity = capacity - windowCapacity;
+        this.protectedCapacity = (int) ( mainCapacity * 0.8 );
+        this.sketch = new FrequencySketch( capacity );
+    }
+
+    @Override
+    protected long[][] lookup( K key )
+    {
+        sketch.increment( key );
+        long[][] value = window.get( key );
+        if ( null != value ) return value;
+        value = protectedSegment.get( key );
+        if ( null != value ) return value;
+        value = probation.remove( key );
+        if ( null != value )
+        {
+            protectedSegment.put( key, value );
+            if ( protectedSegment.size() > protectedCapacity )
+            {
+                Map.Entry<K, long[][]> demoted = removeEldest( protectedSegment );
+                probation.put( demoted.getKey(), demoted.getValue() );
+            }
+        }
+        return value;
+    }
+
+    @Override
+    protected void insert( K key, long[][] value )
+    {
+        if ( replace( window, key, value ) || replace( probation, key, value )
+             || replace( protectedSegment, key, value ) )
+        {
+            return;
+        }
+        window.put( key, value );
+        added( value );
+        if ( window.size() <= windowCapacity ) return;
+
+        Map.Entry<K, long[][]> candidate = removeEldest( window );
+        if ( mainCapacity == 0 )
+        {
+            removed( candidate.getValue(), true );
+            return;
+        }
+        if ( probation.size() + protectedSegment.size() < mainCapacity )
+        {
+            probation.put( candidate.getKey(), candidate.getValue() );
+            return;
+        }
+        LinkedHashMap<K, long[][]> victimSegment = ( probation.isEmpty() ) ? protectedSegment : probation;
+        K victimKey = victimSegment.keySet().iterator().next();
+        if ( sketch.frequency( candidate.getKey() ) > sketch.frequency( victimKey ) )
+        {
+            removed( victimSegment.remove( victimKey ), true );
+            probation.put( candidate.getKey(), candidate.getValue() );
+        }
+        else
+        {
+            removed( candidate.getValue(), true );
+        }
+    }
+
+    @Override
+    protected int entryCount()
+    {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    private boolean replace( LinkedHashMap<K, long[][]> segment, K key, long[][] value )
+    {
+        if ( false == segment.containsKey( key ) ) return false;
+        removed( segment.put( key, value ), false );
+        added( value );
+        return true;
+    }
+
+    private static <K> Map.Entry<K, long[][]> removeEldest( LinkedHashMap<K, long[][]> segment )
+    {
+        Iterator<Map.Entry<K, long[][]>> eldest = segment.entrySet().iterator();
+        Map.Entry<K, long[][]> entry = eldest.next();
+        eldest.remove();
+        return entry;
+    }
+
+    /**
+     * Count-min sketch with 4 rows of 4 bit saturating counters (stored in bytes for simplicity). After 10 increments
+     * per cache entry all counters are halved.
+     */
+    private static class FrequencySketch
+    {
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = { 0x97cb3127, 0xb7e15163, 0x9e3779b9, 0x85ebca6b };
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int incrementCount = 0;
+
+        FrequencySketch( int capacity )
+        {
+            int width = Integer.highestOneBit( Math.max( 16, capacity ) - 1 ) << 1;
+            counters = new byte[ROWS][width];
+            mask = width - 1;
+            sampleSize = 10 * Math.max( 16, capacity );
+        }
+
+        void increment( Object key )
+        {
+            int hash = key.hashCode();
+            for ( int row = 0; row < ROWS; row++ )
+            {
+                int index = index( hash, row );
+                if ( counters[row][index] < MAX_COUNT ) counters[row][index]++;
+            }
+            if ( ++incrementCount == sampleSize )
+            {
+                for ( byte[] row : counters )
+                {
+                    for ( int i = 0; i < row.length; i++ )
+                    {
+                        row[i] >>= 1;
+                    }
+                }
+                incrementCount /= 2;
+            }
+        }
+
+        int frequency( Object key )
+        {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for ( int row = 0; row < ROWS; row++ )
+            {
+                frequency = Math.min( frequency, counters[row][index( hash, row )] );
+            }
+            return frequency;
+        }
+
+        private int index( int hash, int row )
+        {
+            int h = ( hash ^ SEEDS[row] ) * 0x9e3779b1;
+            return ( h ^ ( h >>> 16 ) ) & mask;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.neo4j.bench.shortestpath;
+
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Relationship weights of a {@link CsrGraph}, copied into an array indexed by relationship id.
+ */
+public class WeightCostEvaluator implements PrimitiveCostEvaluator
+{
+    private final float[] weights;
+
+    public WeightCostEvaluator( CsrGraph graph )
+    {
+        long[] relationshipIds = graph.relationshipIds( Direction.OUTGOING );
+        float[] graphWeights = graph.weights( Direction.OUTGOING );
+        long maxRelationshipId = -1;
+        for ( long relationshipId : relationshipIds )
+        {
+            maxRelationshipId = Math.max( maxRelationshipId, relationshipId );
+        }
+        weights = new float[(int) ( maxRelationshipId + 1 )];
+        for ( int i = 0; i < relationshipIds.length; i++ )
+        {
+            weights[(int) relationshipIds[i]] = graphWeights[i];
+        }
+    }
+
+    @Override
+    public double getCost( long relationshipId )
+    {
+        return weights[(int) relationshipId];
+    }
+}
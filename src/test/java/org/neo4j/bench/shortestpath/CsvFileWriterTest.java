@@ -0,0 +1,127 @@
+package org.neo4j.bench.shortestpath;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CsvFileWriterTest
+{
+    private static final double MAX_EXACT_UNITS = 1L << 53;
+
+    @Test
+    public void shouldFormatLikeDecimalFormat() throws IOException
+    {
+        assertEquals( "0", written( 0.0, 2 ) );
+        assertEquals( "0", written( -0.001, 2 ) );
+        assertEquals( "1.5", written( 1.5, 2 ) );
+        assertEquals( "-2.25", written( -2.25, 2 ) );
+        assertEquals( "0.12", written( 0.125, 2 ) );
+        assertEquals( "0.38", written( 0.375, 2 ) );
+        assertEquals( "3", written( 2.999, 2 ) );
+        assertEquals( "NaN", written( Double.NaN, 2 ) );
+    }
+
+    @Test
+    public void shouldRoundExactlyAboveTheFastPath() throws IOException
+    {
+        assertEquals( "1000000000000000.12", written( 1e15 + 0.125, 2 ) );
+        assertEquals( "-1000000000000000.12", written( -( 1e15 + 0.125 ), 2 ) );
+        assertEquals( Double.parseDouble( "1000000000000000.12" ), CsvFileWriter.round( 1e15 + 0.125, 2 ), 0 );
+    }
+
+    @Test
+    public void shouldRoundExactlyAroundTheFastPathBoundary() throws IOException
+    {
+        Random random = new Random( 42 );
+        for ( int decimals = 0; decimals <= 4; decimals++ )
+        {
+            double boundary = MAX_EXACT_UNITS / Math.pow( 10, decimals );
+            double[] values = new double[1002];
+            for ( int i = 0; i < 1000; i++ )
+            {
+                values[i] = boundary * ( 0.999 + 0.002 * random.nextDouble() );
+            }
+            values[1000] = Math.nextAfter( boundary, 0 );
+            values[1001] = boundary;
+            assertWrittenExactly( values, decimals );
+        }
+    }
+
+    @Test
+    public void shouldRoundTiesHalfEven() throws IOException
+    {
+        Random random = new Random( 7 );
+        double[] values = new double[1000];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            // Multiples of 1/8 are exact, so ties at 2 decimals are real ties
+            values[i] = ( random.nextInt( 1 << 20 ) - ( 1 << 19 ) ) / 8.0;
+            assertEquals( Double.parseDouble( expected( values[i], 2 ) ), CsvFileWriter.round( values[i], 2 ), 0 );
+        }
+        assertWrittenExactly( values, 2 );
+    }
+
+    private static void assertWrittenExactly( double[] values, int decimals ) throws IOException
+    {
+        List<String> lines = written( values, decimals );
+        for ( int i = 0; i < values.length; i++ )
+        {
+            assertEquals( "Value " + new BigDecimal( values[i] ), expected( values[i], decimals ), lines.get( i ) );
+        }
+    }
+
+    private static String expected( double value, int decimals )
+    {
+        BigDecimal rounded = new BigDecimal( value ).setScale( decimals, RoundingMode.HALF_EVEN );
+        return ( rounded.signum() == 0 ) ? "0" : rounded.stripTrailingZeros().toPlainString();
+    }
+
+    private static String written( double value, int decimals ) throws IOException
+    {
+        return written( new double[] { value }, decimals ).get( 0 );
+    }
+
+    // One value per line
+    private static List<String> written( double[] values, int decimals ) throws IOException
+    {
+        File file = File.createTempFile( "csv-file-writer", ".csv" );
+        try
+        {
+            CsvFileWriter writer = new CsvFileWriter( file );
+            for ( double value : values )
+            {
+                writer.writeDouble( value, decimals );
+                writer.endLine();
+            }
+            writer.close();
+            List<String> lines = new ArrayList<String>();
+            BufferedReader reader = new BufferedReader( new FileReader( file ) );
+            try
+            {
+                for ( String line = reader.readLine(); null != line; line = reader.readLine() )
+                {
+                    lines.add( line );
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+            return lines;
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
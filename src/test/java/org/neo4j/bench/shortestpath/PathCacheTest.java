@@ -0,0 +1,58 @@
+package org.neo4j.bench.shortestpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PathCacheTest
+{
+    private static final long[][] NO_PATH = new long[0][];
+
+    @Test
+    public void shouldNeverHoldMoreEntriesThanCapacity()
+    {
+        for ( String policy : PathCache.POLICIES )
+        {
+            for ( int capacity : new int[] { 1, 2, 3, 5, 100, 101 } )
+            {
+                PathCache<Integer> cache = PathCache.create( policy, capacity );
+                Random random = new Random( capacity );
+                for ( int i = 0; i < 10000; i++ )
+                {
+                    // Skewed keys, so some are hit often enough to be promoted
+                    int key = (int) Math.abs( random.nextGaussian() * capacity * 2 );
+                    if ( null == cache.get( key ) ) cache.put( key, NO_PATH );
+                    assertTrue( String.format( "%s at capacity %s held %s entries", policy, capacity, cache.size() ),
+                            cache.size() <= capacity );
+                }
+                assertEquals( policy + " at capacity " + capacity, capacity, cache.size() );
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepTheLatestEntryAtCapacityOne()
+    {
+        for ( String policy : PathCache.POLICIES )
+        {
+            PathCache<Integer> cache = PathCache.create( policy, 1 );
+            cache.put( 1, NO_PATH );
+            assertNotNull( policy, cache.get( 1 ) );
+            cache.put( 2, NO_PATH );
+            assertEquals( policy, 1, cache.size() );
+            assertNotNull( policy, cache.get( 2 ) );
+            assertNull( policy, cache.get( 1 ) );
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRejectCapacityZero()
+    {
+        PathCache.create( PathCache.POLICY_W_TINY_LFU, 0 );
+    }
+}